@@ -115,3 +115,82 @@ create table if not exists space_user
 ) comment '空间用户关联' collate = utf8mb4_unicode_ci;
 
 
+-- 添加新列 - 衍生图生成状态（历史数据均已同步生成，默认为已完成）
+ALTER TABLE picture
+    ADD COLUMN derivativeStatus tinyint default 1 not null comment '衍生图生成状态：0-生成中; 1-已完成; 2-失败';
+
+-- 补偿任务按状态扫描未完成的图片
+CREATE INDEX idx_derivativeStatus ON picture (derivativeStatus);
+
+-- 添加新列 - 图片内容摘要（内容相同的图片复用已有存储）
+ALTER TABLE picture
+    ADD COLUMN contentHash char(64) null comment '图片内容摘要（SHA-256）';
+
+CREATE INDEX idx_contentHash ON picture (contentHash);
+
+-- 内容相同的图片共用同一个原图 url，衍生图回写时按 url 更新
+CREATE INDEX idx_url ON picture (url);
+
+-- 图片抓取任务表
+create table if not exists crawl_job
+(
+    id            bigint auto_increment comment 'id' primary key,
+    searchText    varchar(256)                       not null comment '搜索关键词',
+    namePrefix    varchar(128)                       null comment '图片名称前缀',
+    targetCount   int                                not null comment '目标数量',
+    successCount  int      default 0                 not null comment '成功数量',
+    failedCount   int      default 0                 not null comment '失败数量',
+    reservedCount int      default 0                 not null comment '已占用的名额（成功数 + 处理中的数量）',
+    status        tinyint  default 0                 not null comment '状态：0-等待中; 1-搜索中; 2-抓取中; 3-已完成; 4-失败',
+    errorMessage  varchar(512)                       null comment '失败原因',
+    userId        bigint                             not null comment '创建用户 id',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime    datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    -- 各节点按状态扫描待处理的任务
+    index idx_status (status),
+    index idx_userId (userId)
+) comment '图片抓取任务' collate = utf8mb4_unicode_ci;
+
+-- 图片抓取任务明细表（同时作为断点记录，已成功的地址不会重复抓取）
+create table if not exists crawl_job_item
+(
+    id           bigint auto_increment comment 'id' primary key,
+    jobId        bigint                             not null comment '任务 id',
+    fileUrl      varchar(1024)                      not null comment '图片地址',
+    urlHash      char(32)                           not null comment '图片地址摘要（MD5，用于唯一索引）',
+    sequence     int                                null comment '图片序号（成功后分配）',
+    status       tinyint  default 0                 not null comment '状态：0-待处理; 1-处理中; 2-成功; 3-失败',
+    pictureId    bigint                             null comment '图片 id',
+    errorMessage varchar(512)                       null comment '失败原因',
+    costMillis   bigint                             null comment '处理耗时（毫秒）',
+    claimedBy    varchar(64)                        null comment '处理节点',
+    claimTime    datetime                           null comment '领取时间',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime   datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    -- 同一任务内相同地址只记录一次
+    UNIQUE KEY uk_jobId_urlHash (jobId, urlHash),
+    INDEX idx_jobId_status (jobId, status),
+    INDEX idx_status_claimTime (status, claimTime)
+) comment '图片抓取任务明细' collate = utf8mb4_unicode_ci;
+
+-- 添加新列 - 图片感知哈希（dHash），以图搜图时在内存索引中按汉明距离检索，历史数据由补全任务回填
+ALTER TABLE picture
+    ADD COLUMN perceptualHash bigint null comment '图片感知哈希（dHash）';
+
+-- 各节点按更新时间增量同步相似检索索引
+CREATE INDEX idx_updateTime ON picture (updateTime);
+
+-- 添加新列 - 图片主色调签名，按颜色搜索时在内存索引中按量化色块检索，历史数据由补全任务回填
+ALTER TABLE picture
+    ADD COLUMN picColor varchar(64) null comment '图片主色调（rrggbb:占比，逗号分隔）';
+
+-- 游标分页：公共图库按（spaceId is null, reviewStatus）过滤、空间图库按 spaceId 过滤，按（createTime, id）定位下一页
+-- InnoDB 二级索引隐含主键 id，索引顺序与排序一致，翻页时只扫描一页的数据
+CREATE INDEX idx_spaceId_reviewStatus_createTime ON picture (spaceId, reviewStatus, isDelete, createTime);
+
+CREATE INDEX idx_spaceId_createTime ON picture (spaceId, isDelete, createTime);
+
+-- 回收、清理文件时按缩略图、预览图地址查询是否仍被引用
+CREATE INDEX idx_thumbnailUrl ON picture (thumbnailUrl);
+
+CREATE INDEX idx_previewUrl ON picture (previewUrl);
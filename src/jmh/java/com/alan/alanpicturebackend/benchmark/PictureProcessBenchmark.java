@@ -0,0 +1,158 @@
+package com.alan.alanpicturebackend.benchmark;
+
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.manager.utils.PictureDecodeBudget;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.manager.utils.WebPEncoderPool;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.coobird.thumbnailator.Thumbnails;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 图片处理热点路径基准测试（JMH）
+ * - 语料：jpg、png、webp 三种格式，每种若干分辨率，按固定随机种子生成，每次运行内容一致
+ * - processPicture：完整流水线（解码、缩略图、webp 压缩图），即衍生图任务的实际耗时
+ * - thumbnail、webpEncode：在已解码的图片上单独测量缩放和 webp 编码，用于对比替代实现
+ * - 同时输出吞吐量和耗时分位数（SampleTime），分配速率通过 -prof gc 获取
+ * 运行：mvn -P benchmark verify，或在 IDE 中直接运行 main 方法
+ * @Date: 2025/10/21 10:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class PictureProcessBenchmark {
+
+    /**
+     * 缩略图目标尺寸，与 PictureProcessUtils 一致
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+
+    @Param({"jpg", "png", "webp"})
+    private String format;
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    private String resolution;
+
+    private PictureProcessUtils pictureProcessUtils;
+
+    private WebPEncoderPool webPEncoderPool;
+
+    /**
+     * 编码后的原图
+     */
+    private byte[] originalBytes;
+
+    /**
+     * 已解码并缩放到压缩图尺寸的图片，用于单独测量缩放和编码
+     */
+    private BufferedImage previewImage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        PictureProcessConfig pictureProcessConfig = new PictureProcessConfig();
+        webPEncoderPool = new WebPEncoderPool(pictureProcessConfig, new SimpleMeterRegistry());
+        pictureProcessUtils = new PictureProcessUtils();
+        ReflectionTestUtils.setField(pictureProcessUtils, "pictureProcessConfig", pictureProcessConfig);
+        ReflectionTestUtils.setField(pictureProcessUtils, "webPEncoderPool", webPEncoderPool);
+        ReflectionTestUtils.setField(pictureProcessUtils, "pictureDecodeBudget", new PictureDecodeBudget(
+                pictureProcessConfig.getDecodePixelBudget(), pictureProcessConfig.getDecodeWaitMillis()));
+
+        String[] size = resolution.split("x");
+        BufferedImage image = createImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, outputStream)) {
+            throw new IllegalStateException("没有可用的图片编码器：" + format);
+        }
+        originalBytes = outputStream.toByteArray();
+        int previewMaxSize = pictureProcessConfig.getPreviewMaxSize();
+        previewImage = Math.max(image.getWidth(), image.getHeight()) <= previewMaxSize
+                ? image : Thumbnails.of(image).size(previewMaxSize, previewMaxSize).asBufferedImage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        webPEncoderPool.close();
+    }
+
+    @Benchmark
+    public PictureProcessResult processPicture(Blackhole blackhole) throws IOException {
+        ByteArrayOutputStream thumbnailOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream previewOutput = new ByteArrayOutputStream();
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(originalBytes))) {
+            PictureProcessResult result = pictureProcessUtils.processPicture(imageInputStream, thumbnailOutput, format, previewOutput);
+            blackhole.consume(thumbnailOutput.size());
+            blackhole.consume(previewOutput.size());
+            return result;
+        }
+    }
+
+    @Benchmark
+    public int thumbnail() throws IOException {
+        ByteArrayOutputStream thumbnailOutput = new ByteArrayOutputStream();
+        Thumbnails.of(previewImage)
+                .size(Math.min(THUMBNAIL_SIZE, previewImage.getWidth()), Math.min(THUMBNAIL_SIZE, previewImage.getHeight()))
+                .outputFormat(format)
+                .toOutputStream(thumbnailOutput);
+        return thumbnailOutput.size();
+    }
+
+    @Benchmark
+    public int webpEncode() throws IOException {
+        ByteArrayOutputStream previewOutput = new ByteArrayOutputStream();
+        webPEncoderPool.encode(previewImage, previewOutput);
+        return previewOutput.size();
+    }
+
+    /**
+     * 生成固定内容的测试图片（渐变 + 随机色块 + 噪点），接近照片的压缩难度
+     */
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(42);
+        int shapeSize = Math.max(width, height) / 10;
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height),
+                    shapeSize / 4 + random.nextInt(shapeSize), shapeSize / 4 + random.nextInt(shapeSize));
+        }
+        graphics.dispose();
+        for (int i = 0; i < width * height / 20; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PictureProcessBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
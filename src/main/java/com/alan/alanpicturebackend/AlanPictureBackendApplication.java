@@ -4,6 +4,7 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -12,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 @SpringBootApplication
 @MapperScan("com.alan.alanpicturebackend.mapper")
 @EnableAspectJAutoProxy(exposeProxy = true)
+@EnableScheduling
 @Transactional
 public class AlanPictureBackendApplication {
 
@@ -11,6 +11,7 @@ import java.util.List;
 /**
  * @author alan
  * @Description: 图片搜索服务（门面模式）
+ * - 通过百度识图抓取全网结果，接口已改为站内相似检索（PictureSimilarManager），此类仅保留备用
  * @Date: 2025/4/16 17:51
  */
 @Slf4j
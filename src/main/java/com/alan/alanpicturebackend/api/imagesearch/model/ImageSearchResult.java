@@ -19,4 +19,14 @@ public class ImageSearchResult {
      * 来源地址
      */
     private String fromUrl;
+
+    /**
+     * 站内图片 id（站内相似检索时返回）
+     */
+    private Long pictureId;
+
+    /**
+     * 与目标图片感知哈希的汉明距离，越小越相似（站内相似检索时返回）
+     */
+    private Integer distance;
 }
@@ -0,0 +1,33 @@
+package com.alan.alanpicturebackend.common;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 游标分页结果包装类（不统计总数，用于无限滚动）
+ *
+ * @author alan
+ */
+@Data
+public class CursorPage<T> implements Serializable {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records = Collections.emptyList();
+
+    /**
+     * 下一页游标（没有更多数据时为 null）
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private boolean hasMore;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,60 @@
+package com.alan.alanpicturebackend.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 对象存储并发上传线程池配置
+ * @Date: 2025/10/17 11:05
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cos.upload")
+@Data
+public class CosUploadConfig {
+
+    /**
+     * 核心线程数
+     */
+    private int corePoolSize = 8;
+
+    /**
+     * 最大线程数
+     */
+    private int maxPoolSize = 16;
+
+    /**
+     * 等待队列长度（有界，队列满时直接拒绝）
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 非核心线程空闲存活时间（秒）
+     */
+    private long keepAliveSeconds = 60;
+
+    /**
+     * 一组上传请求的最长等待时间（秒）
+     */
+    private long timeoutSeconds = 30;
+
+    @Bean(name = "cosUploadExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor cosUploadExecutor() {
+        return new ThreadPoolExecutor(
+                corePoolSize,
+                maxPoolSize,
+                keepAliveSeconds,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("cosUpload-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -0,0 +1,31 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 本地文件系统对象存储配置（storage.type = local 时生效）
+ * @Date: 2025/10/18 16:30
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.local")
+@Data
+public class LocalStorageConfig {
+
+    /**
+     * 存储根目录
+     */
+    private String root = "data/storage";
+
+    /**
+     * 对象的公开访问地址前缀
+     */
+    private String host = "http://localhost:8123/api/storage";
+
+    /**
+     * 写入后是否立即刷盘（关闭可提升吞吐，但宕机时可能丢失最近写入的数据）
+     */
+    private boolean syncOnWrite = true;
+}
@@ -0,0 +1,76 @@
+package com.alan.alanpicturebackend.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 批量抓取图片配置
+ * @Date: 2025/10/21 14:10
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.crawl")
+@Data
+public class PictureCrawlConfig {
+
+    /**
+     * 单次抓取同时处理（下载、上传）的图片数
+     */
+    private int concurrency = 4;
+
+    /**
+     * 单次抓取对同一个站点同时发起的下载数
+     */
+    private int perHostConcurrency = 2;
+
+    /**
+     * 抓取线程池大小（所有抓取共用）
+     */
+    private int poolSize = 8;
+
+    /**
+     * 抓取线程池等待队列长度，队列满时由发起抓取的线程自己处理
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 搜索页面的请求超时时间
+     */
+    private Duration searchTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 候选图片不足时最多翻页次数（含第一页）
+     */
+    private int maxSearchPages = 3;
+
+    /**
+     * 抓取任务的候选地址数达到目标数量的多少倍后停止翻页
+     */
+    private int candidateFactor = 3;
+
+    /**
+     * 抓取任务明细处理超时时间（分钟），超时未完成（如节点宕机）的明细重新交给其他节点处理
+     */
+    private long itemTimeoutMinutes = 10;
+
+    @Bean(name = "pictureCrawlExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor pictureCrawlExecutor() {
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureCrawl-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+}
@@ -0,0 +1,56 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 图片衍生图（缩略图、压缩图）后台生成任务配置
+ * @Date: 2025/10/18 10:20
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.derivative")
+@Data
+public class PictureDerivativeConfig {
+
+    /**
+     * 任务队列（Redis Stream）的 key
+     */
+    private String streamKey = "alanPicture:derivative:stream";
+
+    /**
+     * 死信队列（Redis Stream）的 key，超过最大重试次数的任务转入这里
+     */
+    private String deadLetterKey = "alanPicture:derivative:deadLetter";
+
+    /**
+     * 消费者组名称，所有节点共用一个组，每条任务只会被其中一个节点消费
+     */
+    private String consumerGroup = "derivativeWorker";
+
+    /**
+     * 当前节点的消费者数量（即并发生成的线程数）
+     */
+    private int concurrency = 2;
+
+    /**
+     * 每次拉取的最大任务数
+     */
+    private int batchSize = 10;
+
+    /**
+     * 最大投递次数（包括首次），超过后转入死信队列并标记失败
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 任务投递后多久仍未确认视为失败，重新认领重试（秒）
+     */
+    private long retryIdleSeconds = 60;
+
+    /**
+     * 图片保持“生成中”超过该时间仍未完成，视为任务丢失，重新投递（分钟）
+     */
+    private long staleMinutes = 30;
+}
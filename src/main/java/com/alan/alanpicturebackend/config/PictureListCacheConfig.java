@@ -0,0 +1,41 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 图片分页列表两级缓存配置
+ * @Date: 2025/10/27 10:00
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.list-cache")
+@Data
+public class PictureListCacheConfig {
+
+    /**
+     * 本地缓存最多缓存的页数
+     */
+    private long localMaxSize = 1000;
+
+    /**
+     * 本地缓存过期时间（秒），兜底其他节点的失效消息丢失的情况
+     */
+    private long localExpireSeconds = 30;
+
+    /**
+     * Redis 缓存过期时间（秒）
+     */
+    private int redisExpireSeconds = 300;
+
+    /**
+     * Redis 缓存过期时间的随机增量上限（秒），防止大量缓存同时过期
+     */
+    private int redisExpireJitterSeconds = 300;
+
+    /**
+     * 本地缓存失效通知的 Redis 频道
+     */
+    private String invalidateChannel = "alanPicture:listPictureVoByPage:invalidate";
+}
@@ -0,0 +1,75 @@
+package com.alan.alanpicturebackend.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 图片处理（解码、缩放、webp 编码）线程池配置
+ * @Date: 2025/10/19 10:05
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.process")
+@Data
+public class PictureProcessConfig {
+
+    /**
+     * 线程数（图片处理是 CPU 密集型任务，默认与 CPU 核数一致）
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 等待队列长度（有界，队列满时直接拒绝，调用方稍后重试）
+     */
+    private int queueCapacity = 32;
+
+    /**
+     * 单张图片允许的最大像素数（宽 * 高），超过直接拒绝上传
+     */
+    private long maxPixels = 100_000_000L;
+
+    /**
+     * 压缩图（预览图）长边的最大尺寸，原图更大时按此尺寸降采样解码
+     */
+    private int previewMaxSize = 2048;
+
+    /**
+     * 同时解码中的像素总预算，默认按每像素 4 字节占用堆内存的 1/4
+     */
+    private long decodePixelBudget = Runtime.getRuntime().maxMemory() / 4 / 4;
+
+    /**
+     * 像素预算不足时的最长等待时间（毫秒），超时拒绝
+     */
+    private long decodeWaitMillis = 5000;
+
+    /**
+     * 压缩图（webp）默认质量，0 ~ 1，越高体积越大
+     */
+    private float webpQuality = 0.75f;
+
+    /**
+     * 压缩图（webp）默认压缩力度，0 ~ 6，越高越省体积、越耗 CPU
+     */
+    private int webpMethod = 4;
+
+    @Bean(name = "pictureProcessThreadPool", destroyMethod = "shutdown")
+    public ThreadPoolExecutor pictureProcessThreadPool() {
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureProcess-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
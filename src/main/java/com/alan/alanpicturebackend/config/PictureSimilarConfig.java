@@ -0,0 +1,46 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 以图搜图（感知哈希相似检索）、按颜色搜图配置
+ * @Date: 2025/10/21 14:40
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.similar")
+@Data
+public class PictureSimilarConfig {
+
+    /**
+     * 视为相似的最大汉明距离（64 位哈希，越小越严格）
+     */
+    private int maxDistance = 10;
+
+    /**
+     * 按颜色搜图时视为相近的最大颜色距离（redmean 距离，0 ~ 约 765）
+     */
+    private double maxColorDistance = 80;
+
+    /**
+     * 单次最多返回的相似图片数
+     */
+    private int maxResultCount = 20;
+
+    /**
+     * 加载、同步、补全时每批处理的图片数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 是否补全历史图片的感知哈希和主色调
+     */
+    private boolean backfillEnabled = true;
+
+    /**
+     * 补全任务每批处理的图片数（每张图片需要下载缩略图并解码）
+     */
+    private int backfillBatchSize = 50;
+}
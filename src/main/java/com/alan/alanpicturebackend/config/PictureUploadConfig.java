@@ -0,0 +1,64 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * @author alan
+ * @Description: 图片上传配置
+ * @Date: 2025/10/17 14:05
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.upload")
+@Data
+public class PictureUploadConfig {
+
+    /**
+     * 上传数据在内存中缓冲的最大体积，超过后才溢出到本地临时文件
+     */
+    private DataSize memoryThreshold = DataSize.ofMegabytes(4);
+
+    /**
+     * 分块上传的分块大小（对象存储要求除最后一块外不小于 1MB，且不能超过 multipart 单文件上限）
+     */
+    private DataSize chunkPartSize = DataSize.ofMegabytes(5);
+
+    /**
+     * 分块上传允许的最大文件体积
+     */
+    private DataSize chunkMaxFileSize = DataSize.ofMegabytes(50);
+
+    /**
+     * 分块上传任务的有效期（小时），每上传一个分块重新计时
+     */
+    private long chunkExpireHours = 24;
+
+    /**
+     * 分块上传合并后按范围读取的头部大小，用于识别格式、尺寸和 EXIF 方向（不足以解析时读取整个对象）
+     */
+    private DataSize chunkProbeSize = DataSize.ofKilobytes(256);
+
+    /**
+     * URL 上传允许的最大文件体积（边下载边校验，不依赖 Content-Length）
+     */
+    private DataSize urlMaxFileSize = DataSize.ofMegabytes(2);
+
+    /**
+     * URL 上传的连接超时时间
+     */
+    private Duration urlConnectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * URL 上传的读取超时时间（两次读取之间的最长间隔）
+     */
+    private Duration urlReadTimeout = Duration.ofSeconds(10);
+
+    /**
+     * URL 上传最多跟随的重定向次数
+     */
+    private int urlMaxRedirects = 5;
+}
@@ -0,0 +1,45 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 按需生成的多尺寸图片配置
+ * @Date: 2025/10/23 10:00
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.variant")
+@Data
+public class PictureVariantConfig {
+
+    /**
+     * 本地磁盘缓存目录
+     */
+    private String cacheDir = "data/variant-cache";
+
+    /**
+     * 本地磁盘缓存的最大体积，超过后按最近最少使用淘汰
+     */
+    private DataSize maxCacheSize = DataSize.ofGigabytes(1);
+
+    /**
+     * 可选的宽度档位（从小到大），请求的宽度向上取整到最近的档位，避免任意宽度导致缓存无法命中
+     */
+    private List<Integer> widths = Arrays.asList(160, 320, 480, 640, 828, 1080, 1280, 1600, 1920);
+
+    /**
+     * 可选的输出格式，第一个为默认格式
+     */
+    private List<String> formats = Arrays.asList("webp", "jpg", "png");
+
+    /**
+     * 浏览器缓存时间（秒）
+     */
+    private long maxAgeSeconds = 3600;
+}
@@ -0,0 +1,46 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 空间额度账本配置
+ * @Date: 2025/10/25 10:00
+ */
+@Configuration
+@ConfigurationProperties(prefix = "space.quota")
+@Data
+public class SpaceQuotaConfig {
+
+    /**
+     * 额度缓存（Redis Hash）未被访问多久后过期（小时），过期后下次使用时从数据库重新加载
+     */
+    private long idleHours = 24;
+
+    /**
+     * 每次刷新最多处理的空间数
+     */
+    private int flushBatchSize = 200;
+
+    /**
+     * 预占的租约时间（分钟），超过后仍未确认或取消的预占（如节点宕机）被释放
+     */
+    private long reservationLeaseMinutes = 30;
+
+    /**
+     * 是否启用定时对账
+     */
+    private boolean reconcileEnabled = true;
+
+    /**
+     * 对账的 cron 表达式（默认每天凌晨 4 点，避开业务高峰）
+     */
+    private String reconcileCron = "0 0 4 * * ?";
+
+    /**
+     * 对账时每批处理的空间数
+     */
+    private int reconcileBatchSize = 200;
+}
@@ -0,0 +1,27 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @author alan
+ * @Description: 文件下载配置
+ * @Date: 2025/10/24 10:00
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.download")
+@Data
+public class StorageDownloadConfig {
+
+    /**
+     * 从对象存储转发数据时每次读写的块大小（每个下载占用的堆内存固定为该值）
+     */
+    private DataSize bufferSize = DataSize.ofKilobytes(64);
+
+    /**
+     * 本地文件是否交给 Tomcat sendfile 发送（内核直接从页缓存写入 socket），不支持时使用 FileChannel.transferTo
+     */
+    private boolean sendfile = true;
+}
@@ -0,0 +1,79 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 对象存储孤儿文件清理配置
+ * @Date: 2025/10/20 15:00
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.gc")
+@Data
+public class StorageGcConfig {
+
+    /**
+     * 是否启用定时清理
+     */
+    private boolean enabled = false;
+
+    /**
+     * 定时执行的 cron 表达式（默认每天凌晨 3 点半，避开业务高峰）
+     */
+    private String cron = "0 30 3 * * ?";
+
+    /**
+     * 只生成报告，不删除、不隔离任何对象
+     */
+    private boolean dryRun = true;
+
+    /**
+     * 扫描的对象键前缀（chunk/ 为分块上传的暂存对象，任务过期后残留的由此清理，宽限期需不小于分块上传任务的有效期）
+     */
+    private List<String> prefixes = Arrays.asList("public/", "space/", "chunk/");
+
+    /**
+     * 宽限期（小时）：最后修改时间在此之内的对象不处理，避免误删上传中、尚未写入数据库的文件
+     */
+    private long graceHours = 24;
+
+    /**
+     * 孤儿对象先移动到隔离区而不是直接删除，误删时可以恢复
+     */
+    private boolean quarantine = true;
+
+    /**
+     * 隔离区前缀（不能位于扫描前缀之下）
+     */
+    private String quarantinePrefix = "quarantine/";
+
+    /**
+     * 隔离区对象保留天数，超过后彻底删除
+     */
+    private long quarantineRetentionDays = 30;
+
+    /**
+     * 每页列举的对象数
+     */
+    private int pageSize = 200;
+
+    /**
+     * 每页处理完后暂停的时间（毫秒），限制对存储和数据库的压力
+     */
+    private long pageIntervalMillis = 500;
+
+    /**
+     * 单次执行最多扫描的对象数，未扫描完的部分下次从断点继续
+     */
+    private int maxScanPerRun = 20000;
+
+    /**
+     * 报告中最多记录的孤儿对象键数量
+     */
+    private int reportSampleSize = 100;
+}
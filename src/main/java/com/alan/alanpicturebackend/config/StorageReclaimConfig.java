@@ -0,0 +1,71 @@
+package com.alan.alanpicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author alan
+ * @Description: 对象存储无用文件异步回收配置
+ * @Date: 2025/10/20 10:10
+ */
+@Configuration
+@ConfigurationProperties(prefix = "storage.reclaim")
+@Data
+public class StorageReclaimConfig {
+
+    /**
+     * 待回收队列（Redis ZSet）的 key，成员为对象 key，分数为下次尝试删除的时间戳
+     */
+    private String queueKey = "alanPicture:reclaim:queue";
+
+    /**
+     * 失败次数（Redis Hash）的 key
+     */
+    private String attemptKey = "alanPicture:reclaim:attempt";
+
+    /**
+     * 死信队列（Redis Set）的 key，超过最大重试次数的对象 key 转入这里，等待人工处理
+     */
+    private String deadLetterKey = "alanPicture:reclaim:deadLetter";
+
+    /**
+     * 去重复用保护标记（Redis String）的 key 前缀，后接对象 key，存在标记的对象暂不删除
+     */
+    private String protectKeyPrefix = "alanPicture:reclaim:protect:";
+
+    /**
+     * 入队后延迟多久才删除（秒），给并发中的去重上传留出窗口
+     */
+    private long delaySeconds = 60;
+
+    /**
+     * 去重复用保护标记的有效期（秒），需覆盖从复用已有文件到新图片入库提交的时间
+     */
+    private long protectSeconds = 600;
+
+    /**
+     * 每批删除的最大对象数（对象存储批量删除单次最多 1000 个）
+     */
+    private int batchSize = 500;
+
+    /**
+     * 单个节点每批认领后的处理时限（秒），超时未完成的对象由其他节点重新认领
+     */
+    private long leaseSeconds = 120;
+
+    /**
+     * 最大尝试次数，超过后转入死信队列
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 首次重试的退避时间（秒），之后每次翻倍
+     */
+    private long backoffSeconds = 30;
+
+    /**
+     * 退避时间上限（秒）
+     */
+    private long maxBackoffSeconds = 3600;
+}
@@ -0,0 +1,60 @@
+package com.alan.alanpicturebackend.controller;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.storage.ObjectDownloadManager;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.utils.PictureFormatUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * @author alan
+ * @Description: 本地对象存储的文件访问（storage.type = local 时生效）
+ * - 对象地址为 storage.local.host + "/" + key，host 默认指向本接口
+ * - 对象在磁盘上按对象键的 MD5 分片、文件名经过编码，不能由静态资源直接访问，需按对象键解析出本地路径后发送
+ * @Date: 2025/10/18 17:00
+ */
+@RestController
+@RequestMapping("/storage")
+@ConditionalOnProperty(prefix = "storage", name = "type", havingValue = "local")
+public class LocalStorageController {
+
+    private static final String PATH_PREFIX = "/storage/";
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private ObjectDownloadManager objectDownloadManager;
+
+    /**
+     * 获取对象（支持 Range 断点续传、ETag 条件请求）
+     */
+    @GetMapping("/**")
+    public void getObject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = URLUtil.decode(request.getRequestURI().substring(request.getContextPath().length()),
+                StandardCharsets.UTF_8);
+        // 上传时对象键以 / 开头，地址中会出现 storage//，两种形式都去掉开头的 /
+        String key = StrUtil.removePrefix(path, PATH_PREFIX).replaceFirst("^/+", "");
+        ThrowUtils.throwIf(StrUtil.isBlank(key), ErrorCode.NOT_FOUND_ERROR, "文件不存在");
+        Path localPath = objectStorage.getLocalPath(key);
+        ThrowUtils.throwIf(localPath == null, ErrorCode.NOT_FOUND_ERROR, "文件不存在");
+        // 对象键中的文件名包含时间和随机串，内容不会变化
+        response.setHeader("Cache-Control", "public, max-age=86400");
+        objectDownloadManager.downloadFile(localPath, PictureFormatUtils.getContentType(FileUtil.getSuffix(key)),
+                null, request, response);
+    }
+}
@@ -5,11 +5,12 @@ import cn.hutool.json.JSONUtil;
 import com.alan.alanpicturebackend.annotation.AuthCheck;
 import com.alan.alanpicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.alan.alanpicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
-import com.alan.alanpicturebackend.api.imagesearch.ImageSearchApiFacade;
 import com.alan.alanpicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.alan.alanpicturebackend.common.BaseResponse;
+import com.alan.alanpicturebackend.common.CursorPage;
 import com.alan.alanpicturebackend.common.DeleteRequest;
 import com.alan.alanpicturebackend.common.ResultUtils;
+import com.alan.alanpicturebackend.config.PictureVariantConfig;
 import com.alan.alanpicturebackend.constant.UserConstant;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
@@ -18,6 +19,14 @@ import com.alan.alanpicturebackend.manager.auth.SpaceUserAuthManager;
 import com.alan.alanpicturebackend.manager.auth.StpKit;
 import com.alan.alanpicturebackend.manager.auth.annotation.SaSpaceCheckPermission;
 import com.alan.alanpicturebackend.manager.auth.model.SpaceUserPermissionConstant;
+import com.alan.alanpicturebackend.manager.storage.ObjectDownloadManager;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.StorageOrphanGcJob;
+import com.alan.alanpicturebackend.manager.storage.model.StorageGcReport;
+import com.alan.alanpicturebackend.manager.upload.PictureChunkUploadManager;
+import com.alan.alanpicturebackend.manager.utils.PictureFormatUtils;
+import com.alan.alanpicturebackend.manager.variant.PictureVariantManager;
+import com.alan.alanpicturebackend.manager.variant.model.PictureVariant;
 import com.alan.alanpicturebackend.model.dto.picture.*;
 import com.alan.alanpicturebackend.model.dto.space.SpaceLevel;
 import com.alan.alanpicturebackend.model.entity.Picture;
@@ -25,8 +34,11 @@ import com.alan.alanpicturebackend.model.entity.Space;
 import com.alan.alanpicturebackend.model.entity.User;
 import com.alan.alanpicturebackend.model.enums.PictureReviewStatusEnum;
 import com.alan.alanpicturebackend.model.enums.SpaceLevelEnum;
+import com.alan.alanpicturebackend.model.vo.CrawlJobVO;
+import com.alan.alanpicturebackend.model.vo.PictureChunkUploadVO;
 import com.alan.alanpicturebackend.model.vo.PictureTagCategory;
 import com.alan.alanpicturebackend.model.vo.PictureVO;
+import com.alan.alanpicturebackend.service.CrawlJobService;
 import com.alan.alanpicturebackend.service.PictureService;
 import com.alan.alanpicturebackend.service.UserService;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -37,6 +49,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -59,6 +73,27 @@ public class PictureController {
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
+    @Resource
+    private PictureChunkUploadManager pictureChunkUploadManager;
+
+    @Resource
+    private CrawlJobService crawlJobService;
+
+    @Resource
+    private StorageOrphanGcJob storageOrphanGcJob;
+
+    @Resource
+    private PictureVariantManager pictureVariantManager;
+
+    @Resource
+    private PictureVariantConfig pictureVariantConfig;
+
+    @Resource
+    private ObjectDownloadManager objectDownloadManager;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
     /**
      * 上传图片（可重新上传）
      *
@@ -92,6 +127,64 @@ public class PictureController {
         return ResultUtils.success(pictureVO);
     }
 
+    /**
+     * 分块上传：初始化上传任务（可重新上传）
+     */
+    @PostMapping("/upload/chunk/init")
+    @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_UPLOAD)
+    public BaseResponse<PictureChunkUploadVO> initChunkUpload(
+            @RequestBody PictureChunkUploadInitRequest pictureChunkUploadInitRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureChunkUploadManager.initChunkUpload(pictureChunkUploadInitRequest, loginUser));
+    }
+
+    /**
+     * 分块上传：查询上传任务（断点续传时获取已上传的分块）
+     */
+    @GetMapping("/upload/chunk/get")
+    public BaseResponse<PictureChunkUploadVO> getChunkUpload(String uploadId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureChunkUploadManager.getChunkUpload(uploadId, loginUser));
+    }
+
+    /**
+     * 分块上传：上传单个分块
+     */
+    @PostMapping("/upload/chunk/part")
+    public BaseResponse<Boolean> uploadChunkPart(@RequestParam("uploadId") String uploadId,
+                                                 @RequestParam("partNumber") Integer partNumber,
+                                                 @RequestParam("file") MultipartFile multipartFile,
+                                                 HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        pictureChunkUploadManager.uploadPart(uploadId, partNumber, multipartFile, loginUser);
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 分块上传：合并分块并保存图片
+     */
+    @PostMapping("/upload/chunk/complete")
+    public BaseResponse<PictureVO> completeChunkUpload(@RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureChunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        PictureVO pictureVO = pictureService.uploadPictureByChunk(pictureChunkUploadRequest.getUploadId(), loginUser);
+        return ResultUtils.success(pictureVO);
+    }
+
+    /**
+     * 分块上传：取消上传任务
+     */
+    @PostMapping("/upload/chunk/abort")
+    public BaseResponse<Boolean> abortChunkUpload(@RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+                                                  HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureChunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        pictureChunkUploadManager.abortChunkUpload(pictureChunkUploadRequest.getUploadId(), loginUser);
+        return ResultUtils.success(true);
+    }
+
     /**
      * 删除图片
      *
@@ -197,6 +290,57 @@ public class PictureController {
         return ResultUtils.success(pictureVO);
     }
 
+    /**
+     * 获取指定宽度、格式的图片（按需生成，本地磁盘缓存）
+     *
+     * @param id       图片 id
+     * @param width    期望宽度（向上取整到档位，为空时使用最大档位）
+     * @param format   输出格式：webp（默认）、jpg、png
+     * @param response 响应
+     */
+    @GetMapping("/variant")
+    public void getPictureVariant(long id, Integer width, String format,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Picture picture = getViewablePicture(id);
+        // 从已打开的缓存文件发送，发送过程中文件被淘汰也不受影响
+        try (PictureVariant pictureVariant = pictureVariantManager.getVariant(picture, width, format)) {
+            response.setHeader("Cache-Control", "private, max-age=" + pictureVariantConfig.getMaxAgeSeconds());
+            objectDownloadManager.downloadChannel(pictureVariant.getChannel(), "\"" + pictureVariant.getName() + "\"",
+                    PictureFormatUtils.getContentType(pictureVariant.getFormat()), null, request, response);
+        }
+    }
+
+    /**
+     * 下载原图（支持 Range 断点续传、ETag 条件请求，流式发送）
+     *
+     * @param id 图片 id
+     */
+    @GetMapping("/download")
+    public void downloadPicture(long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Picture picture = getViewablePicture(id);
+        String prefix = objectStorage.getHost() + "/";
+        ThrowUtils.throwIf(!picture.getUrl().startsWith(prefix), ErrorCode.OPERATION_ERROR, "图片不在当前存储中");
+        String fileName = StrUtil.isBlank(picture.getPicFormat()) ? picture.getName() : picture.getName() + "." + picture.getPicFormat();
+        response.setHeader("Cache-Control", "private, no-cache");
+        objectDownloadManager.downloadObject(picture.getUrl().substring(prefix.length()),
+                PictureFormatUtils.getContentType(picture.getPicFormat()), fileName, request, response);
+    }
+
+    /**
+     * 查询当前用户可以查看的图片（与获取图片详情的权限一致）
+     */
+    private Picture getViewablePicture(long id) {
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        Picture picture = pictureService.getById(id);
+        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        if (picture.getSpaceId() != null) {
+            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
+        }
+        ThrowUtils.throwIf(!picture.getReviewStatus().equals(PictureReviewStatusEnum.PASS.getValue()), ErrorCode.NO_AUTH_ERROR);
+        return picture;
+    }
+
     /**
      * 获取图片分页列表（仅管理员）
      *
@@ -228,6 +372,21 @@ public class PictureController {
         return ResultUtils.success(listPictureVOByPage);
     }
 
+    /**
+     * 游标分页获取图片列表（无限滚动，不返回总数）
+     * 首次请求不传 cursor，之后传入上一页返回的 nextCursor
+     *
+     * @param pictureCursorQueryRequest 游标分页请求
+     * @param request                   请求
+     * @return 当前页数据和下一页游标
+     */
+    @PostMapping("/list/cursor/vo")
+    public BaseResponse<CursorPage<PictureVO>> listPictureVOByCursor(@RequestBody PictureCursorQueryRequest pictureCursorQueryRequest,
+                                                                     HttpServletRequest request) {
+        CursorPage<PictureVO> cursorPage = pictureService.listPictureVOByCursor(pictureCursorQueryRequest, request);
+        return ResultUtils.success(cursorPage);
+    }
+
     /**
      * 刷新图片分页 VO列表redis缓存（仅管理员）
      *
@@ -301,6 +460,7 @@ public class PictureController {
 
     /**
      * 批量抓取网络图片，（bing搜索引擎的图片）
+     * - 同步执行，抓取期间阻塞请求；数量较多时使用 /crawl/job/add 创建异步抓取任务
      *
      * @param pictureUploadByBatchRequest 抓取请求
      * @param request                     请求
@@ -315,6 +475,57 @@ public class PictureController {
         return ResultUtils.success(count);
     }
 
+    /**
+     * 创建图片抓取任务（异步执行，不阻塞请求，进度通过 /crawl/job/get 查询）
+     *
+     * @param pictureUploadByBatchRequest 抓取请求
+     * @param request                     请求
+     * @return 任务 id
+     */
+    @PostMapping("/crawl/job/add")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Long> addCrawlJob(@RequestBody PictureUploadByBatchRequest pictureUploadByBatchRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        long jobId = crawlJobService.addCrawlJob(pictureUploadByBatchRequest, loginUser);
+        return ResultUtils.success(jobId);
+    }
+
+    /**
+     * 查询图片抓取任务进度
+     *
+     * @param id 任务 id
+     * @return 任务状态、计数和已处理的明细
+     */
+    @GetMapping("/crawl/job/get")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CrawlJobVO> getCrawlJob(long id) {
+        return ResultUtils.success(crawlJobService.getCrawlJobVO(id));
+    }
+
+    /**
+     * 手动执行一次孤儿文件清理（默认试运行，只生成报告）
+     *
+     * @param dryRun 是否试运行
+     * @return 清理报告
+     */
+    @PostMapping("/gc/run")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<StorageGcReport> runStorageGc(@RequestParam(defaultValue = "true") boolean dryRun) {
+        StorageGcReport report = storageOrphanGcJob.run(dryRun);
+        ThrowUtils.throwIf(report == null, ErrorCode.OPERATION_ERROR, "清理任务正在执行，请稍后再试");
+        return ResultUtils.success(report);
+    }
+
+    /**
+     * 查询最近一次孤儿文件清理的报告
+     */
+    @GetMapping("/gc/report")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<StorageGcReport> getStorageGcReport() {
+        return ResultUtils.success(storageOrphanGcJob.getLastReport());
+    }
+
     /**
      * 获取空间级别信息
      *
@@ -334,7 +545,7 @@ public class PictureController {
     }
 
     /**
-     * 以图搜图
+     * 以图搜图（站内检索同一空间的相似图片，私有空间需要查看权限）
      */
     @PostMapping("/search/picture")
     public BaseResponse<List<ImageSearchResult>> searchPictureByPicture(@RequestBody SearchPictureByPictureRequest searchPictureByPictureRequest) {
@@ -343,7 +554,24 @@ public class PictureController {
         ThrowUtils.throwIf(pictureId == null || pictureId <= 0, ErrorCode.PARAMS_ERROR);
         Picture oldPicture = pictureService.getById(pictureId);
         ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR);
-        List<ImageSearchResult> resultList = ImageSearchApiFacade.searchImage(oldPicture.getUrl());
+        if (oldPicture.getSpaceId() != null) {
+            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
+        }
+        List<ImageSearchResult> resultList = pictureService.searchPictureByPicture(oldPicture);
+        return ResultUtils.success(resultList);
+    }
+
+    /**
+     * 按颜色搜图
+     */
+    @PostMapping("/search/color")
+    @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_VIEW)
+    public BaseResponse<List<PictureVO>> searchPictureByColor(@RequestBody SearchPictureByColorRequest searchPictureByColorRequest) {
+        ThrowUtils.throwIf(searchPictureByColorRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(StrUtil.isBlank(searchPictureByColorRequest.getPicColor()), ErrorCode.PARAMS_ERROR);
+        List<PictureVO> resultList = pictureService.searchPictureByColor(searchPictureByColorRequest.getSpaceId(),
+                searchPictureByColorRequest.getPicColor());
         return ResultUtils.success(resultList);
     }
 
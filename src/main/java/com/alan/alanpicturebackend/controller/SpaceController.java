@@ -9,6 +9,7 @@ import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
 import com.alan.alanpicturebackend.exception.ThrowUtils;
 import com.alan.alanpicturebackend.manager.auth.SpaceUserAuthManager;
+import com.alan.alanpicturebackend.manager.space.SpaceQuotaManager;
 import com.alan.alanpicturebackend.model.dto.space.SpaceAddRequest;
 import com.alan.alanpicturebackend.model.dto.space.SpaceEditRequest;
 import com.alan.alanpicturebackend.model.dto.space.SpaceQueryRequest;
@@ -45,6 +46,9 @@ public class SpaceController {
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
     /**
      * 创建空间
      *
@@ -82,6 +86,7 @@ public class SpaceController {
         // 操作数据库
         boolean result = spaceService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.SYSTEM_ERROR, "空间删除异常");
+        spaceQuotaManager.evict(id);
         return ResultUtils.success(true);
     }
 
@@ -109,6 +114,8 @@ public class SpaceController {
         // 操作数据库修改数据
         boolean result = spaceService.updateById(space);
         ThrowUtils.throwIf(!result, ErrorCode.SYSTEM_ERROR, "更新空间错误");
+        // 额度上限可能变化，清除额度缓存
+        spaceQuotaManager.evict(id);
         return ResultUtils.success(true);
     }
 
@@ -1,15 +1,14 @@
 package com.alan.alanpicturebackend.controller;
 
+import cn.hutool.core.io.FileUtil;
 import com.alan.alanpicturebackend.annotation.AuthCheck;
 import com.alan.alanpicturebackend.common.BaseResponse;
 import com.alan.alanpicturebackend.common.ResultUtils;
 import com.alan.alanpicturebackend.constant.UserConstant;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
-import com.alan.alanpicturebackend.manager.CosManager;
-import com.qcloud.cos.model.COSObject;
-import com.qcloud.cos.model.COSObjectInputStream;
-import com.qcloud.cos.utils.IOUtils;
+import com.alan.alanpicturebackend.manager.storage.ObjectDownloadManager;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,9 +17,10 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * @author alan
@@ -33,7 +33,10 @@ import java.io.IOException;
 public class TestFileController {
 
     @Resource
-    private CosManager cosManager;
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private ObjectDownloadManager objectDownloadManager;
 
     /**
      * 测试文件上传
@@ -48,64 +51,28 @@ public class TestFileController {
         String fileName = multipartFile.getOriginalFilename();  // 获取文件名
         String filepath = String.format("/test/%s", fileName);  // 拼接文件路径
 
-        // 上传文件
-        // 将文件转存到本地临时文件
-        File file = null;
-        try {
-            // 创建本地临时文件
-            file = File.createTempFile(filepath, null);
-            // 将文件传入到临时文件
-            multipartFile.transferTo(file);
-            // 调用上传
-            cosManager.putObject(filepath, file);
+        // 上传文件（直接使用上传流，长度已知）
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            objectStorage.putObject(filepath, inputStream, multipartFile.getSize());
             return ResultUtils.success(filepath);  // 返回文件路径
         } catch (Exception e) {
             log.error("file upload error, filepath = {}", filepath, e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
-        } finally {
-            if (file != null) {
-                // 删除临时文件资源
-                boolean delete = file.delete();
-                if (!delete) {
-                    log.error("file delete error, filepath = {}", filepath);
-                }
-            }
         }
     }
 
     /**
-     * 测试文件下载
+     * 测试文件下载（流式发送，支持 Range、ETag）
      *
      * @param filepath 文件路径
+     * @param request  请求对象
      * @param response 响应对象
      */
     @PostMapping("/test/Download/")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
-    public void testDownloadFile(String filepath, HttpServletResponse response) throws IOException {
-        COSObjectInputStream cosObjectInputStream = null;
-        try {
-            COSObject cosObject = cosManager.getObject(filepath);  // 获取到文件对象
-            cosObjectInputStream = cosObject.getObjectContent();  // 获取到文件的流
-
-            // 处理下载的流，将流转换为字节数组
-            byte[] byteArray = IOUtils.toByteArray(cosObjectInputStream);
-
-            // 设置响应头
-            response.setContentType("application/octet-stream;charset=UTF-8");
-            response.setHeader("Content-Disposition", "attachment; filename=" + filepath);
-
-            // 写入响应
-            response.getOutputStream().write(byteArray); // 写入一个字节数组
-            response.getOutputStream().flush();  // 刷新缓冲区
-        } catch (IOException e) {
-            log.error("file Download error, filepath = {}", filepath, e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "下载失败");
-        } finally {
-            // 释放流资源
-            if (cosObjectInputStream != null) {
-                cosObjectInputStream.close();
-            }
-        }
+    public void testDownloadFile(String filepath, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        objectDownloadManager.downloadObject(filepath, "application/octet-stream",
+                FileUtil.getName(filepath), request, response);
     }
 
 }
@@ -1,30 +1,47 @@
 package com.alan.alanpicturebackend.manager;
 
 import com.alan.alanpicturebackend.config.CosClientConfig;
+import com.alan.alanpicturebackend.manager.storage.AbstractObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
 import com.qcloud.cos.COSClient;
-import com.qcloud.cos.model.COSObject;
-import com.qcloud.cos.model.GetObjectRequest;
-import com.qcloud.cos.model.PutObjectRequest;
-import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.model.*;
 import com.qcloud.cos.model.ciModel.persistence.PicOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author alan
  * @Description: 腾讯云COS对象存储操作类
  * @Date: 2025/1/9 15:51
  */
+@Slf4j
 @Component
-public class CosManager {
+@ConditionalOnProperty(prefix = "storage", name = "type", havingValue = "cos", matchIfMissing = true)
+public class CosManager extends AbstractObjectStorage {
+    /**
+     * 批量删除单次请求最多包含的对象数
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     @Resource
     private CosClientConfig cosClientConfig;
 
     @Resource
     private COSClient cosClient;
 
+    @Override
+    public String getHost() {
+        return cosClientConfig.getHost();
+    }
+
     /**
      * 上传对象
      *
@@ -32,9 +49,19 @@ public class CosManager {
      * @param file 文件
      */
     public PutObjectResult putObject(String key, File file) {
-        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
-                file);
-        return cosClient.putObject(putObjectRequest);
+        return cosClient.putObject(buildPutObjectRequest(key, file));
+    }
+
+    /**
+     * 上传对象（流式上传，长度已知）
+     *
+     * @param key           唯一键
+     * @param inputStream   数据流
+     * @param contentLength 数据长度
+     */
+    @Override
+    public void putObject(String key, InputStream inputStream, long contentLength) {
+        cosClient.putObject(buildPutObjectRequest(key, inputStream, contentLength));
     }
 
     /**
@@ -42,9 +69,95 @@ public class CosManager {
      *
      * @param key 唯一键
      */
-    public COSObject getObject(String key) {
+    @Override
+    public InputStream getObject(String key) {
         GetObjectRequest getObjectRequest = new GetObjectRequest(cosClientConfig.getBucket(), key);
-        return cosClient.getObject(getObjectRequest);
+        return cosClient.getObject(getObjectRequest).getObjectContent();
+    }
+
+    /**
+     * 下载对象的一段数据（Range 请求）
+     *
+     * @param key   唯一键
+     * @param start 起始位置（包含）
+     * @param end   结束位置（包含）
+     */
+    @Override
+    public InputStream getObject(String key, long start, long end) {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(cosClientConfig.getBucket(), key);
+        getObjectRequest.setRange(start, end);
+        return cosClient.getObject(getObjectRequest).getObjectContent();
+    }
+
+    /**
+     * 删除对象
+     *
+     * @param key 唯一键
+     */
+    @Override
+    public void deleteObject(String key) {
+        cosClient.deleteObject(cosClientConfig.getBucket(), key);
+    }
+
+    /**
+     * 批量删除对象（每 1000 个一批）
+     *
+     * @param keyList 唯一键列表
+     */
+    @Override
+    public void deleteObjects(List<String> keyList) {
+        for (int from = 0; from < keyList.size(); from += DELETE_BATCH_SIZE) {
+            List<DeleteObjectsRequest.KeyVersion> keyVersionList = new ArrayList<>();
+            for (String key : keyList.subList(from, Math.min(from + DELETE_BATCH_SIZE, keyList.size()))) {
+                keyVersionList.add(new DeleteObjectsRequest.KeyVersion(key));
+            }
+            DeleteObjectsRequest deleteObjectsRequest = new DeleteObjectsRequest(cosClientConfig.getBucket());
+            deleteObjectsRequest.setKeys(keyVersionList);
+            cosClient.deleteObjects(deleteObjectsRequest);
+        }
+    }
+
+    /**
+     * 复制对象（服务端复制，不经过本机）
+     */
+    @Override
+    public void copyObject(String sourceKey, String targetKey) {
+        cosClient.copyObject(cosClientConfig.getBucket(), sourceKey, cosClientConfig.getBucket(), targetKey);
+    }
+
+    /**
+     * 按前缀列举对象
+     */
+    @Override
+    public List<ObjectSummary> listObjects(String prefix, String marker, int maxKeys) {
+        ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+        listObjectsRequest.setBucketName(cosClientConfig.getBucket());
+        listObjectsRequest.setPrefix(prefix);
+        listObjectsRequest.setMarker(marker);
+        listObjectsRequest.setMaxKeys(Math.min(maxKeys, DELETE_BATCH_SIZE));
+        ObjectListing objectListing = cosClient.listObjects(listObjectsRequest);
+        List<ObjectSummary> objectSummaryList = new ArrayList<>();
+        for (COSObjectSummary cosObjectSummary : objectListing.getObjectSummaries()) {
+            objectSummaryList.add(new ObjectSummary(cosObjectSummary.getKey(), cosObjectSummary.getSize(),
+                    cosObjectSummary.getLastModified()));
+        }
+        return objectSummaryList;
+    }
+
+    /**
+     * 查询对象元数据
+     */
+    @Override
+    public ObjectSummary headObject(String key) {
+        try {
+            ObjectMetadata objectMetadata = cosClient.getObjectMetadata(cosClientConfig.getBucket(), key);
+            return new ObjectSummary(key, objectMetadata.getContentLength(), objectMetadata.getLastModified());
+        } catch (CosServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -54,16 +167,108 @@ public class CosManager {
      * @param file 文件
      */
     public PutObjectResult putPictureObject(String key, File file) {
-        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
-                file);
+        return cosClient.putObject(buildPicturePutObjectRequest(key, file));
+    }
+
+    /**
+     * 构造上传请求
+     *
+     * @param key  唯一键
+     * @param file 文件
+     */
+    public PutObjectRequest buildPutObjectRequest(String key, File file) {
+        return new PutObjectRequest(cosClientConfig.getBucket(), key, file);
+    }
+
+    /**
+     * 构造上传请求（流式上传，长度已知）
+     *
+     * @param key           唯一键
+     * @param inputStream   数据流
+     * @param contentLength 数据长度
+     */
+    public PutObjectRequest buildPutObjectRequest(String key, InputStream inputStream, long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(contentLength);
+        return new PutObjectRequest(cosClientConfig.getBucket(), key, inputStream, objectMetadata);
+    }
+
+    /**
+     * 构造上传请求（附带图片信息）
+     *
+     * @param key  唯一键
+     * @param file 文件
+     */
+    public PutObjectRequest buildPicturePutObjectRequest(String key, File file) {
+        PutObjectRequest putObjectRequest = buildPutObjectRequest(key, file);
         // 对图片进行处理（获取基本信息也被视作为一种处理）
         PicOperations picOperations = new PicOperations();
         // 1 表示返回原图信息
         picOperations.setIsPicInfo(1);
         // 构造处理参数
         putObjectRequest.setPicOperations(picOperations);
-        return cosClient.putObject(putObjectRequest);
+        return putObjectRequest;
     }
 
+    /**
+     * 初始化分块上传
+     *
+     * @param key 唯一键
+     * @return 对象存储的分块上传 id
+     */
+    @Override
+    public String initiateMultipartUpload(String key) {
+        InitiateMultipartUploadRequest initiateMultipartUploadRequest = new InitiateMultipartUploadRequest(cosClientConfig.getBucket(), key);
+        return cosClient.initiateMultipartUpload(initiateMultipartUploadRequest).getUploadId();
+    }
+
+    /**
+     * 上传分块
+     *
+     * @param key         唯一键
+     * @param uploadId    分块上传 id
+     * @param partNumber  分块编号（从 1 开始）
+     * @param inputStream 分块数据流
+     * @param partSize    分块长度
+     * @return 分块 ETag，合并时使用
+     */
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        UploadPartRequest uploadPartRequest = new UploadPartRequest();
+        uploadPartRequest.setBucketName(cosClientConfig.getBucket());
+        uploadPartRequest.setKey(key);
+        uploadPartRequest.setUploadId(uploadId);
+        uploadPartRequest.setPartNumber(partNumber);
+        uploadPartRequest.setInputStream(inputStream);
+        uploadPartRequest.setPartSize(partSize);
+        return cosClient.uploadPart(uploadPartRequest).getETag();
+    }
+
+    /**
+     * 合并分块
+     *
+     * @param key          唯一键
+     * @param uploadId     分块上传 id
+     * @param partETagList 分块 ETag，第 i 个元素对应编号 i + 1 的分块
+     */
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETagList) {
+        List<PartETag> partETags = new ArrayList<>(partETagList.size());
+        for (int i = 0; i < partETagList.size(); i++) {
+            partETags.add(new PartETag(i + 1, partETagList.get(i)));
+        }
+        cosClient.completeMultipartUpload(new CompleteMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId, partETags));
+    }
+
+    /**
+     * 取消分块上传，释放已上传的分块
+     *
+     * @param key      唯一键
+     * @param uploadId 分块上传 id
+     */
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId));
+    }
 
 }
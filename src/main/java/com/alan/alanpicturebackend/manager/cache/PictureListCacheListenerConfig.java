@@ -0,0 +1,33 @@
+package com.alan.alanpicturebackend.manager.cache;
+
+import com.alan.alanpicturebackend.config.PictureListCacheConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import javax.annotation.Resource;
+
+/**
+ * @author alan
+ * @Description: 图片分页列表本地缓存失效通知的订阅配置
+ * @Date: 2025/10/27 10:40
+ */
+@Configuration
+public class PictureListCacheListenerConfig {
+
+    @Resource
+    private PictureListCacheConfig pictureListCacheConfig;
+
+    @Resource
+    private PictureListCacheManager pictureListCacheManager;
+
+    @Bean
+    public RedisMessageListenerContainer pictureListCacheListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(pictureListCacheManager, new ChannelTopic(pictureListCacheConfig.getInvalidateChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,251 @@
+package com.alan.alanpicturebackend.manager.cache;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.alan.alanpicturebackend.config.PictureListCacheConfig;
+import com.alan.alanpicturebackend.manager.cache.model.PictureListCacheKey;
+import com.alan.alanpicturebackend.model.vo.PictureVO;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 图片分页列表两级缓存（本地 Caffeine + Redis）
+ * - 本地缓存保存反序列化后的分页对象，命中时不访问 Redis、不解析 JSON
+ * - 本地缓存的分页对象被多个请求共享，写入时保存只读快照，读取时返回新的分页对象，调用方修改分页不影响缓存
+ * - 本地缓存按数量和过期时间限制，未命中时读取 Redis 并回填本地缓存
+ * - 缓存按范围（公共图库、每个空间）划分，Redis 缓存键包含全局和所在范围的版本号，失效时只需将版本号加一（一次 INCR），
+ *   旧版本的缓存不再被访问，到期后自然删除，失效耗时与缓存数量无关
+ * - 失效时通过 Redis 发布订阅通知所有节点清除该范围的本地缓存和版本号，本地缓存过期时间较短，兜底通知丢失的情况
+ * - 查询时确定缓存键（版本号），未命中时按同一个缓存键写回：查询数据库期间发生失效时，旧数据只会写入旧版本的键，不会被读到
+ * @Date: 2025/10/27 10:20
+ */
+@Slf4j
+@Component
+public class PictureListCacheManager implements MessageListener {
+
+    private static final String KEY_PREFIX = "alanPicture:listPictureVoByPage:";
+
+    /**
+     * 版本号（Redis String）的 key 前缀，后接范围
+     */
+    private static final String GENERATION_KEY_PREFIX = "alanPicture:listPictureVoByPage:generation:";
+
+    /**
+     * 全局范围：版本号变化时所有范围的缓存同时失效
+     */
+    private static final String GLOBAL_SCOPE = "all";
+
+    @Resource
+    private PictureListCacheConfig pictureListCacheConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本地缓存，key 为 范围:查询条件摘要
+     */
+    private Cache<String, Page<PictureVO>> localCache;
+
+    /**
+     * 本地缓存的版本号，key 为范围
+     */
+    private Cache<String, String> generationCache;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(pictureListCacheConfig.getLocalMaxSize())
+                .expireAfterWrite(pictureListCacheConfig.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        generationCache = Caffeine.newBuilder()
+                .maximumSize(pictureListCacheConfig.getLocalMaxSize())
+                .expireAfterWrite(pictureListCacheConfig.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        // 命中、未命中、淘汰次数和缓存大小：cache.gets、cache.evictions、cache.size（cache=picture.list.local）
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "picture.list.local");
+    }
+
+    /**
+     * 确定缓存键（读取当前版本号），查询和写回缓存都使用该缓存键
+     *
+     * @param spaceId 空间 id（为空表示公共图库）
+     * @param hashKey 查询条件摘要
+     */
+    public PictureListCacheKey getCacheKey(Long spaceId, String hashKey) {
+        String scope = getScope(spaceId);
+        return new PictureListCacheKey(scope, hashKey, getRedisKey(scope, hashKey));
+    }
+
+    /**
+     * 查询缓存：先查本地缓存，再查 Redis
+     *
+     * @param cacheKey 缓存键
+     * @return 缓存的分页数据，未命中时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public Page<PictureVO> get(PictureListCacheKey cacheKey) {
+        String localKey = cacheKey.getScope() + ":" + cacheKey.getHashKey();
+        Page<PictureVO> page = localCache.getIfPresent(localKey);
+        if (page != null) {
+            return copyOf(page);
+        }
+        String cachedValue = stringRedisTemplate.opsForValue().get(cacheKey.getRedisKey());
+        if (cachedValue == null) {
+            meterRegistry.counter("picture.list.redis", "result", "miss").increment();
+            return null;
+        }
+        meterRegistry.counter("picture.list.redis", "result", "hit").increment();
+        page = JSONUtil.toBean(cachedValue, Page.class);
+        localCache.put(localKey, snapshotOf(page));
+        return page;
+    }
+
+    /**
+     * 写入缓存（Redis 和本地缓存）
+     * Redis 写入查询时确定的缓存键；查询期间版本号已变化时不写入本地缓存
+     *
+     * @param cacheKey 查询缓存时得到的缓存键
+     * @param page     分页数据
+     */
+    public void put(PictureListCacheKey cacheKey, Page<PictureVO> page) {
+        // 设置过期时间：基础时间 + 随机时间 防止雪崩
+        int cacheExpireTime = pictureListCacheConfig.getRedisExpireSeconds()
+                + RandomUtil.randomInt(0, pictureListCacheConfig.getRedisExpireJitterSeconds() + 1);
+        stringRedisTemplate.opsForValue().set(cacheKey.getRedisKey(), JSONUtil.toJsonStr(page),
+                cacheExpireTime, TimeUnit.SECONDS);
+        if (cacheKey.getRedisKey().equals(getRedisKey(cacheKey.getScope(), cacheKey.getHashKey()))) {
+            localCache.put(cacheKey.getScope() + ":" + cacheKey.getHashKey(), snapshotOf(page));
+        }
+    }
+
+    /**
+     * 使一个范围（公共图库或某个空间）的列表缓存失效
+     * 当前存在事务时，在事务提交后才失效，避免其他请求在提交前用旧数据重新写入缓存
+     *
+     * @param spaceId 空间 id（为空表示公共图库）
+     */
+    public void invalidate(Long spaceId) {
+        String scope = getScope(spaceId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateQuietly(scope);
+                }
+            });
+        } else {
+            invalidateQuietly(scope);
+        }
+    }
+
+    /**
+     * 使所有范围的列表缓存失效
+     */
+    public void invalidateAll() {
+        invalidateScope(GLOBAL_SCOPE);
+    }
+
+    /**
+     * 收到其他节点（包括本节点）的失效通知，清除该范围的本地缓存和版本号
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String scope = new String(message.getBody(), StandardCharsets.UTF_8);
+        evictLocal(scope);
+        log.debug("收到图片列表缓存失效通知，范围 = {}", scope);
+    }
+
+    private void invalidateScope(String scope) {
+        stringRedisTemplate.opsForValue().increment(GENERATION_KEY_PREFIX + scope);
+        evictLocal(scope);
+        stringRedisTemplate.convertAndSend(pictureListCacheConfig.getInvalidateChannel(), scope);
+    }
+
+    private void invalidateQuietly(String scope) {
+        try {
+            invalidateScope(scope);
+        } catch (Exception e) {
+            // 缓存失效失败不影响业务，缓存到期后自然更新
+            log.warn("图片列表缓存失效失败，范围 = {}", scope, e);
+        }
+    }
+
+    private void evictLocal(String scope) {
+        if (GLOBAL_SCOPE.equals(scope)) {
+            generationCache.invalidateAll();
+            localCache.invalidateAll();
+            return;
+        }
+        generationCache.invalidate(scope);
+        String prefix = scope + ":";
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Redis 缓存键：前缀 + 全局版本号 + 范围 + 范围版本号 + 查询条件摘要
+     * 版本号优先使用本地缓存的值，未缓存时一次读取全局和范围的版本号
+     */
+    private String getRedisKey(String scope, String hashKey) {
+        String globalGeneration = generationCache.getIfPresent(GLOBAL_SCOPE);
+        String scopeGeneration = generationCache.getIfPresent(scope);
+        if (globalGeneration == null || scopeGeneration == null) {
+            List<String> generationList = stringRedisTemplate.opsForValue().multiGet(
+                    Arrays.asList(GENERATION_KEY_PREFIX + GLOBAL_SCOPE, GENERATION_KEY_PREFIX + scope));
+            globalGeneration = generationList == null ? "0" : StrUtil.nullToDefault(generationList.get(0), "0");
+            scopeGeneration = generationList == null ? "0" : StrUtil.nullToDefault(generationList.get(1), "0");
+            generationCache.put(GLOBAL_SCOPE, globalGeneration);
+            generationCache.put(scope, scopeGeneration);
+        }
+        return KEY_PREFIX + globalGeneration + ":" + scope + ":" + scopeGeneration + ":" + hashKey;
+    }
+
+    /**
+     * 本地缓存保存的只读快照：记录列表不可修改，分页对象不再返回给调用方
+     */
+    private static Page<PictureVO> snapshotOf(Page<PictureVO> page) {
+        Page<PictureVO> snapshot = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
+        snapshot.setRecords(Collections.unmodifiableList(new ArrayList<>(page.getRecords())));
+        return snapshot;
+    }
+
+    /**
+     * 由快照复制出返回给调用方的分页对象（记录对象共享，只读使用）
+     */
+    private static Page<PictureVO> copyOf(Page<PictureVO> snapshot) {
+        Page<PictureVO> page = new Page<>(snapshot.getCurrent(), snapshot.getSize(), snapshot.getTotal());
+        page.setRecords(new ArrayList<>(snapshot.getRecords()));
+        return page;
+    }
+
+    /**
+     * 缓存范围：公共图库为 public，空间为 space:{spaceId}
+     */
+    private static String getScope(Long spaceId) {
+        return spaceId == null ? "public" : "space:" + spaceId;
+    }
+}
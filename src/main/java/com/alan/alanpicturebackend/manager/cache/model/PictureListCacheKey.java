@@ -0,0 +1,29 @@
+package com.alan.alanpicturebackend.manager.cache.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 图片分页列表缓存键（查询缓存时确定版本号，未命中时按同一版本号写回）
+ * @Date: 2025/10/27 10:10
+ */
+@Data
+@AllArgsConstructor
+public class PictureListCacheKey {
+
+    /**
+     * 缓存范围：公共图库为 public，空间为 space:{spaceId}
+     */
+    private String scope;
+
+    /**
+     * 查询条件摘要
+     */
+    private String hashKey;
+
+    /**
+     * Redis 缓存键（包含查询时的全局和范围版本号）
+     */
+    private String redisKey;
+}
@@ -0,0 +1,103 @@
+package com.alan.alanpicturebackend.manager.crawl;
+
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.alan.alanpicturebackend.config.PictureCrawlConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author alan
+ * @Description: Bing 图片搜索，解析搜索结果页中的原图地址
+ * @Date: 2025/10/21 14:20
+ */
+@Slf4j
+@Component
+public class BingPictureSearcher {
+
+    @Resource
+    private PictureCrawlConfig pictureCrawlConfig;
+
+    /**
+     * 搜索图片
+     *
+     * @param searchText 搜索关键词
+     * @param first      从第几条结果开始（从 0 开始，用于翻页）
+     * @return 去重后的原图地址（按搜索结果顺序）
+     */
+    public List<String> search(String searchText, int first) {
+        // 添加抓取地址
+        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&first=%d&mmasync=1",
+                URLUtil.encode(searchText), first);
+        // 请求抓取地址
+        Document document;
+        try {
+            document = Jsoup.connect(fetchUrl)
+                    .timeout((int) pictureCrawlConfig.getSearchTimeout().toMillis())
+                    .get();
+        } catch (IOException e) {
+            log.error("获取页面失败：", e);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
+        }
+
+        /* 得到页面，获取页面的图片元素 */
+        Element div = document.getElementsByClass("dgControl").first(); // 获取到页面的外层元素
+        if (ObjUtil.isNull(div)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面元素失败");
+        }
+        Elements imgElementList = div.select(".iusc"); // 获取到内层元素的图片
+
+        // 同一批次内相同地址只抓取一次
+        Set<String> fileUrlSet = new LinkedHashSet<>();
+        for (Element imgElement : imgElementList) {
+            String fileUrl = parseFileUrl(imgElement);
+            if (StrUtil.isNotBlank(fileUrl)) {
+                fileUrlSet.add(fileUrl);
+            }
+        }
+        return new ArrayList<>(fileUrlSet);
+    }
+
+    /**
+     * 解析原图地址
+     *
+     * @return 解析失败时返回 null
+     */
+    private String parseFileUrl(Element imgElement) {
+        /* 获取原始高清图片（m 属性中的 murl 字段）*/
+        String dataM = imgElement.attr("m");
+        String fileUrl;
+        try {
+            JSONObject jsonObject = JSONUtil.parseObj(dataM);
+            fileUrl = jsonObject.getStr("murl");
+        } catch (Exception e) {
+            log.error("解析图片数据失败", e);
+            return null;
+        }
+        if (StrUtil.isBlank(fileUrl)) {
+            return null;
+        }
+        // 处理上传的图片地址，去除多余参数，防止上传时转义
+        int questionMarkIndex = fileUrl.indexOf("?");
+        if (questionMarkIndex > -1) {
+            fileUrl = fileUrl.substring(0, questionMarkIndex);
+        }
+        return fileUrl;
+    }
+}
@@ -0,0 +1,19 @@
+package com.alan.alanpicturebackend.manager.crawl;
+
+/**
+ * @author alan
+ * @Description: 抓取到的单张图片的处理逻辑（下载、上传、入库）
+ * @Date: 2025/10/21 14:35
+ */
+@FunctionalInterface
+public interface PictureCrawlHandler {
+
+    /**
+     * 处理单张图片
+     *
+     * @param fileUrl  图片地址
+     * @param sequence 图片序号（从 1 开始，成功的图片序号连续，可用于生成名称）
+     * @return 图片 id
+     */
+    Long handle(String fileUrl, int sequence) throws Exception;
+}
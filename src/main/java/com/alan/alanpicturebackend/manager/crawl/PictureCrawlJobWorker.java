@@ -0,0 +1,447 @@
+package com.alan.alanpicturebackend.manager.crawl;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.alan.alanpicturebackend.config.PictureCrawlConfig;
+import com.alan.alanpicturebackend.mapper.CrawlJobItemMapper;
+import com.alan.alanpicturebackend.mapper.CrawlJobMapper;
+import com.alan.alanpicturebackend.model.dto.picture.PictureUploadRequest;
+import com.alan.alanpicturebackend.model.entity.CrawlJob;
+import com.alan.alanpicturebackend.model.entity.CrawlJobItem;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.entity.User;
+import com.alan.alanpicturebackend.model.enums.CrawlJobItemStatusEnum;
+import com.alan.alanpicturebackend.model.enums.CrawlJobStatusEnum;
+import com.alan.alanpicturebackend.model.vo.PictureVO;
+import com.alan.alanpicturebackend.service.PictureService;
+import com.alan.alanpicturebackend.service.UserService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author alan
+ * @Description: 图片抓取任务执行器
+ * - 各节点定时扫描未完成的任务，通过数据库条件更新领取工作，多个节点可以共同处理同一个任务
+ * - 搜索：等待中的任务由一个节点领取，搜索候选地址并写入任务明细（同一任务内地址唯一）
+ * - 抓取：先在任务上占用名额（reservedCount < targetCount），再领取一条待处理的明细，成功数不会超过目标数量
+ * - 断点续抓：已成功的明细不会重复处理；节点宕机后超时未完成的明细重新变为待处理，由其他节点继续
+ * - 处理中的明细定时续期领取时间，避免耗时较长的上传被误判为超时；仍被回收时删除本次上传的图片
+ * @Date: 2025/10/22 11:00
+ */
+@Slf4j
+@Component
+public class PictureCrawlJobWorker {
+
+    /**
+     * 每次领取明细时查询的候选数量（从中挑选所在站点未达到并发上限的）
+     */
+    private static final int CLAIM_CANDIDATE_SIZE = 20;
+
+    /**
+     * 每次扫描的任务数
+     */
+    private static final int SCAN_JOB_SIZE = 10;
+
+    private static final int ERROR_MESSAGE_MAX_LENGTH = 512;
+
+    /**
+     * 当前节点名称
+     */
+    private final String workerName = "crawl-" + IdUtil.getSnowflakeNextIdStr();
+
+    /**
+     * 当前节点处理中的明细数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 当前节点对各站点处理中的明细数
+     */
+    private final Map<String, AtomicInteger> hostInFlightMap = new ConcurrentHashMap<>();
+
+    /**
+     * 当前节点处理中的明细 id，定时续期领取时间
+     */
+    private final Set<Long> inFlightItemIdSet = ConcurrentHashMap.newKeySet();
+
+    @Resource
+    private PictureCrawlConfig pictureCrawlConfig;
+
+    @Resource
+    private BingPictureSearcher bingPictureSearcher;
+
+    @Resource
+    private CrawlJobMapper crawlJobMapper;
+
+    @Resource
+    private CrawlJobItemMapper crawlJobItemMapper;
+
+    @Resource
+    private PictureService pictureService;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ThreadPoolExecutor pictureCrawlExecutor;
+
+    /**
+     * 扫描未完成的任务，领取搜索或抓取工作
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 2, timeUnit = TimeUnit.SECONDS)
+    public synchronized void dispatch() {
+        List<CrawlJob> crawlJobList;
+        try {
+            crawlJobList = crawlJobMapper.selectList(new LambdaQueryWrapper<CrawlJob>()
+                    .in(CrawlJob::getStatus, CrawlJobStatusEnum.WAITING.getValue(), CrawlJobStatusEnum.RUNNING.getValue())
+                    .orderByAsc(CrawlJob::getId)
+                    .last("LIMIT " + SCAN_JOB_SIZE));
+        } catch (Exception e) {
+            log.error("扫描图片抓取任务失败", e);
+            return;
+        }
+        for (CrawlJob crawlJob : crawlJobList) {
+            if (crawlJob.getStatus() == CrawlJobStatusEnum.WAITING.getValue()) {
+                if (claimSearch(crawlJob.getId())) {
+                    pictureCrawlExecutor.execute(() -> search(crawlJob));
+                }
+                continue;
+            }
+            while (inFlight.get() < pictureCrawlConfig.getConcurrency()) {
+                CrawlJobItem crawlJobItem = claimItem(crawlJob);
+                if (crawlJobItem == null) {
+                    break;
+                }
+                inFlight.incrementAndGet();
+                inFlightItemIdSet.add(crawlJobItem.getId());
+                hostInFlightMap.computeIfAbsent(getHost(crawlJobItem.getFileUrl()), key -> new AtomicInteger()).incrementAndGet();
+                pictureCrawlExecutor.execute(() -> {
+                    try {
+                        handle(crawlJob, crawlJobItem);
+                    } finally {
+                        hostInFlightMap.get(getHost(crawlJobItem.getFileUrl())).decrementAndGet();
+                        inFlightItemIdSet.remove(crawlJobItem.getId());
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 领取搜索工作（等待中 -> 搜索中）
+     */
+    private boolean claimSearch(long jobId) {
+        return crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                .set(CrawlJob::getStatus, CrawlJobStatusEnum.SEARCHING.getValue())
+                .eq(CrawlJob::getId, jobId)
+                .eq(CrawlJob::getStatus, CrawlJobStatusEnum.WAITING.getValue())) > 0;
+    }
+
+    /**
+     * 搜索候选地址并写入任务明细，写入完成后任务进入抓取中
+     */
+    private void search(CrawlJob crawlJob) {
+        try {
+            int candidateLimit = crawlJob.getTargetCount() * pictureCrawlConfig.getCandidateFactor();
+            Set<String> fileUrlSet = new LinkedHashSet<>();
+            int first = 0;
+            for (int page = 0; page < pictureCrawlConfig.getMaxSearchPages() && fileUrlSet.size() < candidateLimit; page++) {
+                List<String> fileUrlList = bingPictureSearcher.search(crawlJob.getSearchText(), first);
+                if (fileUrlList.isEmpty()) {
+                    break;
+                }
+                first += fileUrlList.size();
+                fileUrlSet.addAll(fileUrlList);
+            }
+            for (String fileUrl : fileUrlSet) {
+                CrawlJobItem crawlJobItem = new CrawlJobItem();
+                crawlJobItem.setJobId(crawlJob.getId());
+                crawlJobItem.setFileUrl(fileUrl);
+                crawlJobItem.setUrlHash(SecureUtil.md5(fileUrl));
+                crawlJobItem.setStatus(CrawlJobItemStatusEnum.PENDING.getValue());
+                try {
+                    crawlJobItemMapper.insert(crawlJobItem);
+                } catch (DuplicateKeyException e) {
+                    // 上次搜索中断前已写入
+                }
+            }
+            updateJobStatus(crawlJob.getId(), CrawlJobStatusEnum.SEARCHING, CrawlJobStatusEnum.RUNNING, null);
+            log.info("图片抓取任务搜索完成，jobId = {}，候选 {} 张", crawlJob.getId(), fileUrlSet.size());
+        } catch (Exception e) {
+            log.error("图片抓取任务搜索失败，jobId = {}", crawlJob.getId(), e);
+            updateJobStatus(crawlJob.getId(), CrawlJobStatusEnum.SEARCHING, CrawlJobStatusEnum.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * 领取一条待处理的明细
+     *
+     * @return 没有可处理的明细或已达到目标数量时返回 null
+     */
+    private CrawlJobItem claimItem(CrawlJob crawlJob) {
+        long jobId = crawlJob.getId();
+        // 1. 占用名额
+        boolean reserved = crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                .setSql("reservedCount = reservedCount + 1")
+                .eq(CrawlJob::getId, jobId)
+                .eq(CrawlJob::getStatus, CrawlJobStatusEnum.RUNNING.getValue())
+                .apply("reservedCount < targetCount")) > 0;
+        if (!reserved) {
+            finishIfDone(jobId);
+            return null;
+        }
+        // 2. 领取明细，跳过所在站点已达到并发上限的
+        List<CrawlJobItem> candidateList = crawlJobItemMapper.selectList(new LambdaQueryWrapper<CrawlJobItem>()
+                .eq(CrawlJobItem::getJobId, jobId)
+                .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.PENDING.getValue())
+                .orderByAsc(CrawlJobItem::getId)
+                .last("LIMIT " + CLAIM_CANDIDATE_SIZE));
+        for (CrawlJobItem candidate : candidateList) {
+            AtomicInteger hostInFlight = hostInFlightMap.get(getHost(candidate.getFileUrl()));
+            if (hostInFlight != null && hostInFlight.get() >= pictureCrawlConfig.getPerHostConcurrency()) {
+                continue;
+            }
+            Date claimTime = new Date();
+            boolean claimed = crawlJobItemMapper.update(null, new LambdaUpdateWrapper<CrawlJobItem>()
+                    .set(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.RUNNING.getValue())
+                    .set(CrawlJobItem::getClaimedBy, workerName)
+                    .set(CrawlJobItem::getClaimTime, claimTime)
+                    .eq(CrawlJobItem::getId, candidate.getId())
+                    .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.PENDING.getValue())) > 0;
+            if (claimed) {
+                return candidate;
+            }
+        }
+        // 3. 没有领取到，归还名额
+        releaseReservation(jobId);
+        if (candidateList.isEmpty()) {
+            finishIfDone(jobId);
+        }
+        return null;
+    }
+
+    /**
+     * 处理一条明细：上传图片，成功后按成功顺序分配序号并命名
+     */
+    private void handle(CrawlJob crawlJob, CrawlJobItem crawlJobItem) {
+        long start = System.nanoTime();
+        Long pictureId = null;
+        String errorMessage = null;
+        User loginUser = null;
+        try {
+            loginUser = userService.getById(crawlJob.getUserId());
+            PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+            pictureUploadRequest.setPicName(crawlJob.getNamePrefix());
+            PictureVO pictureVO = pictureService.uploadPicture(crawlJobItem.getFileUrl(), pictureUploadRequest, loginUser);
+            pictureId = pictureVO.getId();
+        } catch (Exception e) {
+            log.error("图片抓取失败，jobId = {}，url = {}", crawlJob.getId(), crawlJobItem.getFileUrl(), e);
+            errorMessage = StrUtil.maxLength(StrUtil.nullToDefault(e.getMessage(), e.getClass().getSimpleName()),
+                    ERROR_MESSAGE_MAX_LENGTH - 3);
+        }
+        long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            if (pictureId != null) {
+                if (!completeItem(crawlJob, crawlJobItem, pictureId, costMillis)) {
+                    // 明细已被回收并交给其他节点，删除本次上传的图片，避免同一地址入库两次
+                    pictureService.deletePicture(pictureId, loginUser);
+                }
+            } else {
+                failItem(crawlJob, crawlJobItem, errorMessage, costMillis);
+            }
+            finishIfDone(crawlJob.getId());
+        } catch (Exception e) {
+            // 明细保持处理中，超时后重新处理（内容相同的图片会复用已有存储）
+            log.error("更新图片抓取任务明细失败，jobId = {}，itemId = {}", crawlJob.getId(), crawlJobItem.getId(), e);
+        }
+    }
+
+    /**
+     * 标记明细成功
+     *
+     * @return 明细已被回收时返回 false
+     */
+    private boolean completeItem(CrawlJob crawlJob, CrawlJobItem crawlJobItem, long pictureId, long costMillis) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            // 锁住任务行，按成功顺序分配连续的序号
+            CrawlJob lockedJob = crawlJobMapper.selectOne(new LambdaQueryWrapper<CrawlJob>()
+                    .eq(CrawlJob::getId, crawlJob.getId())
+                    .last("FOR UPDATE"));
+            int sequence = lockedJob.getSuccessCount() + 1;
+            if (!updateClaimedItem(crawlJobItem, new LambdaUpdateWrapper<CrawlJobItem>()
+                    .set(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.SUCCEED.getValue())
+                    .set(CrawlJobItem::getPictureId, pictureId)
+                    .set(CrawlJobItem::getSequence, sequence)
+                    .set(CrawlJobItem::getCostMillis, costMillis))) {
+                return false;
+            }
+            crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                    .set(CrawlJob::getSuccessCount, sequence)
+                    .eq(CrawlJob::getId, crawlJob.getId()));
+            if (StrUtil.isNotBlank(crawlJob.getNamePrefix())) {
+                pictureService.lambdaUpdate()
+                        .set(Picture::getName, crawlJob.getNamePrefix() + sequence)
+                        .eq(Picture::getId, pictureId)
+                        .update();
+            }
+            return true;
+        }));
+    }
+
+    private void failItem(CrawlJob crawlJob, CrawlJobItem crawlJobItem, String errorMessage, long costMillis) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!updateClaimedItem(crawlJobItem, new LambdaUpdateWrapper<CrawlJobItem>()
+                    .set(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.FAILED.getValue())
+                    .set(CrawlJobItem::getErrorMessage, errorMessage)
+                    .set(CrawlJobItem::getCostMillis, costMillis))) {
+                return;
+            }
+            // 失败的明细不占用名额
+            crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                    .setSql("failedCount = failedCount + 1, reservedCount = reservedCount - 1")
+                    .eq(CrawlJob::getId, crawlJob.getId()));
+        });
+    }
+
+    /**
+     * 更新当前节点领取的明细
+     * - 处理超时的明细可能已被回收并交给其他节点，此时不再更新，避免重复计数
+     *
+     * @return 是否更新成功
+     */
+    private boolean updateClaimedItem(CrawlJobItem crawlJobItem, LambdaUpdateWrapper<CrawlJobItem> updateWrapper) {
+        boolean updated = crawlJobItemMapper.update(null, updateWrapper
+                .eq(CrawlJobItem::getId, crawlJobItem.getId())
+                .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.RUNNING.getValue())
+                .eq(CrawlJobItem::getClaimedBy, workerName)) > 0;
+        if (!updated) {
+            log.warn("图片抓取任务明细已被回收，忽略本次结果，jobId = {}，itemId = {}",
+                    crawlJobItem.getJobId(), crawlJobItem.getId());
+        }
+        return updated;
+    }
+
+    private void releaseReservation(long jobId) {
+        crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                .setSql("reservedCount = reservedCount - 1")
+                .eq(CrawlJob::getId, jobId));
+    }
+
+    /**
+     * 达到目标数量，或者没有待处理、处理中的明细时结束任务
+     */
+    private void finishIfDone(long jobId) {
+        CrawlJob crawlJob = crawlJobMapper.selectById(jobId);
+        if (crawlJob == null || crawlJob.getStatus() != CrawlJobStatusEnum.RUNNING.getValue()) {
+            return;
+        }
+        if (crawlJob.getSuccessCount() < crawlJob.getTargetCount()) {
+            Long unfinishedCount = crawlJobItemMapper.selectCount(new LambdaQueryWrapper<CrawlJobItem>()
+                    .eq(CrawlJobItem::getJobId, jobId)
+                    .in(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.PENDING.getValue(),
+                            CrawlJobItemStatusEnum.RUNNING.getValue()));
+            if (unfinishedCount > 0) {
+                return;
+            }
+        }
+        if (crawlJob.getSuccessCount() > 0) {
+            updateJobStatus(jobId, CrawlJobStatusEnum.RUNNING, CrawlJobStatusEnum.SUCCEED, null);
+        } else {
+            updateJobStatus(jobId, CrawlJobStatusEnum.RUNNING, CrawlJobStatusEnum.FAILED, "没有抓取到可用的图片");
+        }
+    }
+
+    private void updateJobStatus(long jobId, CrawlJobStatusEnum fromStatus, CrawlJobStatusEnum toStatus, String errorMessage) {
+        crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                .set(CrawlJob::getStatus, toStatus.getValue())
+                .set(errorMessage != null, CrawlJob::getErrorMessage, StrUtil.maxLength(errorMessage, ERROR_MESSAGE_MAX_LENGTH - 3))
+                .eq(CrawlJob::getId, jobId)
+                .eq(CrawlJob::getStatus, fromStatus.getValue()));
+    }
+
+    /**
+     * 续期当前节点处理中的明细，领取时间保持在超时时间以内
+     * 续期后领取时间变化，与之并发的超时回收（按领取时间条件更新）不会成功
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void renewClaims() {
+        if (inFlightItemIdSet.isEmpty()) {
+            return;
+        }
+        try {
+            crawlJobItemMapper.update(null, new LambdaUpdateWrapper<CrawlJobItem>()
+                    .set(CrawlJobItem::getClaimTime, new Date())
+                    .in(CrawlJobItem::getId, new ArrayList<>(inFlightItemIdSet))
+                    .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.RUNNING.getValue())
+                    .eq(CrawlJobItem::getClaimedBy, workerName));
+        } catch (Exception e) {
+            log.error("续期图片抓取任务明细失败", e);
+        }
+    }
+
+    /**
+     * 回收超时的工作（节点宕机、重启等）
+     * - 处理中的明细重新变为待处理，并归还名额
+     * - 搜索中的任务重新变为等待中（已写入的明细不会重复写入）
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void reclaimTimeout() {
+        Date deadline = new Date(System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(pictureCrawlConfig.getItemTimeoutMinutes()));
+        try {
+            List<CrawlJobItem> timeoutItemList = crawlJobItemMapper.selectList(new LambdaQueryWrapper<CrawlJobItem>()
+                    .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.RUNNING.getValue())
+                    .lt(CrawlJobItem::getClaimTime, deadline)
+                    .last("LIMIT 100"));
+            for (CrawlJobItem timeoutItem : timeoutItemList) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // 按领取时间做条件更新，多个节点同时回收时只有一个成功
+                    boolean reclaimed = crawlJobItemMapper.update(null, new LambdaUpdateWrapper<CrawlJobItem>()
+                            .set(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.PENDING.getValue())
+                            .set(CrawlJobItem::getClaimedBy, null)
+                            .set(CrawlJobItem::getClaimTime, null)
+                            .eq(CrawlJobItem::getId, timeoutItem.getId())
+                            .eq(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.RUNNING.getValue())
+                            .eq(CrawlJobItem::getClaimTime, timeoutItem.getClaimTime())) > 0;
+                    if (reclaimed) {
+                        releaseReservation(timeoutItem.getJobId());
+                    }
+                });
+                log.warn("图片抓取任务明细处理超时，重新处理，jobId = {}，itemId = {}，节点 = {}",
+                        timeoutItem.getJobId(), timeoutItem.getId(), timeoutItem.getClaimedBy());
+            }
+            crawlJobMapper.update(null, new LambdaUpdateWrapper<CrawlJob>()
+                    .set(CrawlJob::getStatus, CrawlJobStatusEnum.WAITING.getValue())
+                    .eq(CrawlJob::getStatus, CrawlJobStatusEnum.SEARCHING.getValue())
+                    .lt(CrawlJob::getUpdateTime, deadline));
+        } catch (Exception e) {
+            log.error("回收超时的图片抓取工作失败", e);
+        }
+    }
+
+    private String getHost(String fileUrl) {
+        try {
+            return StrUtil.nullToEmpty(URLUtil.url(fileUrl).getHost()).toLowerCase();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
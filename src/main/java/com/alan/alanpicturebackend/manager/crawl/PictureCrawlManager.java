@@ -0,0 +1,225 @@
+package com.alan.alanpicturebackend.manager.crawl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import com.alan.alanpicturebackend.config.PictureCrawlConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.manager.crawl.model.PictureCrawlItemResult;
+import com.alan.alanpicturebackend.manager.crawl.model.PictureCrawlResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 批量抓取图片
+ * - 搜索得到候选地址后并发下载、上传，同时处理的图片数和对同一站点的并发下载数都有上限
+ * - 同一批次内相同地址只处理一次
+ * - 同时处理中的图片数不超过剩余目标数，成功数达到目标后立即停止，不会多抓
+ * - 候选地址不足时自动翻页
+ * - 指标：picture.crawl.stage（stage = search / ingest / item，各阶段耗时）
+ * @Date: 2025/10/21 15:00
+ */
+@Slf4j
+@Component
+public class PictureCrawlManager {
+
+    @Resource
+    private PictureCrawlConfig pictureCrawlConfig;
+
+    @Resource
+    private BingPictureSearcher bingPictureSearcher;
+
+    @Resource
+    private ThreadPoolExecutor pictureCrawlExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Timer searchTimer;
+
+    private Timer ingestTimer;
+
+    private Timer itemTimer;
+
+    @PostConstruct
+    public void init() {
+        searchTimer = stageTimer("search");
+        ingestTimer = stageTimer("ingest");
+        itemTimer = stageTimer("item");
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("picture.crawl.stage")
+                .description("批量抓取各阶段耗时")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 搜索并抓取图片
+     *
+     * @param searchText 搜索关键词
+     * @param count      目标数量
+     * @param handler    单张图片的处理逻辑
+     */
+    public PictureCrawlResult crawl(String searchText, int count, PictureCrawlHandler handler) {
+        PictureCrawlResult result = new PictureCrawlResult();
+        Set<String> seenUrlSet = new HashSet<>();
+        int first = 0;
+        for (int page = 0; page < pictureCrawlConfig.getMaxSearchPages() && result.getSuccessCount() < count; page++) {
+            long searchStart = System.nanoTime();
+            List<String> fileUrlList = bingPictureSearcher.search(searchText, first);
+            long searchNanos = System.nanoTime() - searchStart;
+            searchTimer.record(searchNanos, TimeUnit.NANOSECONDS);
+            result.setSearchMillis(result.getSearchMillis() + TimeUnit.NANOSECONDS.toMillis(searchNanos));
+            if (fileUrlList.isEmpty()) {
+                break;
+            }
+            first += fileUrlList.size();
+            fileUrlList.removeIf(fileUrl -> !seenUrlSet.add(fileUrl));
+            crawl(fileUrlList, count, handler, result);
+        }
+        log.info("批量抓取完成，关键词：{}，目标 {} 张，成功 {} 张，失败 {} 张，候选 {} 张；搜索 {} ms，下载上传 {} ms，单张平均 {} ms、最长 {} ms",
+                searchText, count, result.getSuccessCount(), result.getFailedCount(), result.getCandidateCount(),
+                result.getSearchMillis(), result.getIngestMillis(), result.getItemAvgMillis(), result.getItemMaxMillis());
+        return result;
+    }
+
+    /**
+     * 并发抓取给定的候选地址，结果累加到 result 中
+     *
+     * @param fileUrlList 候选地址
+     * @param count       目标数量（含 result 中已成功的数量）
+     * @param handler     单张图片的处理逻辑
+     * @param result      抓取结果
+     */
+    public void crawl(List<String> fileUrlList, int count, PictureCrawlHandler handler, PictureCrawlResult result) {
+        long ingestStart = System.nanoTime();
+        // 同一批次内去重
+        LinkedList<String> pendingList = new LinkedList<>(new LinkedHashSet<>(fileUrlList));
+        result.setCandidateCount(result.getCandidateCount() + pendingList.size());
+        // 可分配的序号，失败的序号回收给下一张图片，保证成功的图片序号连续
+        PriorityQueue<Integer> freeSequenceQueue = new PriorityQueue<>();
+        for (int sequence = result.getSuccessCount() + 1; sequence <= count; sequence++) {
+            freeSequenceQueue.add(sequence);
+        }
+        Map<String, Integer> hostInFlightMap = new HashMap<>();
+        CompletionService<PictureCrawlItemResult> completionService = new ExecutorCompletionService<>(pictureCrawlExecutor);
+        int inFlight = 0;
+        try {
+            while (result.getSuccessCount() < count) {
+                // 1. 补充任务：不超过并发上限、单站点并发上限和剩余目标数
+                while (inFlight < pictureCrawlConfig.getConcurrency() && result.getSuccessCount() + inFlight < count) {
+                    String fileUrl = pollDispatchable(pendingList, hostInFlightMap);
+                    if (fileUrl == null) {
+                        break;
+                    }
+                    int sequence = freeSequenceQueue.remove();
+                    hostInFlightMap.merge(getHost(fileUrl), 1, Integer::sum);
+                    completionService.submit(() -> handle(fileUrl, sequence, handler));
+                    inFlight++;
+                }
+                if (inFlight == 0) {
+                    // 候选地址已用完
+                    break;
+                }
+                // 2. 等待任意一张图片处理完成
+                PictureCrawlItemResult itemResult = completionService.take().get();
+                inFlight--;
+                hostInFlightMap.merge(getHost(itemResult.getFileUrl()), -1, Integer::sum);
+                result.getItemList().add(itemResult);
+                if (itemResult.isSuccess()) {
+                    result.setSuccessCount(result.getSuccessCount() + 1);
+                } else {
+                    result.setFailedCount(result.getFailedCount() + 1);
+                    freeSequenceQueue.add(itemResult.getSequence());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "抓取被中断");
+        } catch (ExecutionException e) {
+            // handle 已捕获所有异常，不会执行到这里
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "抓取失败");
+        } finally {
+            long ingestNanos = System.nanoTime() - ingestStart;
+            ingestTimer.record(ingestNanos, TimeUnit.NANOSECONDS);
+            result.setIngestMillis(result.getIngestMillis() + TimeUnit.NANOSECONDS.toMillis(ingestNanos));
+            summarizeItems(result);
+        }
+    }
+
+    /**
+     * 取出第一个所在站点未达到并发上限的地址
+     *
+     * @return 没有可处理的地址时返回 null
+     */
+    private String pollDispatchable(LinkedList<String> pendingList, Map<String, Integer> hostInFlightMap) {
+        Iterator<String> iterator = pendingList.iterator();
+        while (iterator.hasNext()) {
+            String fileUrl = iterator.next();
+            if (hostInFlightMap.getOrDefault(getHost(fileUrl), 0) < pictureCrawlConfig.getPerHostConcurrency()) {
+                iterator.remove();
+                return fileUrl;
+            }
+        }
+        return null;
+    }
+
+    private String getHost(String fileUrl) {
+        try {
+            return StrUtil.nullToEmpty(URLUtil.url(fileUrl).getHost()).toLowerCase();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * 处理单张图片，捕获所有异常，记录为失败
+     */
+    private PictureCrawlItemResult handle(String fileUrl, int sequence, PictureCrawlHandler handler) {
+        PictureCrawlItemResult itemResult = new PictureCrawlItemResult();
+        itemResult.setFileUrl(fileUrl);
+        itemResult.setSequence(sequence);
+        long start = System.nanoTime();
+        try {
+            itemResult.setPictureId(handler.handle(fileUrl, sequence));
+            itemResult.setSuccess(true);
+        } catch (Exception e) {
+            log.error("图片抓取失败，url = {}", fileUrl, e);
+            itemResult.setErrorMessage(e.getMessage());
+        } finally {
+            long costNanos = System.nanoTime() - start;
+            itemTimer.record(costNanos, TimeUnit.NANOSECONDS);
+            itemResult.setCostMillis(TimeUnit.NANOSECONDS.toMillis(costNanos));
+        }
+        return itemResult;
+    }
+
+    private void summarizeItems(PictureCrawlResult result) {
+        List<PictureCrawlItemResult> itemList = result.getItemList();
+        if (itemList.isEmpty()) {
+            return;
+        }
+        long totalMillis = 0;
+        long maxMillis = 0;
+        for (PictureCrawlItemResult itemResult : itemList) {
+            totalMillis += itemResult.getCostMillis();
+            maxMillis = Math.max(maxMillis, itemResult.getCostMillis());
+        }
+        result.setItemAvgMillis(totalMillis / itemList.size());
+        result.setItemMaxMillis(maxMillis);
+    }
+}
@@ -0,0 +1,42 @@
+package com.alan.alanpicturebackend.manager.crawl.model;
+
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 单张图片的抓取结果
+ * @Date: 2025/10/21 14:40
+ */
+@Data
+public class PictureCrawlItemResult {
+
+    /**
+     * 图片地址
+     */
+    private String fileUrl;
+
+    /**
+     * 图片序号
+     */
+    private int sequence;
+
+    /**
+     * 是否成功
+     */
+    private boolean success;
+
+    /**
+     * 图片 id（成功时）
+     */
+    private Long pictureId;
+
+    /**
+     * 失败原因（失败时）
+     */
+    private String errorMessage;
+
+    /**
+     * 处理耗时（毫秒）
+     */
+    private long costMillis;
+}
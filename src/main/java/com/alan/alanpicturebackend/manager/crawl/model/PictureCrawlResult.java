@@ -0,0 +1,55 @@
+package com.alan.alanpicturebackend.manager.crawl.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 批量抓取结果（含各阶段耗时）
+ * @Date: 2025/10/21 14:45
+ */
+@Data
+public class PictureCrawlResult {
+
+    /**
+     * 成功数
+     */
+    private int successCount;
+
+    /**
+     * 失败数
+     */
+    private int failedCount;
+
+    /**
+     * 搜索到的候选地址数（已去重）
+     */
+    private int candidateCount;
+
+    /**
+     * 搜索页面耗时（毫秒）
+     */
+    private long searchMillis;
+
+    /**
+     * 下载、上传阶段耗时（毫秒，并发执行的墙钟时间）
+     */
+    private long ingestMillis;
+
+    /**
+     * 单张图片的最长处理耗时（毫秒）
+     */
+    private long itemMaxMillis;
+
+    /**
+     * 单张图片的平均处理耗时（毫秒）
+     */
+    private long itemAvgMillis;
+
+    /**
+     * 每张图片的处理结果（按完成顺序）
+     */
+    private List<PictureCrawlItemResult> itemList = new ArrayList<>();
+}
@@ -0,0 +1,231 @@
+package com.alan.alanpicturebackend.manager.derivative;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.IdUtil;
+import com.alan.alanpicturebackend.config.PictureDerivativeConfig;
+import com.alan.alanpicturebackend.config.PictureUploadConfig;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.cache.PictureListCacheManager;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.model.StoragePutRequest;
+import com.alan.alanpicturebackend.manager.upload.PictureUploadBuffer;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessExecutor;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author alan
+ * @Description: 图片衍生图（缩略图、压缩图）生成任务管理
+ * - 上传请求只保存原图，提交任务后立即返回
+ * - 任务写入 Redis Stream，由任意节点的消费者组成员异步生成衍生图并回写 thumbnailUrl、previewUrl
+ * - 任务只携带图片 id 和原图 url，重复消费时按数据库中的状态和 url 判断是否需要处理（幂等）
+ * - 内容相同的图片共用同一个原图 url，生成结果回写到所有引用该 url 的图片
+ * - 解码后顺带计算感知哈希（以图搜图使用），与衍生图一起回写
+ * @Date: 2025/10/18 10:30
+ */
+@Slf4j
+@Component
+public class PictureDerivativeManager {
+
+    public static final String FIELD_PICTURE_ID = "pictureId";
+
+    public static final String FIELD_URL = "url";
+
+    /**
+     * 当前节点的消费者名称（节点重启后使用新名称，旧名称下未确认的任务由重试任务认领）
+     */
+    @Getter
+    private final String consumerName = "derivative-" + IdUtil.getSnowflakeNextIdStr();
+
+    @Resource
+    private PictureDerivativeConfig pictureDerivativeConfig;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PictureProcessUtils pictureProcessUtils;
+
+    @Resource
+    private PictureProcessExecutor pictureProcessExecutor;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureListCacheManager pictureListCacheManager;
+
+    /**
+     * 提交衍生图生成任务（需要在图片记录提交到数据库之后调用）
+     * 提交失败不影响上传结果，图片保持“生成中”状态，由补偿任务重新投递
+     *
+     * @param pictureId 图片 id
+     * @param url       原图 url
+     */
+    public void submit(Long pictureId, String url) {
+        Map<String, String> body = new HashMap<>();
+        body.put(FIELD_PICTURE_ID, String.valueOf(pictureId));
+        body.put(FIELD_URL, url);
+        try {
+            stringRedisTemplate.opsForStream().add(
+                    StreamRecords.newRecord().in(pictureDerivativeConfig.getStreamKey()).ofMap(body));
+        } catch (Exception e) {
+            log.error("提交衍生图生成任务失败，等待补偿任务重新投递，pictureId = {}", pictureId, e);
+        }
+    }
+
+    /**
+     * 生成衍生图并回写图片记录
+     * - 引用该原图的图片均已删除、已重新上传（url 变化）或已生成完成时直接跳过
+     * - 两张衍生图全部上传成功才回写数据库，否则抛出异常交由重试
+     *
+     * @param pictureId 图片 id
+     * @param url       原图 url
+     */
+    public void generate(Long pictureId, String url) throws IOException {
+        boolean pending = pictureMapper.exists(new LambdaQueryWrapper<Picture>()
+                .eq(Picture::getUrl, url)
+                .eq(Picture::getDerivativeStatus, PictureDerivativeStatusEnum.PENDING.getValue()));
+        if (!pending) {
+            log.info("图片已删除、已更新或衍生图已生成，跳过任务，pictureId = {}", pictureId);
+            return;
+        }
+        // 衍生图与原图同目录、同前缀：xxx.jpg => xxx_thumbnail.jpg、xxx_preview.webp
+        String key = getKey(url);
+        String suffix = FileUtil.getSuffix(key);
+        String keyPrefix = key.substring(0, key.length() - suffix.length() - 1);
+        String thumbnailKey = String.format("%s_thumbnail.%s", keyPrefix, suffix);
+        String previewKey = String.format("%s_preview.webp", keyPrefix);
+
+        long memoryThreshold = pictureUploadConfig.getMemoryThreshold().toBytes();
+        PictureProcessResult processResult;
+        try (PictureUploadBuffer originalBuffer = new PictureUploadBuffer(memoryThreshold, suffix);
+             PictureUploadBuffer thumbnailBuffer = new PictureUploadBuffer(memoryThreshold, suffix);
+             PictureUploadBuffer previewBuffer = new PictureUploadBuffer(memoryThreshold, "webp")) {
+            // 1. 下载原图
+            try (InputStream inputStream = objectStorage.getObject(key);
+                 OutputStream outputStream = originalBuffer.getOutputStream()) {
+                IoUtil.copy(inputStream, outputStream);
+            }
+            // 2. 原图只解码一次，同时生成缩略图和压缩图（在图片处理线程池中执行，繁忙时抛出异常交由重试）
+            processResult = pictureProcessExecutor.execute(() -> {
+                try (ImageInputStream originalImage = originalBuffer.openImageInputStream();
+                     OutputStream thumbnailOutput = thumbnailBuffer.getOutputStream();
+                     OutputStream previewOutput = previewBuffer.getOutputStream()) {
+                    return pictureProcessUtils.processPicture(originalImage, thumbnailOutput, suffix, previewOutput);
+                }
+            });
+            // 3. 并发上传衍生图（任意一个失败则全部回滚）
+            try (InputStream thumbnailInput = thumbnailBuffer.openInputStream();
+                 InputStream previewInput = previewBuffer.openInputStream()) {
+                objectStorage.putObjectsAllOrNothing(Arrays.asList(
+                        new StoragePutRequest(thumbnailKey, thumbnailInput, thumbnailBuffer.size()),
+                        new StoragePutRequest(previewKey, previewInput, previewBuffer.size())
+                ));
+            }
+        }
+
+        // 4. 回写所有引用该原图的图片记录，以原图 url 作为条件，防止覆盖期间重新上传的图片
+        Picture updatePicture = new Picture();
+        updatePicture.setThumbnailUrl(objectStorage.getHost() + "/" + thumbnailKey);
+        updatePicture.setPreviewUrl(objectStorage.getHost() + "/" + previewKey);
+        updatePicture.setDerivativeStatus(PictureDerivativeStatusEnum.DONE.getValue());
+        updatePicture.setPerceptualHash(processResult.getPerceptualHash());
+        updatePicture.setPicColor(processResult.getPicColor());
+        int rows = pictureMapper.update(updatePicture, new LambdaUpdateWrapper<Picture>()
+                .eq(Picture::getUrl, url));
+        if (rows == 0) {
+            // 生成期间图片被删除或重新上传，衍生图已无引用
+            log.info("图片在生成衍生图期间已变更，删除生成结果，pictureId = {}", pictureId);
+            objectStorage.deleteObject(thumbnailKey);
+            objectStorage.deleteObject(previewKey);
+            return;
+        }
+        // 5. 使引用该原图的图片所在范围（公共图库、各空间）的列表缓存失效
+        List<Picture> spacePictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getSpaceId)
+                .eq(Picture::getUrl, url)
+                .groupBy(Picture::getSpaceId));
+        Set<Long> spaceIdSet = new HashSet<>();
+        for (Picture spacePicture : spacePictureList) {
+            // 公共图库的 spaceId 为 null，整行为 null 时 MyBatis 返回 null 元素
+            spaceIdSet.add(spacePicture == null ? null : spacePicture.getSpaceId());
+        }
+        for (Long spaceId : spaceIdSet) {
+            pictureListCacheManager.invalidate(spaceId);
+        }
+    }
+
+    /**
+     * 任务处理完成：确认并从队列中移除，避免 Stream 无限增长
+     */
+    public void acknowledge(RecordId recordId) {
+        stringRedisTemplate.opsForStream().acknowledge(
+                pictureDerivativeConfig.getStreamKey(), pictureDerivativeConfig.getConsumerGroup(), recordId);
+        stringRedisTemplate.opsForStream().delete(pictureDerivativeConfig.getStreamKey(), recordId);
+    }
+
+    /**
+     * 任务超过最大重试次数：转入死信队列，确认原任务，并把图片标记为生成失败
+     *
+     * @param record        任务
+     * @param deliveryCount 已投递次数
+     */
+    public void deadLetter(MapRecord<String, String, String> record, long deliveryCount) {
+        Map<String, String> body = new HashMap<>(record.getValue());
+        body.put("recordId", record.getId().getValue());
+        body.put("deliveryCount", String.valueOf(deliveryCount));
+        stringRedisTemplate.opsForStream().add(
+                StreamRecords.newRecord().in(pictureDerivativeConfig.getDeadLetterKey()).ofMap(body));
+        acknowledge(record.getId());
+
+        Long pictureId = Long.valueOf(record.getValue().get(FIELD_PICTURE_ID));
+        Picture updatePicture = new Picture();
+        updatePicture.setDerivativeStatus(PictureDerivativeStatusEnum.FAILED.getValue());
+        pictureMapper.update(updatePicture, new LambdaUpdateWrapper<Picture>()
+                .eq(Picture::getUrl, record.getValue().get(FIELD_URL))
+                .eq(Picture::getDerivativeStatus, PictureDerivativeStatusEnum.PENDING.getValue()));
+        log.error("衍生图生成失败次数过多，已转入死信队列，pictureId = {}, recordId = {}", pictureId, record.getId());
+    }
+
+    /**
+     * 由图片 url 得到对象存储中的 key
+     */
+    private String getKey(String url) {
+        String prefix = objectStorage.getHost() + "/";
+        ThrowUtils.throwIf(!url.startsWith(prefix), ErrorCode.PARAMS_ERROR, "图片地址不属于当前存储");
+        return url.substring(prefix.length());
+    }
+}
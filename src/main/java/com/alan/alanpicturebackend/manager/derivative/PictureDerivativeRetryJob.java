@@ -0,0 +1,119 @@
+package com.alan.alanpicturebackend.manager.derivative;
+
+import com.alan.alanpicturebackend.config.PictureDerivativeConfig;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 衍生图生成任务的重试与补偿
+ * - 重试：扫描消费者组中超时未确认的任务，认领（XCLAIM）后重新处理；超过最大投递次数则转入死信队列
+ * - 补偿：扫描长时间处于“生成中”的图片（如提交任务时 Redis 不可用），重新投递任务
+ * @Date: 2025/10/18 11:30
+ */
+@Slf4j
+@Component
+public class PictureDerivativeRetryJob {
+
+    /**
+     * 补偿任务分布式锁，多个节点同一时间只有一个执行扫描
+     */
+    private static final String SWEEP_LOCK_KEY = "alanPicture:derivative:sweepLock";
+
+    @Resource
+    private PictureDerivativeConfig pictureDerivativeConfig;
+
+    @Resource
+    private PictureDerivativeManager pictureDerivativeManager;
+
+    @Resource
+    private PictureDerivativeStreamListener pictureDerivativeStreamListener;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 重试超时未确认的任务
+     */
+    @Scheduled(initialDelay = 30, fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void retryPending() {
+        String streamKey = pictureDerivativeConfig.getStreamKey();
+        String consumerGroup = pictureDerivativeConfig.getConsumerGroup();
+        Duration minIdle = Duration.ofSeconds(pictureDerivativeConfig.getRetryIdleSeconds());
+        PendingMessages pendingMessages;
+        try {
+            pendingMessages = stringRedisTemplate.opsForStream()
+                    .pending(streamKey, consumerGroup, Range.unbounded(), pictureDerivativeConfig.getBatchSize());
+        } catch (Exception e) {
+            log.error("查询待确认的衍生图生成任务失败", e);
+            return;
+        }
+        for (PendingMessage pendingMessage : pendingMessages) {
+            if (pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                continue;
+            }
+            // 认领是原子操作，多个节点同时扫描时只有一个能认领成功
+            List<ByteRecord> claimedList = stringRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                    connection.streamCommands().xClaim(streamKey.getBytes(StandardCharsets.UTF_8), consumerGroup,
+                            pictureDerivativeManager.getConsumerName(),
+                            RedisStreamCommands.XClaimOptions.minIdle(minIdle).ids(pendingMessage.getId())));
+            if (claimedList == null || claimedList.isEmpty()) {
+                continue;
+            }
+            MapRecord<String, String, String> record = claimedList.get(0).deserialize(StringRedisSerializer.UTF_8);
+            if (pendingMessage.getTotalDeliveryCount() >= pictureDerivativeConfig.getMaxAttempts()) {
+                pictureDerivativeManager.deadLetter(record, pendingMessage.getTotalDeliveryCount());
+            } else {
+                log.info("重试衍生图生成任务，recordId = {}, 已投递次数 = {}", record.getId(), pendingMessage.getTotalDeliveryCount());
+                pictureDerivativeStreamListener.onMessage(record);
+            }
+        }
+    }
+
+    /**
+     * 重新投递长时间处于“生成中”的图片
+     * 生成任务是幂等的，与仍在重试中的任务重复也不会产生错误结果
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void resubmitStale() {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(SWEEP_LOCK_KEY, pictureDerivativeManager.getConsumerName(),
+                Duration.ofMinutes(4));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        Date staleTime = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(pictureDerivativeConfig.getStaleMinutes()));
+        List<Picture> pictureList = pictureMapper.selectPage(new Page<>(1, 100, false), new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getUrl)
+                .eq(Picture::getDerivativeStatus, PictureDerivativeStatusEnum.PENDING.getValue())
+                .lt(Picture::getUpdateTime, staleTime)).getRecords();
+        for (Picture picture : pictureList) {
+            log.info("图片衍生图长时间未生成，重新投递任务，pictureId = {}", picture.getId());
+            pictureDerivativeManager.submit(picture.getId(), picture.getUrl());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.alan.alanpicturebackend.manager.derivative;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.config.PictureDerivativeConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author alan
+ * @Description: 衍生图生成任务 Redis Stream 消费者配置
+ * - 所有节点加入同一个消费者组，每个节点启动 concurrency 个消费者
+ * - 关闭自动确认，由 {@link PictureDerivativeStreamListener} 处理成功后手动确认
+ * @Date: 2025/10/18 11:10
+ */
+@Slf4j
+@Configuration
+public class PictureDerivativeStreamConfig {
+
+    @Resource
+    private PictureDerivativeConfig pictureDerivativeConfig;
+
+    @Resource
+    private PictureDerivativeStreamListener pictureDerivativeStreamListener;
+
+    @Resource
+    private PictureDerivativeManager pictureDerivativeManager;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pictureDerivativeExecutor() {
+        return Executors.newFixedThreadPool(pictureDerivativeConfig.getConcurrency(),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureDerivative-").build());
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public StreamMessageListenerContainer<String, MapRecord<String, String, String>> pictureDerivativeListenerContainer(
+            RedisConnectionFactory redisConnectionFactory, ExecutorService pictureDerivativeExecutor) {
+        createConsumerGroup();
+        StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                        .serializer(StringRedisSerializer.UTF_8)
+                        .batchSize(pictureDerivativeConfig.getBatchSize())
+                        .pollTimeout(Duration.ofSeconds(1))
+                        .executor(pictureDerivativeExecutor)
+                        .build();
+        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
+                StreamMessageListenerContainer.create(redisConnectionFactory, options);
+        for (int i = 0; i < pictureDerivativeConfig.getConcurrency(); i++) {
+            StreamMessageListenerContainer.StreamReadRequest<String> readRequest = StreamMessageListenerContainer.StreamReadRequest
+                    .builder(StreamOffset.create(pictureDerivativeConfig.getStreamKey(), ReadOffset.lastConsumed()))
+                    .consumer(Consumer.from(pictureDerivativeConfig.getConsumerGroup(), pictureDerivativeManager.getConsumerName() + "-" + i))
+                    .autoAcknowledge(false)
+                    // 单次读取出错（如 Redis 短暂不可用）不取消订阅，继续轮询
+                    .cancelOnError(throwable -> false)
+                    .errorHandler(throwable -> log.error("读取衍生图生成任务失败", throwable))
+                    .build();
+            container.register(readRequest, pictureDerivativeStreamListener);
+        }
+        return container;
+    }
+
+    /**
+     * 创建消费者组（Stream 不存在时一并创建），已存在时忽略
+     */
+    private void createConsumerGroup() {
+        byte[] streamKey = pictureDerivativeConfig.getStreamKey().getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(streamKey, pictureDerivativeConfig.getConsumerGroup(), ReadOffset.from("0"), true));
+        } catch (RedisSystemException e) {
+            if (!StrUtil.contains(e.getMessage(), "BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+}
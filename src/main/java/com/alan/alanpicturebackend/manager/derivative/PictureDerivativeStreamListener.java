@@ -0,0 +1,36 @@
+package com.alan.alanpicturebackend.manager.derivative;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * @author alan
+ * @Description: 衍生图生成任务消费者
+ * - 处理成功才确认任务；失败时不确认，任务留在消费者组的待确认列表中，由重试任务重新认领
+ * @Date: 2025/10/18 11:00
+ */
+@Slf4j
+@Component
+public class PictureDerivativeStreamListener implements StreamListener<String, MapRecord<String, String, String>> {
+
+    @Resource
+    private PictureDerivativeManager pictureDerivativeManager;
+
+    @Override
+    public void onMessage(MapRecord<String, String, String> record) {
+        Map<String, String> body = record.getValue();
+        Long pictureId = Long.valueOf(body.get(PictureDerivativeManager.FIELD_PICTURE_ID));
+        try {
+            pictureDerivativeManager.generate(pictureId, body.get(PictureDerivativeManager.FIELD_URL));
+        } catch (Exception e) {
+            log.error("衍生图生成失败，等待重试，pictureId = {}, recordId = {}", pictureId, record.getId(), e);
+            return;
+        }
+        pictureDerivativeManager.acknowledge(record.getId());
+    }
+}
@@ -0,0 +1,232 @@
+package com.alan.alanpicturebackend.manager.similar;
+
+import com.alan.alanpicturebackend.manager.utils.PerceptualHashUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author alan
+ * @Description: 感知哈希相似检索索引（BK 树，按汉明距离组织）
+ * - 每个节点保存一个哈希以及哈希相同的全部图片 id，子节点按与父节点的距离（0 ~ 64）分组
+ * - 查询距离 d 以内的邻居时，由三角不等式只需访问距离在 [x - d, x + d] 的子树
+ * - 删除只从节点移除图片 id，空节点过多时整体重建
+ * - 读写锁保护，查询之间互不阻塞
+ * @Date: 2025/10/21 14:20
+ */
+public class PerceptualHashIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 图片 id => 哈希和所在空间
+     */
+    private final Map<Long, Entry> entryMap = new HashMap<>();
+
+    private Node root;
+
+    private int nodeCount;
+
+    private int emptyNodeCount;
+
+    /**
+     * 添加或更新图片
+     *
+     * @param pictureId 图片 id
+     * @param hash      感知哈希
+     * @param spaceId   空间 id（公共图库为 null）
+     */
+    public void put(long pictureId, long hash, Long spaceId) {
+        lock.writeLock().lock();
+        try {
+            Entry oldEntry = entryMap.put(pictureId, new Entry(hash, spaceId));
+            if (oldEntry != null) {
+                if (oldEntry.hash == hash) {
+                    return;
+                }
+                removeFromNode(pictureId, oldEntry.hash);
+            }
+            insert(pictureId, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图片
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            Entry oldEntry = entryMap.remove(pictureId);
+            if (oldEntry != null) {
+                removeFromNode(pictureId, oldEntry.hash);
+                if (emptyNodeCount > 1024 && emptyNodeCount * 2 > nodeCount) {
+                    rebuild();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询距离不超过 maxDistance 的图片，按距离从近到远排序
+     *
+     * @param hash        目标哈希
+     * @param maxDistance 最大汉明距离
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        List<Match> matchList = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return matchList;
+            }
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                int distance = PerceptualHashUtils.distance(hash, node.hash);
+                if (distance <= maxDistance) {
+                    for (Long pictureId : node.pictureIdSet) {
+                        matchList.add(new Match(pictureId, entryMap.get(pictureId).spaceId, distance));
+                    }
+                }
+                if (node.children == null) {
+                    continue;
+                }
+                for (int childDistance = Math.max(0, distance - maxDistance);
+                     childDistance <= distance + maxDistance; childDistance++) {
+                    Node child = node.children.get(childDistance);
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matchList.sort(Comparator.comparingInt(Match::getDistance));
+        return matchList;
+    }
+
+    /**
+     * 查询图片在索引中的哈希
+     *
+     * @return 不在索引中时返回 null
+     */
+    public Long getHash(long pictureId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entryMap.get(pictureId);
+            return entry == null ? null : entry.hash;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(long pictureId, long hash) {
+        if (root == null) {
+            root = new Node(hash);
+            root.pictureIdSet.add(pictureId);
+            nodeCount++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = PerceptualHashUtils.distance(hash, node.hash);
+            if (distance == 0) {
+                if (node.pictureIdSet.isEmpty()) {
+                    emptyNodeCount--;
+                }
+                node.pictureIdSet.add(pictureId);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new HashMap<>();
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                child = new Node(hash);
+                child.pictureIdSet.add(pictureId);
+                node.children.put(distance, child);
+                nodeCount++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void removeFromNode(long pictureId, long hash) {
+        Node node = root;
+        while (node != null) {
+            int distance = PerceptualHashUtils.distance(hash, node.hash);
+            if (distance == 0) {
+                if (node.pictureIdSet.remove(pictureId) && node.pictureIdSet.isEmpty()) {
+                    emptyNodeCount++;
+                }
+                return;
+            }
+            node = node.children == null ? null : node.children.get(distance);
+        }
+    }
+
+    private void rebuild() {
+        root = null;
+        nodeCount = 0;
+        emptyNodeCount = 0;
+        for (Map.Entry<Long, Entry> entry : entryMap.entrySet()) {
+            insert(entry.getKey(), entry.getValue().hash);
+        }
+    }
+
+    private static class Node {
+
+        private final long hash;
+
+        private final Set<Long> pictureIdSet = new HashSet<>(2);
+
+        /**
+         * 与当前节点的距离 => 子节点，没有子节点时为 null（大部分节点是叶子）
+         */
+        private Map<Integer, Node> children;
+
+        private Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final long hash;
+
+        private final Long spaceId;
+    }
+
+    /**
+     * 查询结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Match {
+
+        private final long pictureId;
+
+        private final Long spaceId;
+
+        private final int distance;
+    }
+}
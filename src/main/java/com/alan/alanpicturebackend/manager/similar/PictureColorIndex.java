@@ -0,0 +1,215 @@
+package com.alan.alanpicturebackend.manager.similar;
+
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils;
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils.DominantColor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author alan
+ * @Description: 图片主色调检索索引（按空间划分，每个空间把 RGB 颜色空间量化为 512 个色块）
+ * - 每张图片的每个主色登记在所在色块中，查询时只访问与目标颜色距离可能在阈值内的色块，再逐个计算精确距离
+ * - 相似度 = 各主色的 占比 × (1 - 距离 / 最大距离) 之和，颜色越接近、面积越大得分越高
+ * - 读写锁保护，查询之间互不阻塞
+ * @Date: 2025/10/22 11:00
+ */
+public class PictureColorIndex {
+
+    private static final int CELL_BITS = DominantColorUtils.QUANTIZE_BITS;
+
+    private static final int CELL_WIDTH = 1 << (8 - CELL_BITS);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 图片 id => 所在空间和主色
+     */
+    private final Map<Long, Entry> entryMap = new HashMap<>();
+
+    /**
+     * 空间 id（公共图库为 null）=> 色块编号 => 图片 id => 落在该色块内的主色（颜色和占比打包为 int）
+     */
+    private final Map<Long, List<Map<Long, int[]>>> spaceCellMap = new HashMap<>();
+
+    /**
+     * 添加或更新图片
+     *
+     * @param pictureId 图片 id
+     * @param signature 主色调签名
+     * @param spaceId   空间 id（公共图库为 null）
+     */
+    public void put(long pictureId, String signature, Long spaceId) {
+        List<DominantColor> colorList = DominantColorUtils.parseSignature(signature);
+        lock.writeLock().lock();
+        try {
+            removeEntry(pictureId);
+            if (colorList.isEmpty()) {
+                return;
+            }
+            int[] packedColors = new int[colorList.size()];
+            for (int i = 0; i < packedColors.length; i++) {
+                packedColors[i] = pack(colorList.get(i));
+            }
+            entryMap.put(pictureId, new Entry(spaceId, packedColors));
+            List<Map<Long, int[]>> cellList = spaceCellMap.computeIfAbsent(spaceId, key -> createCellList());
+            for (int packedColor : packedColors) {
+                cellList.get(cellOf(packedColor & 0xFFFFFF)).merge(pictureId, new int[]{packedColor}, PictureColorIndex::concat);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图片
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(pictureId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询空间内包含与目标颜色相近的主色的图片，按相似度从高到低排序
+     *
+     * @param spaceId     空间 id（公共图库为 null）
+     * @param rgb         目标颜色（0xRRGGBB）
+     * @param maxDistance 最大颜色距离
+     */
+    public List<Match> search(Long spaceId, int rgb, double maxDistance) {
+        Map<Long, Double> scoreMap = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            List<Map<Long, int[]>> cellList = spaceCellMap.get(spaceId);
+            if (cellList == null) {
+                return new ArrayList<>();
+            }
+            // redmean 距离中每个通道的权重都不小于 2，单个通道的差值超过 maxDistance / √2 时距离一定超过阈值
+            int radius = (int) Math.ceil(maxDistance / Math.sqrt(2)) + 1;
+            int[] red = levelRange((rgb >> 16) & 0xFF, radius);
+            int[] green = levelRange((rgb >> 8) & 0xFF, radius);
+            int[] blue = levelRange(rgb & 0xFF, radius);
+            for (int r = red[0]; r <= red[1]; r++) {
+                for (int g = green[0]; g <= green[1]; g++) {
+                    for (int b = blue[0]; b <= blue[1]; b++) {
+                        Map<Long, int[]> cell = cellList.get((r << (CELL_BITS * 2)) | (g << CELL_BITS) | b);
+                        for (Map.Entry<Long, int[]> cellEntry : cell.entrySet()) {
+                            double score = score(rgb, cellEntry.getValue(), maxDistance);
+                            if (score > 0) {
+                                scoreMap.merge(cellEntry.getKey(), score, Double::sum);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Match> matchList = new ArrayList<>(scoreMap.size());
+        for (Map.Entry<Long, Double> scoreEntry : scoreMap.entrySet()) {
+            matchList.add(new Match(scoreEntry.getKey(), scoreEntry.getValue()));
+        }
+        matchList.sort(Comparator.comparingDouble(Match::getScore).reversed());
+        return matchList;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算主色调签名与目标颜色的相似度
+     *
+     * @return 没有足够接近的主色时返回 0
+     */
+    public static double score(int rgb, String signature, double maxDistance) {
+        double score = 0;
+        for (DominantColor dominantColor : DominantColorUtils.parseSignature(signature)) {
+            score += score(rgb, new int[]{pack(dominantColor)}, maxDistance);
+        }
+        return score;
+    }
+
+    private static double score(int rgb, int[] packedColors, double maxDistance) {
+        double score = 0;
+        for (int packedColor : packedColors) {
+            double distance = DominantColorUtils.distance(rgb, packedColor & 0xFFFFFF);
+            if (distance <= maxDistance) {
+                score += (packedColor >>> 24) * (1 - distance / (maxDistance + 1));
+            }
+        }
+        return score;
+    }
+
+    private void removeEntry(long pictureId) {
+        Entry oldEntry = entryMap.remove(pictureId);
+        if (oldEntry == null) {
+            return;
+        }
+        List<Map<Long, int[]>> cellList = spaceCellMap.get(oldEntry.spaceId);
+        for (int packedColor : oldEntry.packedColors) {
+            cellList.get(cellOf(packedColor & 0xFFFFFF)).remove(pictureId);
+        }
+    }
+
+    private static List<Map<Long, int[]>> createCellList() {
+        int cellCount = 1 << (CELL_BITS * 3);
+        List<Map<Long, int[]>> cellList = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            cellList.add(new HashMap<>());
+        }
+        return cellList;
+    }
+
+    /**
+     * 通道值在 [value - radius, value + radius] 内的量化级别范围
+     */
+    private static int[] levelRange(int value, int radius) {
+        return new int[]{Math.max(0, value - radius) / CELL_WIDTH, Math.min(255, value + radius) / CELL_WIDTH};
+    }
+
+    private static int cellOf(int rgb) {
+        return DominantColorUtils.quantize((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    private static int pack(DominantColor dominantColor) {
+        return (Math.min(dominantColor.getPercent(), 100) << 24) | (dominantColor.getRgb() & 0xFFFFFF);
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final Long spaceId;
+
+        private final int[] packedColors;
+    }
+
+    /**
+     * 查询结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Match {
+
+        private final long pictureId;
+
+        private final double score;
+    }
+}
@@ -0,0 +1,335 @@
+package com.alan.alanpicturebackend.manager.similar;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.config.PictureSimilarConfig;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.similar.model.SimilarPicture;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils;
+import com.alan.alanpicturebackend.manager.utils.PerceptualHashUtils;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
+import com.alan.alanpicturebackend.model.enums.PictureReviewStatusEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 以图搜图、按颜色搜图（站内相似图片检索）
+ * - 每张图片在生成衍生图时计算感知哈希（dHash）和主色调并写入数据库，各节点在内存中维护 BK 树和主色调索引
+ * - 启动后分批全量加载，之后按 updateTime 增量同步（新增、重新上传、补全的特征都会更新 updateTime）
+ * - 查询结果回表校验：已删除的图片从索引移除，特征已变化的重新计算距离，因此索引短暂落后只影响召回
+ * - 补全任务为历史图片下载缩略图计算特征，多个节点同一时间只有一个执行
+ * @Date: 2025/10/21 15:10
+ */
+@Slf4j
+@Component
+public class PictureSimilarManager {
+
+    private static final String BACKFILL_LOCK_KEY = "alanPicture:similar:backfillLock";
+
+    /**
+     * 补全进度（已处理到的图片 id）
+     */
+    private static final String BACKFILL_CURSOR_KEY = "alanPicture:similar:backfillCursor";
+
+    /**
+     * 增量同步的时间窗口向前多取一段，容忍各节点与数据库之间的时钟误差以及秒级精度的 updateTime
+     */
+    private static final long SYNC_OVERLAP_MILLIS = 5000;
+
+    private final PerceptualHashIndex perceptualHashIndex = new PerceptualHashIndex();
+
+    private final PictureColorIndex pictureColorIndex = new PictureColorIndex();
+
+    private final String nodeName = "similar-" + IdUtil.getSnowflakeNextIdStr();
+
+    /**
+     * 上次同步开始的时间，null 表示尚未完成全量加载
+     */
+    private volatile Date syncedTime;
+
+    @Resource
+    private PictureSimilarConfig pictureSimilarConfig;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("picture.similar.index.size", perceptualHashIndex, PerceptualHashIndex::size)
+                .description("以图搜图索引中的图片数")
+                .register(meterRegistry);
+        Gauge.builder("picture.similar.color.index.size", pictureColorIndex, PictureColorIndex::size)
+                .description("按颜色搜图索引中的图片数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查询与指定图片相似的图片（同一空间内，公共图库只返回已过审的）
+     *
+     * @param picture 目标图片
+     * @return 按相似度从高到低排序
+     */
+    public List<SimilarPicture> searchSimilar(Picture picture) {
+        Long hash = picture.getPerceptualHash();
+        ThrowUtils.throwIf(hash == null, ErrorCode.OPERATION_ERROR, "图片特征尚未生成，请稍后再试");
+        int maxDistance = pictureSimilarConfig.getMaxDistance();
+        int maxResultCount = pictureSimilarConfig.getMaxResultCount();
+        // 多取一些候选，回表校验时会过滤掉一部分
+        List<Long> candidateIdList = new ArrayList<>();
+        for (PerceptualHashIndex.Match match : perceptualHashIndex.search(hash, maxDistance)) {
+            if (match.getPictureId() != picture.getId() && Objects.equals(match.getSpaceId(), picture.getSpaceId())) {
+                candidateIdList.add(match.getPictureId());
+                if (candidateIdList.size() >= maxResultCount * 2) {
+                    break;
+                }
+            }
+        }
+        if (candidateIdList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Picture> pictureMap = new HashMap<>();
+        for (Picture candidate : pictureMapper.selectByIds(candidateIdList)) {
+            pictureMap.put(candidate.getId(), candidate);
+        }
+        List<SimilarPicture> similarPictureList = new ArrayList<>();
+        for (Long candidateId : candidateIdList) {
+            Picture candidate = pictureMap.get(candidateId);
+            if (candidate == null) {
+                // 已删除
+                removeFromIndex(candidateId);
+                continue;
+            }
+            if (candidate.getPerceptualHash() == null || !isVisibleInSpace(candidate, picture.getSpaceId())) {
+                continue;
+            }
+            int distance = PerceptualHashUtils.distance(hash, candidate.getPerceptualHash());
+            if (distance <= maxDistance) {
+                similarPictureList.add(new SimilarPicture(candidate, distance));
+            }
+        }
+        similarPictureList.sort(Comparator.comparingInt(SimilarPicture::getDistance));
+        return similarPictureList.size() > maxResultCount
+                ? new ArrayList<>(similarPictureList.subList(0, maxResultCount)) : similarPictureList;
+    }
+
+    /**
+     * 按颜色搜图（空间内主色调与目标颜色相近的图片，公共图库只返回已过审的）
+     *
+     * @param spaceId 空间 id（公共图库为 null）
+     * @param rgb     目标颜色（0xRRGGBB）
+     * @return 按相似度从高到低排序
+     */
+    public List<Picture> searchByColor(Long spaceId, int rgb) {
+        double maxColorDistance = pictureSimilarConfig.getMaxColorDistance();
+        int maxResultCount = pictureSimilarConfig.getMaxResultCount();
+        List<Long> candidateIdList = new ArrayList<>();
+        for (PictureColorIndex.Match match : pictureColorIndex.search(spaceId, rgb, maxColorDistance)) {
+            candidateIdList.add(match.getPictureId());
+            if (candidateIdList.size() >= maxResultCount * 2) {
+                break;
+            }
+        }
+        if (candidateIdList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Picture> pictureMap = new HashMap<>();
+        for (Picture candidate : pictureMapper.selectByIds(candidateIdList)) {
+            pictureMap.put(candidate.getId(), candidate);
+        }
+        List<Picture> pictureList = new ArrayList<>();
+        Map<Long, Double> scoreMap = new HashMap<>();
+        for (Long candidateId : candidateIdList) {
+            Picture candidate = pictureMap.get(candidateId);
+            if (candidate == null) {
+                // 已删除
+                removeFromIndex(candidateId);
+                continue;
+            }
+            if (!isVisibleInSpace(candidate, spaceId)) {
+                continue;
+            }
+            double score = PictureColorIndex.score(rgb, candidate.getPicColor(), maxColorDistance);
+            if (score > 0) {
+                pictureList.add(candidate);
+                scoreMap.put(candidate.getId(), score);
+            }
+        }
+        pictureList.sort(Comparator.comparingDouble((Picture candidate) -> scoreMap.get(candidate.getId())).reversed());
+        return pictureList.size() > maxResultCount ? new ArrayList<>(pictureList.subList(0, maxResultCount)) : pictureList;
+    }
+
+    /**
+     * 同步索引：首次全量加载，之后按 updateTime 增量同步
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    public void sync() {
+        Date startTime = new Date();
+        try {
+            Date since = syncedTime == null ? null : new Date(syncedTime.getTime() - SYNC_OVERLAP_MILLIS);
+            int count = load(since);
+            if (syncedTime == null) {
+                log.info("以图搜图索引加载完成，图片数 = {}", count);
+            }
+            syncedTime = startTime;
+        } catch (Exception e) {
+            log.error("同步以图搜图索引失败", e);
+        }
+    }
+
+    /**
+     * 图片是否属于该空间，公共图库中的图片需已过审
+     */
+    private boolean isVisibleInSpace(Picture picture, Long spaceId) {
+        if (!Objects.equals(picture.getSpaceId(), spaceId)) {
+            return false;
+        }
+        return spaceId != null || Integer.valueOf(PictureReviewStatusEnum.PASS.getValue()).equals(picture.getReviewStatus());
+    }
+
+    private void removeFromIndex(long pictureId) {
+        perceptualHashIndex.remove(pictureId);
+        pictureColorIndex.remove(pictureId);
+    }
+
+    /**
+     * 按 id 分批加载有感知哈希或主色调的图片
+     *
+     * @param since 只加载该时间之后更新的图片，为 null 时全量加载
+     * @return 加载的图片数
+     */
+    private int load(Date since) {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                    .select(Picture::getId, Picture::getSpaceId, Picture::getPerceptualHash, Picture::getPicColor)
+                    .and(wrapper -> wrapper.isNotNull(Picture::getPerceptualHash).or().isNotNull(Picture::getPicColor))
+                    .ge(since != null, Picture::getUpdateTime, since)
+                    .gt(Picture::getId, lastId)
+                    .orderByAsc(Picture::getId)
+                    .last("LIMIT " + pictureSimilarConfig.getBatchSize()));
+            for (Picture picture : pictureList) {
+                // 重新上传后特征被清空，等待重新生成期间先从索引中移除
+                if (picture.getPerceptualHash() != null) {
+                    perceptualHashIndex.put(picture.getId(), picture.getPerceptualHash(), picture.getSpaceId());
+                } else {
+                    perceptualHashIndex.remove(picture.getId());
+                }
+                pictureColorIndex.put(picture.getId(), picture.getPicColor(), picture.getSpaceId());
+                lastId = picture.getId();
+            }
+            count += pictureList.size();
+            if (pictureList.size() < pictureSimilarConfig.getBatchSize()) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 补全历史图片的感知哈希和主色调（下载缩略图计算，相同 url 的图片只计算一次）
+     * 计算失败的图片跳过，整轮结束后从头开始时重试
+     */
+    @Scheduled(initialDelay = 60, fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+    public void backfill() {
+        if (!pictureSimilarConfig.isBackfillEnabled()) {
+            return;
+        }
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(BACKFILL_LOCK_KEY, nodeName, Duration.ofMinutes(5));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            String cursor = stringRedisTemplate.opsForValue().get(BACKFILL_CURSOR_KEY);
+            long lastId = StrUtil.isBlank(cursor) ? 0 : Long.parseLong(cursor);
+            List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                    .select(Picture::getId, Picture::getUrl, Picture::getThumbnailUrl, Picture::getPreviewUrl,
+                            Picture::getPerceptualHash, Picture::getPicColor)
+                    .and(wrapper -> wrapper.isNull(Picture::getPerceptualHash).or().isNull(Picture::getPicColor))
+                    .eq(Picture::getDerivativeStatus, PictureDerivativeStatusEnum.DONE.getValue())
+                    .gt(Picture::getId, lastId)
+                    .orderByAsc(Picture::getId)
+                    .last("LIMIT " + pictureSimilarConfig.getBackfillBatchSize()));
+            if (pictureList.isEmpty()) {
+                stringRedisTemplate.delete(BACKFILL_CURSOR_KEY);
+                return;
+            }
+            Set<String> handledUrlSet = new HashSet<>();
+            for (Picture picture : pictureList) {
+                if (handledUrlSet.add(picture.getUrl())) {
+                    backfillPicture(picture);
+                }
+            }
+            stringRedisTemplate.opsForValue().set(BACKFILL_CURSOR_KEY, String.valueOf(pictureList.get(pictureList.size() - 1).getId()));
+        } catch (Exception e) {
+            log.error("补全图片特征失败", e);
+        } finally {
+            if (nodeName.equals(stringRedisTemplate.opsForValue().get(BACKFILL_LOCK_KEY))) {
+                stringRedisTemplate.delete(BACKFILL_LOCK_KEY);
+            }
+        }
+    }
+
+    private void backfillPicture(Picture picture) {
+        String sourceUrl = StrUtil.isNotBlank(picture.getThumbnailUrl()) ? picture.getThumbnailUrl() : picture.getPreviewUrl();
+        String prefix = objectStorage.getHost() + "/";
+        if (sourceUrl == null || !sourceUrl.startsWith(prefix)) {
+            log.warn("图片没有可用的缩略图，跳过补全图片特征，pictureId = {}", picture.getId());
+            return;
+        }
+        BufferedImage image;
+        try (InputStream inputStream = objectStorage.getObject(sourceUrl.substring(prefix.length()))) {
+            image = ImageIO.read(inputStream);
+        } catch (Exception e) {
+            log.warn("下载缩略图失败，跳过补全图片特征，pictureId = {}", picture.getId(), e);
+            return;
+        }
+        if (image == null) {
+            log.warn("缩略图无法解码，跳过补全图片特征，pictureId = {}", picture.getId());
+            return;
+        }
+        // 只补全缺失的特征，条件中带上 isNull，不覆盖期间衍生图任务写入的结果
+        if (picture.getPerceptualHash() == null) {
+            Picture updatePicture = new Picture();
+            updatePicture.setPerceptualHash(PerceptualHashUtils.dHash(image));
+            pictureMapper.update(updatePicture, new LambdaUpdateWrapper<Picture>()
+                    .eq(Picture::getUrl, picture.getUrl())
+                    .isNull(Picture::getPerceptualHash));
+        }
+        if (picture.getPicColor() == null) {
+            Picture updatePicture = new Picture();
+            updatePicture.setPicColor(DominantColorUtils.toSignature(DominantColorUtils.extract(image)));
+            pictureMapper.update(updatePicture, new LambdaUpdateWrapper<Picture>()
+                    .eq(Picture::getUrl, picture.getUrl())
+                    .isNull(Picture::getPicColor));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.alan.alanpicturebackend.manager.similar.model;
+
+import com.alan.alanpicturebackend.model.entity.Picture;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 相似图片检索结果
+ * @Date: 2025/10/21 15:00
+ */
+@Data
+@AllArgsConstructor
+public class SimilarPicture {
+
+    private Picture picture;
+
+    /**
+     * 与目标图片感知哈希的汉明距离（越小越相似）
+     */
+    private int distance;
+}
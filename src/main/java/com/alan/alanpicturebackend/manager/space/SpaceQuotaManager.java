@@ -0,0 +1,467 @@
+package com.alan.alanpicturebackend.manager.space;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.IdUtil;
+import com.alan.alanpicturebackend.config.SpaceQuotaConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.manager.space.model.SpaceQuotaReservation;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.mapper.SpaceMapper;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.entity.Space;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author alan
+ * @Description: 空间额度账本
+ * - 上传、删除图片不再在请求事务中更新 space 表的同一行（热点行锁），额度的判断和扣减在 Redis 中原子完成
+ * - 每个空间的额度缓存为一个 Redis Hash（上限、已用大小、已用数量），首次使用时由数据库中的值加上尚未刷新的增量和未完成的预占得到
+ * - 每笔未完成的预占单独记录（预占 Hash + 按预占时间排序的 ZSet），额度缓存被清除或过期后重新加载时不会丢失；
+ *   节点在预占后宕机、未确认也未取消的预占超过租约时间后由定时任务释放
+ * - 上传：文件上传完成、大小确定后预占额度（Lua 脚本原子判断并扣减），数据库事务提交后确认，失败时取消
+ * - 确认、删除产生的增量累加到每个空间的增量 Hash 中，定时任务按空间合并后批量写回 space 表，一个空间每轮只执行一条 UPDATE
+ * - 定时对账：按图片表重新统计每个空间的大小和数量，修正 space 表和额度缓存的偏差
+ * @Date: 2025/10/25 10:30
+ */
+@Slf4j
+@Component
+public class SpaceQuotaManager {
+
+    private static final String QUOTA_KEY_PREFIX = "alanPicture:space:quota:";
+
+    private static final String DELTA_KEY_PREFIX = "alanPicture:space:quota:delta:";
+
+    /**
+     * 已预占、尚未确认或取消的额度（Redis Hash），字段为预占 id，值为 数量,大小
+     */
+    private static final String RESERVED_KEY_PREFIX = "alanPicture:space:quota:reserved:";
+
+    /**
+     * 所有未完成的预占（Redis ZSet），成员为 空间 id:预占 id，分数为预占时间
+     */
+    private static final String RESERVATION_KEY = "alanPicture:space:quota:reservations";
+
+    /**
+     * 存在未刷新增量的空间 id（Redis Set）
+     */
+    private static final String DIRTY_KEY = "alanPicture:space:quota:dirty";
+
+    private static final String RECONCILE_LOCK_KEY = "alanPicture:space:quota:reconcile:lock";
+
+    private static final long RESERVE_OK = 1;
+
+    private static final long RESERVE_NOT_LOADED = -1;
+
+    private static final long RESERVE_COUNT_EXCEEDED = -2;
+
+    /**
+     * 加载额度缓存：已存在时不覆盖，已用值为数据库中的值加上尚未刷新的增量和未完成的预占
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+                    "local pendingSize = tonumber(redis.call('HGET', KEYS[2], 'size') or '0') " +
+                    "local pendingCount = tonumber(redis.call('HGET', KEYS[2], 'count') or '0') " +
+                    "local reservedCount = 0 " +
+                    "local reservedSize = 0 " +
+                    "for _, value in ipairs(redis.call('HVALS', KEYS[3])) do " +
+                    "local separator = string.find(value, ',') " +
+                    "reservedCount = reservedCount + tonumber(string.sub(value, 1, separator - 1)) " +
+                    "reservedSize = reservedSize + tonumber(string.sub(value, separator + 1)) end " +
+                    "redis.call('HSET', KEYS[1], 'maxSize', ARGV[1], 'maxCount', ARGV[2], " +
+                    "'usedSize', tonumber(ARGV[3]) + pendingSize + reservedSize, " +
+                    "'usedCount', tonumber(ARGV[4]) + pendingCount + reservedCount) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[5]) " +
+                    "return 1", Long.class);
+
+    /**
+     * 预占额度：超出上限时拒绝，否则扣减、记录预占并刷新过期时间
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+                    "local count = tonumber(ARGV[1]) " +
+                    "local size = tonumber(ARGV[2]) " +
+                    "local quota = redis.call('HMGET', KEYS[1], 'maxSize', 'maxCount', 'usedSize', 'usedCount') " +
+                    "if count > 0 and tonumber(quota[4]) + count > tonumber(quota[2]) then return -2 end " +
+                    "if size > 0 and tonumber(quota[3]) + size > tonumber(quota[1]) then return -3 end " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedCount', count) " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedSize', size) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+                    "redis.call('HSET', KEYS[2], ARGV[4], count .. ',' .. size) " +
+                    "redis.call('ZADD', KEYS[3], ARGV[5], ARGV[6]) " +
+                    "return 1", Long.class);
+
+    /**
+     * 调整已用额度（额度缓存存在时）并累加待刷新的增量
+     */
+    private static final RedisScript<Long> APPLY_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedCount', ARGV[1]) " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedSize', ARGV[2]) end " +
+                    "if ARGV[3] ~= '0' or ARGV[4] ~= '0' then " +
+                    "redis.call('HINCRBY', KEYS[2], 'count', ARGV[3]) " +
+                    "redis.call('HINCRBY', KEYS[2], 'size', ARGV[4]) " +
+                    "redis.call('SADD', KEYS[3], ARGV[5]) end " +
+                    "return 1", Long.class);
+
+    /**
+     * 结束一笔预占：确认时累加待刷新的增量，取消时归还额度
+     * 预占已因租约到期被释放时（额度已归还），确认需要重新扣减已用额度，取消不再归还
+     */
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "local removed = redis.call('HDEL', KEYS[4], ARGV[5]) " +
+                    "redis.call('ZREM', KEYS[5], ARGV[6]) " +
+                    "local count = tonumber(ARGV[1]) " +
+                    "local size = tonumber(ARGV[2]) " +
+                    "local sign = 0 " +
+                    "if ARGV[3] == '1' then " +
+                    "if removed == 0 then sign = 1 end " +
+                    "if count ~= 0 or size ~= 0 then " +
+                    "redis.call('HINCRBY', KEYS[2], 'count', count) " +
+                    "redis.call('HINCRBY', KEYS[2], 'size', size) " +
+                    "redis.call('SADD', KEYS[3], ARGV[4]) end " +
+                    "elseif removed == 1 then sign = -1 end " +
+                    "if sign ~= 0 and redis.call('EXISTS', KEYS[1]) == 1 then " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedCount', sign * count) " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedSize', sign * size) end " +
+                    "return removed", Long.class);
+
+    /**
+     * 释放一笔租约到期的预占（仍存在时归还额度）
+     */
+    private static final RedisScript<Long> EXPIRE_RESERVATION_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZREM', KEYS[3], ARGV[2]) " +
+                    "local value = redis.call('HGET', KEYS[2], ARGV[1]) " +
+                    "if not value then return 0 end " +
+                    "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+                    "local separator = string.find(value, ',') " +
+                    "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedCount', -tonumber(string.sub(value, 1, separator - 1))) " +
+                    "redis.call('HINCRBY', KEYS[1], 'usedSize', -tonumber(string.sub(value, separator + 1))) end " +
+                    "return 1", Long.class);
+
+    /**
+     * 取出并清空一个空间待刷新的增量
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_DELTA_SCRIPT = new DefaultRedisScript<>(
+            "local delta = redis.call('HMGET', KEYS[1], 'count', 'size') " +
+                    "redis.call('DEL', KEYS[1]) " +
+                    "return delta", List.class);
+
+    private final String nodeName = "quota-" + IdUtil.getSnowflakeNextIdStr();
+
+    @Resource
+    private SpaceQuotaConfig spaceQuotaConfig;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 预占额度
+     *
+     * @param spaceId 空间 id
+     * @param count   图片数量增量
+     * @param size    存储大小增量
+     * @return 预占记录，需在上传完成后确认或取消
+     */
+    public SpaceQuotaReservation reserve(Long spaceId, long count, long size) {
+        String reservationId = IdUtil.fastSimpleUUID();
+        List<String> keyList = Arrays.asList(QUOTA_KEY_PREFIX + spaceId, RESERVED_KEY_PREFIX + spaceId, RESERVATION_KEY);
+        String[] args = {String.valueOf(count), String.valueOf(size),
+                String.valueOf(TimeUnit.HOURS.toSeconds(spaceQuotaConfig.getIdleHours())), reservationId,
+                String.valueOf(System.currentTimeMillis()), spaceId + ":" + reservationId};
+        Long result = stringRedisTemplate.execute(RESERVE_SCRIPT, keyList, (Object[]) args);
+        if (result != null && result == RESERVE_NOT_LOADED) {
+            load(spaceId);
+            result = stringRedisTemplate.execute(RESERVE_SCRIPT, keyList, (Object[]) args);
+        }
+        if (result == null || result != RESERVE_OK) {
+            meterRegistry.counter("space.quota.reserve", "result", "rejected").increment();
+            if (result != null && result == RESERVE_COUNT_EXCEEDED) {
+                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "空间图片数量额度不足");
+            }
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "空间存储大小额度不足");
+        }
+        meterRegistry.counter("space.quota.reserve", "result", "reserved").increment();
+        return new SpaceQuotaReservation(reservationId, spaceId, count, size);
+    }
+
+    /**
+     * 确认预占（数据库事务提交后调用），增量等待定时任务写回数据库
+     */
+    public void confirm(SpaceQuotaReservation reservation) {
+        settle(reservation, true);
+    }
+
+    /**
+     * 取消预占（上传失败时调用），归还已扣减的额度
+     */
+    public void cancel(SpaceQuotaReservation reservation) {
+        settle(reservation, false);
+    }
+
+    /**
+     * 释放额度（删除图片的数据库事务提交后调用）
+     *
+     * @param spaceId 空间 id
+     * @param count   释放的图片数量
+     * @param size    释放的存储大小
+     */
+    public void release(Long spaceId, long count, long size) {
+        apply(spaceId, -count, -size, -count, -size);
+    }
+
+    /**
+     * 清除额度缓存（空间上限变更、空间删除后调用），下次使用时从数据库重新加载
+     * 未完成的预占单独保存，不会被清除，重新加载时计入已用额度
+     */
+    public void evict(Long spaceId) {
+        stringRedisTemplate.delete(QUOTA_KEY_PREFIX + spaceId);
+    }
+
+    /**
+     * 将各空间累计的增量写回数据库，每个空间合并为一条 UPDATE
+     * 增量的取出是原子的，多个节点同时执行不会重复写入，因此不需要加锁
+     */
+    @Scheduled(initialDelay = 10, fixedDelay = 5, timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        try {
+            List<String> spaceIdList = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, spaceQuotaConfig.getFlushBatchSize());
+            if (spaceIdList == null) {
+                return;
+            }
+            for (String spaceId : spaceIdList) {
+                flushSpace(Long.valueOf(spaceId));
+            }
+        } catch (Exception e) {
+            log.error("刷新空间额度增量失败", e);
+        }
+    }
+
+    /**
+     * 释放租约到期的预占（预占后节点宕机，既没有确认也没有取消）
+     * 每笔预占的释放是原子的，多个节点同时执行不会重复归还，因此不需要加锁
+     *
+     * @return 释放的预占数
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public int expireReservations() {
+        long deadline = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(spaceQuotaConfig.getReservationLeaseMinutes());
+        int expiredCount = 0;
+        try {
+            Set<String> memberSet = stringRedisTemplate.opsForZSet().rangeByScore(RESERVATION_KEY, 0, deadline,
+                    0, spaceQuotaConfig.getFlushBatchSize());
+            if (memberSet == null) {
+                return 0;
+            }
+            for (String member : memberSet) {
+                String spaceId = member.substring(0, member.indexOf(':'));
+                String reservationId = member.substring(member.indexOf(':') + 1);
+                Long expired = stringRedisTemplate.execute(EXPIRE_RESERVATION_SCRIPT,
+                        Arrays.asList(QUOTA_KEY_PREFIX + spaceId, RESERVED_KEY_PREFIX + spaceId, RESERVATION_KEY),
+                        reservationId, member);
+                if (expired != null && expired == 1) {
+                    log.warn("空间额度预占超过租约时间未确认，已释放，spaceId = {}，reservationId = {}", spaceId, reservationId);
+                    meterRegistry.counter("space.quota.reservation.expired").increment();
+                    expiredCount++;
+                }
+            }
+        } catch (Exception e) {
+            log.error("释放到期的空间额度预占失败", e);
+        }
+        return expiredCount;
+    }
+
+    @Scheduled(cron = "${space.quota.reconcileCron:0 0 4 * * ?}")
+    public void scheduledReconcile() {
+        if (spaceQuotaConfig.isReconcileEnabled()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * 对账：按图片表统计每个空间实际的大小和数量，修正 space 表和额度缓存
+     * 存在未刷新增量的空间跳过，留给下次对账
+     *
+     * @return 修正的空间数，其他节点正在执行时返回 -1
+     */
+    public int reconcile() {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, nodeName, Duration.ofHours(1));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("其他节点正在对账空间额度，跳过本次执行");
+            return -1;
+        }
+        int correctedCount = 0;
+        try {
+            // 先释放租约到期的预占，避免把泄漏的预占计入应有的已用额度
+            while (expireReservations() >= spaceQuotaConfig.getFlushBatchSize()) {
+                log.info("继续释放到期的空间额度预占");
+            }
+            long lastId = 0;
+            while (true) {
+                List<Space> spaceList = spaceMapper.selectList(new LambdaQueryWrapper<Space>()
+                        .select(Space::getId, Space::getTotalSize, Space::getTotalCount)
+                        .gt(Space::getId, lastId)
+                        .orderByAsc(Space::getId)
+                        .last("LIMIT " + spaceQuotaConfig.getReconcileBatchSize()));
+                if (spaceList.isEmpty()) {
+                    break;
+                }
+                correctedCount += reconcileBatch(spaceList);
+                lastId = spaceList.get(spaceList.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            log.error("对账空间额度失败", e);
+        } finally {
+            if (nodeName.equals(stringRedisTemplate.opsForValue().get(RECONCILE_LOCK_KEY))) {
+                stringRedisTemplate.delete(RECONCILE_LOCK_KEY);
+            }
+        }
+        log.info("空间额度对账完成，修正 {} 个空间", correctedCount);
+        return correctedCount;
+    }
+
+    /**
+     * 从数据库加载额度缓存
+     */
+    private void load(Long spaceId) {
+        Space space = spaceMapper.selectById(spaceId);
+        if (space == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT,
+                Arrays.asList(QUOTA_KEY_PREFIX + spaceId, DELTA_KEY_PREFIX + spaceId, RESERVED_KEY_PREFIX + spaceId),
+                String.valueOf(space.getMaxSize()), String.valueOf(space.getMaxCount()),
+                String.valueOf(space.getTotalSize()), String.valueOf(space.getTotalCount()),
+                String.valueOf(TimeUnit.HOURS.toSeconds(spaceQuotaConfig.getIdleHours())));
+    }
+
+    private void apply(Long spaceId, long usedCount, long usedSize, long pendingCount, long pendingSize) {
+        stringRedisTemplate.execute(APPLY_SCRIPT,
+                Arrays.asList(QUOTA_KEY_PREFIX + spaceId, DELTA_KEY_PREFIX + spaceId, DIRTY_KEY),
+                String.valueOf(usedCount), String.valueOf(usedSize),
+                String.valueOf(pendingCount), String.valueOf(pendingSize), String.valueOf(spaceId));
+    }
+
+    private void settle(SpaceQuotaReservation reservation, boolean confirm) {
+        Long spaceId = reservation.getSpaceId();
+        Long removed = stringRedisTemplate.execute(SETTLE_SCRIPT,
+                Arrays.asList(QUOTA_KEY_PREFIX + spaceId, DELTA_KEY_PREFIX + spaceId, DIRTY_KEY,
+                        RESERVED_KEY_PREFIX + spaceId, RESERVATION_KEY),
+                String.valueOf(reservation.getCount()), String.valueOf(reservation.getSize()), confirm ? "1" : "0",
+                String.valueOf(spaceId), reservation.getReservationId(), spaceId + ":" + reservation.getReservationId());
+        if (removed != null && removed == 0) {
+            log.warn("空间额度预占已因租约到期被释放，spaceId = {}，reservationId = {}", spaceId, reservation.getReservationId());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flushSpace(Long spaceId) {
+        List<String> delta = stringRedisTemplate.execute(TAKE_DELTA_SCRIPT, Collections.singletonList(DELTA_KEY_PREFIX + spaceId));
+        if (delta == null || delta.size() < 2) {
+            return;
+        }
+        long count = Convert.toLong(delta.get(0), 0L);
+        long size = Convert.toLong(delta.get(1), 0L);
+        if (count == 0 && size == 0) {
+            return;
+        }
+        try {
+            spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, spaceId)
+                    .setSql("totalSize = totalSize + " + size)
+                    .setSql("totalCount = totalCount + " + count));
+            meterRegistry.counter("space.quota.flush").increment();
+        } catch (Exception e) {
+            log.warn("写回空间额度增量失败，稍后重试，spaceId = {}", spaceId, e);
+            // 放回增量，下一轮重试
+            apply(spaceId, 0, 0, count, size);
+        }
+    }
+
+    private int reconcileBatch(List<Space> spaceList) {
+        List<Long> spaceIdList = spaceList.stream().map(Space::getId).collect(Collectors.toList());
+        Set<Long> pendingSpaceIdSet = getPendingSpaceIds(spaceIdList);
+        List<Map<String, Object>> resultList = pictureMapper.selectMaps(new QueryWrapper<Picture>()
+                .select("spaceId", "COUNT(*) AS totalCount", "IFNULL(SUM(picSize), 0) AS totalSize")
+                .in("spaceId", spaceIdList)
+                .groupBy("spaceId"));
+        // 统计期间产生增量的空间同样跳过
+        pendingSpaceIdSet.addAll(getPendingSpaceIds(spaceIdList));
+        Map<Long, Map<String, Object>> resultMap = resultList.stream()
+                .collect(Collectors.toMap(result -> Convert.toLong(result.get("spaceId")), result -> result));
+        int correctedCount = 0;
+        for (Space space : spaceList) {
+            if (pendingSpaceIdSet.contains(space.getId())) {
+                continue;
+            }
+            Map<String, Object> result = resultMap.get(space.getId());
+            long actualCount = result == null ? 0 : Convert.toLong(result.get("totalCount"), 0L);
+            long actualSize = result == null ? 0 : Convert.toLong(result.get("totalSize"), 0L);
+            if (!Long.valueOf(actualCount).equals(space.getTotalCount()) || !Long.valueOf(actualSize).equals(space.getTotalSize())) {
+                // 条件更新，值在对账期间被修改时放弃
+                int updated = spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                        .eq(Space::getId, space.getId())
+                        .eq(Space::getTotalCount, space.getTotalCount())
+                        .eq(Space::getTotalSize, space.getTotalSize())
+                        .set(Space::getTotalCount, actualCount)
+                        .set(Space::getTotalSize, actualSize));
+                if (updated > 0) {
+                    log.warn("空间额度存在偏差，已修正，spaceId = {}，数量 {} -> {}，大小 {} -> {}", space.getId(),
+                            space.getTotalCount(), actualCount, space.getTotalSize(), actualSize);
+                    correctedCount++;
+                    meterRegistry.counter("space.quota.reconcile.corrected").increment();
+                }
+            }
+            // 额度缓存（包含未完成的预占）与实际不符时清除，下次使用时重新加载
+            List<Object> used = stringRedisTemplate.opsForHash().multiGet(QUOTA_KEY_PREFIX + space.getId(),
+                    Arrays.asList("usedCount", "usedSize"));
+            long expectedCount = actualCount;
+            long expectedSize = actualSize;
+            for (Object reserved : stringRedisTemplate.opsForHash().values(RESERVED_KEY_PREFIX + space.getId())) {
+                String[] countAndSize = reserved.toString().split(",");
+                expectedCount += Long.parseLong(countAndSize[0]);
+                expectedSize += Long.parseLong(countAndSize[1]);
+            }
+            if (used.get(0) != null && (Convert.toLong(used.get(0)) != expectedCount || Convert.toLong(used.get(1)) != expectedSize)) {
+                evict(space.getId());
+            }
+        }
+        return correctedCount;
+    }
+
+    private Set<Long> getPendingSpaceIds(List<Long> spaceIdList) {
+        Set<Long> pendingSpaceIdSet = new HashSet<>();
+        for (Long spaceId : spaceIdList) {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(DELTA_KEY_PREFIX + spaceId))) {
+                pendingSpaceIdSet.add(spaceId);
+            }
+        }
+        return pendingSpaceIdSet;
+    }
+}
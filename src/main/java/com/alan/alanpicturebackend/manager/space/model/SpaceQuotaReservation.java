@@ -0,0 +1,34 @@
+package com.alan.alanpicturebackend.manager.space.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 空间额度预占记录（上传完成后确认，失败时取消）
+ * @Date: 2025/10/25 10:20
+ */
+@Data
+@AllArgsConstructor
+public class SpaceQuotaReservation {
+
+    /**
+     * 预占 id
+     */
+    private String reservationId;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 预占的图片数量（重新上传图片时为 0）
+     */
+    private long count;
+
+    /**
+     * 预占的存储大小（重新上传图片时为新旧图片大小之差，可能为负数）
+     */
+    private long size;
+}
@@ -0,0 +1,77 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import com.alan.alanpicturebackend.config.CosUploadConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.manager.storage.model.StoragePutRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * @author alan
+ * @Description: 对象存储公共实现：并发上传与失败补偿
+ * @Date: 2025/10/18 16:20
+ */
+@Slf4j
+public abstract class AbstractObjectStorage implements ObjectStorage {
+
+    @Resource
+    private CosUploadConfig cosUploadConfig;
+
+    @Resource
+    private ThreadPoolExecutor cosUploadExecutor;
+
+    /**
+     * 并发上传一组对象（全部成功或全部回滚）
+     * - 所有请求同时提交到上传线程池，调用方只需等待最慢的一个
+     * - 任意一个失败时，对已经成功的对象执行补偿删除
+     *
+     * @param putRequestList 上传请求列表
+     */
+    @Override
+    public void putObjectsAllOrNothing(List<StoragePutRequest> putRequestList) {
+        List<CompletableFuture<Void>> futureList = new ArrayList<>(putRequestList.size());
+        try {
+            for (StoragePutRequest putRequest : putRequestList) {
+                futureList.add(CompletableFuture.runAsync(() -> putObject(
+                        putRequest.getKey(), putRequest.getInputStream(), putRequest.getContentLength()), cosUploadExecutor));
+            }
+            CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[0]))
+                    .get(cosUploadConfig.getTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            log.error("上传线程池已满，拒绝上传", e);
+            compensate(putRequestList, futureList);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传繁忙，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            compensate(putRequestList, futureList);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传被中断");
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("并发上传对象失败", e);
+            compensate(putRequestList, futureList);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+    }
+
+    /**
+     * 补偿删除：已成功（或稍后才成功）的上传全部删除
+     */
+    private void compensate(List<StoragePutRequest> putRequestList, List<CompletableFuture<Void>> futureList) {
+        for (int i = 0; i < futureList.size(); i++) {
+            String key = putRequestList.get(i).getKey();
+            futureList.get(i).whenComplete((result, throwable) -> {
+                if (throwable == null) {
+                    try {
+                        deleteObject(key);
+                    } catch (Exception e) {
+                        log.error("补偿删除对象失败，key = {}", key, e);
+                    }
+                }
+            });
+        }
+    }
+}
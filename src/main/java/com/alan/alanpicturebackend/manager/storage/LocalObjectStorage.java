@@ -0,0 +1,469 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.alan.alanpicturebackend.config.LocalStorageConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author alan
+ * @Description: 本地文件系统对象存储（用于边缘部署，以及排除网络干扰的上传链路压测）
+ * - 目录分片：root/ab/cd/{编码后的对象键}，ab、cd 取对象键 MD5 的前 4 位，避免单目录文件过多
+ * - 写入：FileChannel 写入同目录临时文件后原子重命名，读取方不会看到写了一半的对象
+ * - 读取：内存映射（mmap），不经过用户态缓冲区复制
+ * - 分块上传：分块暂存在 root/.multipart/{uploadId} 下，合并时用 transferTo 拼接
+ * - 列举：对象键与目录顺序无关，只能遍历全部分片，仅适用于开发、边缘部署和压测的数据量，生产环境使用 COS
+ * @Date: 2025/10/18 16:40
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "storage", name = "type", havingValue = "local")
+public class LocalObjectStorage extends AbstractObjectStorage {
+
+    /**
+     * 分块上传暂存目录（以 . 开头，列举时跳过）
+     */
+    private static final String MULTIPART_DIR = ".multipart";
+
+    /**
+     * 写入中的临时文件前缀（以 . 开头，列举时跳过）
+     */
+    private static final String TEMP_PREFIX = ".writing-";
+
+    /**
+     * 文件名长度上限（大多数文件系统为 255 字节）
+     */
+    private static final int MAX_FILENAME_LENGTH = 255;
+
+    /**
+     * 列举快照的有效期：同一前缀连续翻页时复用，整轮列举只遍历一次目录
+     */
+    private static final long LIST_SNAPSHOT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 最近一次列举的快照（前缀下按字典序排好的全部对象键）
+     */
+    private volatile ListSnapshot listSnapshot;
+
+    @Resource
+    private LocalStorageConfig localStorageConfig;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(localStorageConfig.getRoot()).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve(MULTIPART_DIR));
+        log.info("使用本地对象存储，根目录：{}", root);
+    }
+
+    @Override
+    public String getHost() {
+        return localStorageConfig.getHost();
+    }
+
+    @Override
+    public void putObject(String key, InputStream inputStream, long contentLength) {
+        Path target = resolve(key);
+        try {
+            writeAtomically(target, inputStream, contentLength);
+        } catch (IOException e) {
+            log.error("写入本地存储失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入本地存储失败");
+        }
+    }
+
+    @Override
+    public InputStream getObject(String key) {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                // 超过单次映射上限，退化为普通流读取
+                return Files.newInputStream(resolve(key));
+            }
+            // 映射在通道关闭后仍然有效，由 GC 回收时解除
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "对象不存在");
+        } catch (IOException e) {
+            log.error("读取本地存储失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取本地存储失败");
+        }
+    }
+
+    @Override
+    public InputStream getObject(String key, long start, long end) {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long length = Math.min(end, channel.size() - 1) - start + 1;
+            if (length <= 0) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            if (length > Integer.MAX_VALUE) {
+                // 超过单次映射上限，退化为从起始位置开始的普通流（调用方按长度读取）
+                FileChannel rangeChannel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+                rangeChannel.position(start);
+                return Channels.newInputStream(rangeChannel);
+            }
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "对象不存在");
+        } catch (IOException e) {
+            log.error("读取本地存储失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取本地存储失败");
+        }
+    }
+
+    @Override
+    public Path getLocalPath(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            log.error("删除本地存储对象失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "删除对象失败");
+        }
+    }
+
+    @Override
+    public void deleteObjects(List<String> keyList) {
+        for (String key : keyList) {
+            deleteObject(key);
+        }
+    }
+
+    /**
+     * 复制对象：复制到目标目录的临时文件后原子重命名
+     */
+    @Override
+    public void copyObject(String sourceKey, String targetKey) {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, null);
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "对象不存在");
+        } catch (IOException e) {
+            log.error("复制本地存储对象失败, sourceKey = {}, targetKey = {}", sourceKey, targetKey, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "复制对象失败");
+        } finally {
+            if (temp != null) {
+                FileUtil.del(temp);
+            }
+        }
+    }
+
+    /**
+     * 按前缀列举对象
+     * 对象分散在各个分片目录中，从头列举（marker 为空）时遍历全部分片并排序，生成快照；
+     * 之后按 marker 翻页时直接在快照中二分定位，整轮列举只遍历一次目录。快照生成后新写入的对象在下一轮列举时出现
+     */
+    @Override
+    public List<ObjectSummary> listObjects(String prefix, String marker, int maxKeys) {
+        String normalizedPrefix = prefix == null ? "" : StrUtil.removePrefix(prefix, "/");
+        String normalizedMarker = marker == null ? null : StrUtil.removePrefix(marker, "/");
+        ListSnapshot snapshot = listSnapshot;
+        if (normalizedMarker == null || snapshot == null || !snapshot.prefix.equals(normalizedPrefix)
+                || System.currentTimeMillis() - snapshot.createTime > LIST_SNAPSHOT_TTL_MILLIS) {
+            snapshot = new ListSnapshot(normalizedPrefix, walkKeys(normalizedPrefix));
+            listSnapshot = snapshot;
+        }
+        int fromIndex = 0;
+        if (normalizedMarker != null) {
+            int index = Collections.binarySearch(snapshot.keyList, normalizedMarker);
+            fromIndex = index >= 0 ? index + 1 : -index - 1;
+        }
+        List<String> keyList = snapshot.keyList.subList(fromIndex, Math.min(snapshot.keyList.size(), fromIndex + maxKeys));
+        List<ObjectSummary> objectSummaryList = new ArrayList<>(keyList.size());
+        for (String key : keyList) {
+            ObjectSummary objectSummary = headObject(key);
+            // 遍历期间可能已被删除
+            if (objectSummary != null) {
+                objectSummaryList.add(objectSummary);
+            }
+        }
+        return objectSummaryList;
+    }
+
+    /**
+     * 遍历全部分片，返回前缀下按字典序排序的对象键
+     */
+    private List<String> walkKeys(String normalizedPrefix) {
+        try (Stream<Path> pathStream = Files.walk(root, 3)) {
+            return pathStream
+                    .filter(path -> root.relativize(path).getNameCount() == 3)
+                    .filter(path -> !path.getFileName().toString().startsWith(".") && Files.isRegularFile(path))
+                    .map(path -> decodeKey(path.getFileName().toString()))
+                    .filter(key -> key.startsWith(normalizedPrefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("列举本地存储对象失败, prefix = {}", normalizedPrefix, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "列举对象失败");
+        }
+    }
+
+    @Override
+    public ObjectSummary headObject(String key) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return new ObjectSummary(StrUtil.removePrefix(key, "/"), attributes.size(),
+                    new Date(attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.error("查询本地存储对象失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询对象失败");
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(String key) {
+        // 提前校验对象键
+        resolve(key);
+        String uploadId = IdUtil.fastSimpleUUID();
+        try {
+            Files.createDirectories(getMultipartDir(uploadId));
+        } catch (IOException e) {
+            log.error("创建分块上传目录失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "初始化分块上传失败");
+        }
+        return uploadId;
+    }
+
+    /**
+     * 上传分块，分块文件名为 {编号}-{ETag}，ETag 为分块内容的 MD5
+     */
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        Path multipartDir = getMultipartDir(uploadId);
+        ThrowUtils.throwIf(!Files.isDirectory(multipartDir), ErrorCode.NOT_FOUND_ERROR, "分块上传不存在");
+        MessageDigest messageDigest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        Path tempPart = multipartDir.resolve(TEMP_PREFIX + partNumber + "-" + IdUtil.fastSimpleUUID());
+        try {
+            writeAtomically(tempPart, new DigestInputStream(inputStream, messageDigest), partSize);
+            String eTag = HexUtil.encodeHexStr(messageDigest.digest());
+            Files.move(tempPart, multipartDir.resolve(partNumber + "-" + eTag),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return eTag;
+        } catch (IOException e) {
+            log.error("写入分块失败, uploadId = {}, partNumber = {}", uploadId, partNumber, e);
+            FileUtil.del(tempPart);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分块上传失败");
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETagList) {
+        Path multipartDir = getMultipartDir(uploadId);
+        List<Path> partList = new ArrayList<>(partETagList.size());
+        for (int i = 0; i < partETagList.size(); i++) {
+            Path part = multipartDir.resolve((i + 1) + "-" + partETagList.get(i));
+            ThrowUtils.throwIf(!Files.isRegularFile(part), ErrorCode.PARAMS_ERROR, "分块 " + (i + 1) + " 不存在或内容不一致");
+            partList.add(part);
+        }
+        Path target = resolve(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, null);
+            try (FileChannel outputChannel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (Path part : partList) {
+                    try (FileChannel partChannel = FileChannel.open(part, StandardOpenOption.READ)) {
+                        long size = partChannel.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += partChannel.transferTo(position, size - position, outputChannel);
+                        }
+                    }
+                }
+                if (localStorageConfig.isSyncOnWrite()) {
+                    outputChannel.force(false);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("合并分块失败, uploadId = {}", uploadId, e);
+            if (temp != null) {
+                FileUtil.del(temp);
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "合并分块失败");
+        }
+        FileUtil.del(multipartDir);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        FileUtil.del(getMultipartDir(uploadId));
+    }
+
+    /**
+     * 写入同目录的临时文件后原子重命名为目标文件
+     */
+    private void writeAtomically(Path target, InputStream inputStream, long contentLength) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, null);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 ReadableByteChannel sourceChannel = Channels.newChannel(inputStream)) {
+                long position = 0;
+                while (position < contentLength) {
+                    long transferred = channel.transferFrom(sourceChannel, position, contentLength - position);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                if (position != contentLength) {
+                    throw new IOException("数据长度不一致，期望 " + contentLength + "，实际 " + position);
+                }
+                if (localStorageConfig.isSyncOnWrite()) {
+                    channel.force(false);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 对象键 => 分片后的文件路径
+     */
+    private Path resolve(String key) {
+        String normalizedKey = StrUtil.removePrefix(key, "/");
+        ThrowUtils.throwIf(StrUtil.isBlank(normalizedKey), ErrorCode.PARAMS_ERROR, "对象键不能为空");
+        String fileName = encodeKey(normalizedKey);
+        ThrowUtils.throwIf(fileName.length() > MAX_FILENAME_LENGTH, ErrorCode.PARAMS_ERROR, "对象键过长");
+        String md5 = DigestUtil.md5Hex(normalizedKey);
+        return root.resolve(md5.substring(0, 2)).resolve(md5.substring(2, 4)).resolve(fileName);
+    }
+
+    private Path getMultipartDir(String uploadId) {
+        ThrowUtils.throwIf(!ReUtil.isMatch("[0-9a-f]{32}", StrUtil.nullToEmpty(uploadId)), ErrorCode.PARAMS_ERROR, "分块上传 id 不合法");
+        return root.resolve(MULTIPART_DIR).resolve(uploadId);
+    }
+
+    /**
+     * 对象键编码为单个文件名（/ 等字符全部转义，且不会以 . 开头，不会出现 .. 路径穿越）
+     */
+    private static String encodeKey(String key) {
+        try {
+            return URLEncoder.encode(key, StandardCharsets.UTF_8.name()).replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decodeKey(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 列举快照
+     */
+    private static class ListSnapshot {
+
+        private final String prefix;
+
+        private final List<String> keyList;
+
+        private final long createTime = System.currentTimeMillis();
+
+        ListSnapshot(String prefix, List<String> keyList) {
+            this.prefix = prefix;
+            this.keyList = keyList;
+        }
+    }
+
+    /**
+     * 基于 ByteBuffer（内存映射）的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.config.StorageDownloadConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.manager.storage.model.ByteRange;
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * @author alan
+ * @Description: 文件下载（支持 Range 断点续传、ETag 条件请求）
+ * - ETag 由文件大小和最后修改时间生成，If-None-Match 命中时返回 304；If-Range 不匹配时忽略 Range 返回完整文件
+ * - 本地文件（本地对象存储、本地缓存）：优先交给 Tomcat sendfile，否则 FileChannel.transferTo，数据不经过堆内存
+ * - 已打开的文件（可能随时被淘汰的缓存文件）：直接从文件通道 transferTo，不交给 sendfile（sendfile 按路径重新打开文件）
+ * - 远程对象：按 Range 向对象存储发起请求，以固定大小的缓冲区分块转发
+ * - 每个下载占用的堆内存固定，与文件大小无关
+ * @Date: 2025/10/24 10:30
+ */
+@Slf4j
+@Component
+public class ObjectDownloadManager {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private StorageDownloadConfig storageDownloadConfig;
+
+    /**
+     * 下载对象存储中的对象
+     *
+     * @param key         对象键
+     * @param contentType 内容类型
+     * @param fileName    下载文件名（为空时浏览器直接展示）
+     */
+    public void downloadObject(String key, String contentType, String fileName,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path localPath = objectStorage.getLocalPath(key);
+        if (localPath != null) {
+            downloadFile(localPath, contentType, fileName, request, response);
+            return;
+        }
+        ObjectSummary objectSummary = objectStorage.headObject(key);
+        if (objectSummary == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "文件不存在");
+        }
+        long length = objectSummary.getSize();
+        long lastModified = objectSummary.getLastModified() == null ? 0 : objectSummary.getLastModified().getTime();
+        ByteRange range = prepare(length, buildETag(length, lastModified), contentType, fileName, request, response);
+        if (range == null || range.getLength() == 0) {
+            return;
+        }
+        byte[] buffer = new byte[(int) storageDownloadConfig.getBufferSize().toBytes()];
+        try (InputStream inputStream = objectStorage.getObject(key, range.getStart(), range.getEnd())) {
+            OutputStream outputStream = response.getOutputStream();
+            long remaining = range.getLength();
+            while (remaining > 0) {
+                int count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    break;
+                }
+                outputStream.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+
+    /**
+     * 下载本地文件
+     *
+     * @param path        文件路径
+     * @param contentType 内容类型
+     * @param fileName    下载文件名（为空时浏览器直接展示）
+     */
+    public void downloadFile(Path path, String contentType, String fileName,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "文件不存在");
+        }
+        ByteRange range = prepare(attributes.size(), buildETag(attributes.size(), attributes.lastModifiedTime().toMillis()),
+                contentType, fileName, request, response);
+        if (range == null || range.getLength() == 0) {
+            return;
+        }
+        if (storageDownloadConfig.isSendfile() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由 Tomcat 在请求处理结束后通过 sendfile 发送
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.getStart());
+            request.setAttribute(SENDFILE_END, range.getEnd() + 1);
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(fileChannel, range, response);
+        }
+    }
+
+    /**
+     * 下载已打开的文件（调用方负责关闭文件通道）
+     *
+     * @param fileChannel 文件通道
+     * @param eTag        ETag（需带引号）
+     * @param contentType 内容类型
+     * @param fileName    下载文件名（为空时浏览器直接展示）
+     */
+    public void downloadChannel(FileChannel fileChannel, String eTag, String contentType, String fileName,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ByteRange range = prepare(fileChannel.size(), eTag, contentType, fileName, request, response);
+        if (range == null || range.getLength() == 0) {
+            return;
+        }
+        transfer(fileChannel, range, response);
+    }
+
+    private void transfer(FileChannel fileChannel, ByteRange range, HttpServletResponse response) throws IOException {
+        WritableByteChannel outputChannel = Channels.newChannel(response.getOutputStream());
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            long count = fileChannel.transferTo(position, remaining, outputChannel);
+            if (count <= 0) {
+                // 文件被截断
+                break;
+            }
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * 处理条件请求和 Range，写入响应头
+     *
+     * @return 需要发送的范围，null 表示响应已完成（304、416）
+     */
+    private ByteRange prepare(long length, String eTag, String contentType, String fileName,
+                              HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("ETag", eTag);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (matches(request.getHeader("If-None-Match"), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+        response.setContentType(contentType);
+        if (StrUtil.isNotBlank(fileName)) {
+            response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + encodeFileName(fileName));
+        }
+        ByteRange range = null;
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null || ifRange.equals(eTag)) {
+            range = ByteRange.parse(request.getHeader("Range"), length);
+        }
+        if (range == null) {
+            response.setContentLengthLong(length);
+            return new ByteRange(0, length - 1);
+        }
+        if (!range.isSatisfiable(length)) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            return null;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", String.format("bytes %d-%d/%d", range.getStart(), range.getEnd(), length));
+        response.setContentLengthLong(range.getLength());
+        return range;
+    }
+
+    /**
+     * 由文件大小和最后修改时间生成 ETag
+     */
+    private static String buildETag(long length, long lastModified) {
+        return String.format("\"%x-%x\"", length, lastModified);
+    }
+
+    /**
+     * If-None-Match 是否命中（支持 *、多个 ETag、弱校验）
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (StrUtil.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = StrUtil.removePrefix(candidate.trim(), "W/");
+            if ("*".equals(value) || value.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String encodeFileName(String fileName) {
+        try {
+            return URLEncoder.encode(fileName, StandardCharsets.UTF_8.name()).replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
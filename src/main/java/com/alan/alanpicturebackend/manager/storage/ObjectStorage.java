@@ -0,0 +1,144 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
+import com.alan.alanpicturebackend.manager.storage.model.StoragePutRequest;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 对象存储接口
+ * - 上传流程、衍生图生成、分块上传等只依赖该接口，不直接依赖具体的存储服务
+ * - 通过 storage.type 选择实现：cos（腾讯云 COS，默认）、local（本地文件系统）
+ * - 对象键统一使用 / 分隔，开头的 / 可有可无
+ * @Date: 2025/10/18 16:00
+ */
+public interface ObjectStorage {
+
+    /**
+     * 对象的公开访问地址前缀，对象地址为 host + "/" + key
+     */
+    String getHost();
+
+    /**
+     * 上传对象（流式上传，长度已知）
+     *
+     * @param key           对象键
+     * @param inputStream   数据流（调用方负责关闭）
+     * @param contentLength 数据长度
+     */
+    void putObject(String key, InputStream inputStream, long contentLength);
+
+    /**
+     * 并发上传一组对象（全部成功或全部回滚）
+     *
+     * @param putRequestList 上传请求列表
+     */
+    void putObjectsAllOrNothing(List<StoragePutRequest> putRequestList);
+
+    /**
+     * 下载对象
+     *
+     * @param key 对象键
+     * @return 对象数据流（调用方负责关闭）
+     */
+    InputStream getObject(String key);
+
+    /**
+     * 下载对象的一段数据
+     *
+     * @param key   对象键
+     * @param start 起始位置（包含）
+     * @param end   结束位置（包含）
+     * @return 数据流（调用方负责关闭）
+     */
+    InputStream getObject(String key, long start, long end);
+
+    /**
+     * 对象在本地文件系统中的路径，下载时可直接由文件通道发送，不经过堆内存
+     *
+     * @param key 对象键
+     * @return 对象不在本地或不存在时返回 null
+     */
+    default Path getLocalPath(String key) {
+        return null;
+    }
+
+    /**
+     * 删除对象（对象不存在时忽略）
+     *
+     * @param key 对象键
+     */
+    void deleteObject(String key);
+
+    /**
+     * 批量删除对象
+     *
+     * @param keyList 对象键列表
+     */
+    void deleteObjects(List<String> keyList);
+
+    /**
+     * 复制对象（同一存储内）
+     *
+     * @param sourceKey 源对象键
+     * @param targetKey 目标对象键（已存在时覆盖）
+     */
+    void copyObject(String sourceKey, String targetKey);
+
+    /**
+     * 按前缀列举对象，按对象键字典序返回
+     *
+     * @param prefix  对象键前缀
+     * @param marker  从该对象键之后开始列举（为空时从头开始），用于翻页
+     * @param maxKeys 最多返回的数量
+     */
+    List<ObjectSummary> listObjects(String prefix, String marker, int maxKeys);
+
+    /**
+     * 查询对象元数据
+     *
+     * @param key 对象键
+     * @return 对象不存在时返回 null
+     */
+    ObjectSummary headObject(String key);
+
+    /**
+     * 初始化分块上传
+     *
+     * @param key 对象键
+     * @return 分块上传 id
+     */
+    String initiateMultipartUpload(String key);
+
+    /**
+     * 上传分块
+     *
+     * @param key         对象键
+     * @param uploadId    分块上传 id
+     * @param partNumber  分块编号（从 1 开始）
+     * @param inputStream 分块数据流（调用方负责关闭）
+     * @param partSize    分块长度
+     * @return 分块 ETag，合并时使用
+     */
+    String uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize);
+
+    /**
+     * 合并分块
+     *
+     * @param key          对象键
+     * @param uploadId     分块上传 id
+     * @param partETagList 分块 ETag，第 i 个元素对应编号 i + 1 的分块
+     */
+    void completeMultipartUpload(String key, String uploadId, List<String> partETagList);
+
+    /**
+     * 取消分块上传，释放已上传的分块
+     *
+     * @param key      对象键
+     * @param uploadId 分块上传 id
+     */
+    void abortMultipartUpload(String key, String uploadId);
+}
@@ -0,0 +1,261 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.alan.alanpicturebackend.config.StorageGcConfig;
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
+import com.alan.alanpicturebackend.manager.storage.model.StorageGcReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * @author alan
+ * @Description: 对象存储孤儿文件清理
+ * - 按前缀分页列举存储中的对象，每页批量查询图片表的 url、thumbnailUrl、previewUrl，未被任何图片引用的即为孤儿对象
+ * - 最后修改时间在宽限期内的对象跳过（上传中的文件先写存储、后写数据库）
+ * - 试运行只生成报告；正式运行时孤儿对象移动到隔离区（或直接删除），隔离区超过保留期后彻底删除
+ * - 限流：每页之间暂停、单次执行限制扫描总数，列举断点保存在 Redis 中，下次从断点继续；多个节点同一时间只有一个执行
+ * @Date: 2025/10/20 15:30
+ */
+@Slf4j
+@Component
+public class StorageOrphanGcJob {
+
+    private static final String LOCK_KEY = "alanPicture:gc:lock";
+
+    /**
+     * 列举断点（Redis Hash）：字段为前缀（试运行加 dryRun: 前缀，与正式运行互不影响），值为上次列举到的对象键
+     */
+    private static final String CURSOR_KEY = "alanPicture:gc:cursor";
+
+    /**
+     * 最近一次执行的报告
+     */
+    private static final String REPORT_KEY = "alanPicture:gc:report";
+
+    private final String nodeName = "gc-" + IdUtil.getSnowflakeNextIdStr();
+
+    @Resource
+    private StorageGcConfig storageGcConfig;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private StorageReclaimManager storageReclaimManager;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Scheduled(cron = "${storage.gc.cron:0 30 3 * * ?}")
+    public void scheduledRun() {
+        if (storageGcConfig.isEnabled()) {
+            run(storageGcConfig.isDryRun());
+        }
+    }
+
+    /**
+     * 执行一次清理
+     *
+     * @param dryRun 是否只生成报告
+     * @return 清理报告，其他节点正在执行时返回 null
+     */
+    public StorageGcReport run(boolean dryRun) {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeName, Duration.ofHours(6));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("其他节点正在清理孤儿文件，跳过本次执行");
+            return null;
+        }
+        StorageGcReport report = new StorageGcReport();
+        report.setDryRun(dryRun);
+        report.setStartTime(new Date());
+        try {
+            int budget = storageGcConfig.getMaxScanPerRun();
+            boolean finished = true;
+            for (String prefix : storageGcConfig.getPrefixes()) {
+                budget = scan(prefix, dryRun, budget, this::collectOrphans, report);
+                if (budget < 0) {
+                    finished = false;
+                    break;
+                }
+            }
+            if (!dryRun && budget >= 0) {
+                scan(storageGcConfig.getQuarantinePrefix(), false, budget, this::purgeQuarantine, report);
+            }
+            report.setFinished(finished);
+        } catch (Exception e) {
+            log.error("清理孤儿文件失败", e);
+        } finally {
+            report.setEndTime(new Date());
+            if (nodeName.equals(stringRedisTemplate.opsForValue().get(LOCK_KEY))) {
+                stringRedisTemplate.delete(LOCK_KEY);
+            }
+        }
+        stringRedisTemplate.opsForValue().set(REPORT_KEY, JSONUtil.toJsonStr(report));
+        log.info("孤儿文件清理完成，试运行 = {}，扫描 {} 个，宽限期内 {} 个，孤儿 {} 个（{} 字节），已处理 {} 个，失败 {} 个，隔离区清除 {} 个",
+                dryRun, report.getScannedCount(), report.getRecentCount(), report.getOrphanCount(), report.getOrphanSize(),
+                report.getReclaimedCount(), report.getFailedCount(), report.getPurgedCount());
+        return report;
+    }
+
+    /**
+     * 获取最近一次执行的报告
+     */
+    public StorageGcReport getLastReport() {
+        String reportJson = stringRedisTemplate.opsForValue().get(REPORT_KEY);
+        return StrUtil.isBlank(reportJson) ? null : JSONUtil.toBean(reportJson, StorageGcReport.class);
+    }
+
+    /**
+     * 从断点开始分页列举一个前缀下的对象
+     *
+     * @param budget      剩余可扫描的对象数
+     * @param pageHandler 每页的处理逻辑
+     * @return 剩余可扫描的对象数，额度用完但前缀尚未列举完时返回 -1
+     */
+    private int scan(String prefix, boolean dryRun, int budget, BiConsumer<List<ObjectSummary>, StorageGcReport> pageHandler,
+                     StorageGcReport report) {
+        String cursorField = dryRun ? "dryRun:" + prefix : prefix;
+        String marker = (String) stringRedisTemplate.opsForHash().get(CURSOR_KEY, cursorField);
+        while (true) {
+            if (budget <= 0) {
+                return -1;
+            }
+            int pageSize = Math.min(storageGcConfig.getPageSize(), budget);
+            List<ObjectSummary> summaryList = objectStorage.listObjects(prefix, marker, pageSize);
+            budget -= summaryList.size();
+            if (!summaryList.isEmpty()) {
+                pageHandler.accept(summaryList, report);
+                marker = summaryList.get(summaryList.size() - 1).getKey();
+            }
+            if (summaryList.size() < pageSize) {
+                // 已列举到末尾，下次从头开始
+                stringRedisTemplate.opsForHash().delete(CURSOR_KEY, cursorField);
+                return budget;
+            }
+            stringRedisTemplate.opsForHash().put(CURSOR_KEY, cursorField, marker);
+            if (!throttle()) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 找出一页中的孤儿对象，非试运行时隔离或删除
+     */
+    private void collectOrphans(List<ObjectSummary> summaryList, StorageGcReport report) {
+        long graceTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(storageGcConfig.getGraceHours());
+        List<ObjectSummary> candidateList = new ArrayList<>(summaryList.size());
+        for (ObjectSummary objectSummary : summaryList) {
+            if (objectSummary.getLastModified() != null && objectSummary.getLastModified().getTime() < graceTime) {
+                candidateList.add(objectSummary);
+            }
+        }
+        report.setScannedCount(report.getScannedCount() + summaryList.size());
+        report.setRecentCount(report.getRecentCount() + summaryList.size() - candidateList.size());
+        if (candidateList.isEmpty()) {
+            return;
+        }
+        List<String> candidateKeyList = new ArrayList<>(candidateList.size());
+        for (ObjectSummary objectSummary : candidateList) {
+            candidateKeyList.add(objectSummary.getKey());
+        }
+        Set<String> referencedKeySet = storageReclaimManager.findReferencedKeys(candidateKeyList);
+        List<String> orphanKeyList = new ArrayList<>();
+        for (ObjectSummary objectSummary : candidateList) {
+            if (referencedKeySet.contains(objectSummary.getKey())) {
+                continue;
+            }
+            orphanKeyList.add(objectSummary.getKey());
+            report.setOrphanSize(report.getOrphanSize() + objectSummary.getSize());
+            if (report.getSampleKeyList().size() < storageGcConfig.getReportSampleSize()) {
+                report.getSampleKeyList().add(objectSummary.getKey());
+            }
+        }
+        report.setOrphanCount(report.getOrphanCount() + orphanKeyList.size());
+        meterRegistry.counter("storage.gc.objects", "result", "orphan").increment(orphanKeyList.size());
+        if (report.isDryRun() || orphanKeyList.isEmpty()) {
+            return;
+        }
+        List<String> deleteKeyList = new ArrayList<>(orphanKeyList.size());
+        if (storageGcConfig.isQuarantine()) {
+            for (String key : orphanKeyList) {
+                try {
+                    objectStorage.copyObject(key, storageGcConfig.getQuarantinePrefix() + key);
+                    deleteKeyList.add(key);
+                } catch (Exception e) {
+                    log.warn("移动孤儿对象到隔离区失败，key = {}", key, e);
+                    report.setFailedCount(report.getFailedCount() + 1);
+                }
+            }
+        } else {
+            deleteKeyList.addAll(orphanKeyList);
+        }
+        deleteAndCount(deleteKeyList, report, false);
+    }
+
+    /**
+     * 彻底删除隔离区中超过保留期的对象（复制到隔离区时最后修改时间即隔离时间）
+     */
+    private void purgeQuarantine(List<ObjectSummary> summaryList, StorageGcReport report) {
+        long expireTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(storageGcConfig.getQuarantineRetentionDays());
+        List<String> expiredKeyList = new ArrayList<>();
+        for (ObjectSummary objectSummary : summaryList) {
+            if (objectSummary.getLastModified() != null && objectSummary.getLastModified().getTime() < expireTime) {
+                expiredKeyList.add(objectSummary.getKey());
+            }
+        }
+        deleteAndCount(expiredKeyList, report, true);
+    }
+
+    private void deleteAndCount(List<String> keyList, StorageGcReport report, boolean purge) {
+        if (keyList.isEmpty()) {
+            return;
+        }
+        try {
+            objectStorage.deleteObjects(keyList);
+        } catch (Exception e) {
+            log.warn("批量删除对象失败，下次执行时重试，数量 = {}", keyList.size(), e);
+            report.setFailedCount(report.getFailedCount() + keyList.size());
+            return;
+        }
+        if (purge) {
+            report.setPurgedCount(report.getPurgedCount() + keyList.size());
+            meterRegistry.counter("storage.gc.objects", "result", "purged").increment(keyList.size());
+        } else {
+            report.setReclaimedCount(report.getReclaimedCount() + keyList.size());
+            meterRegistry.counter("storage.gc.objects", "result", "reclaimed").increment(keyList.size());
+        }
+    }
+
+    /**
+     * 每页之间暂停，避免与线上请求争抢存储和数据库
+     *
+     * @return 被中断时返回 false
+     */
+    private boolean throttle() {
+        try {
+            Thread.sleep(storageGcConfig.getPageIntervalMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.alan.alanpicturebackend.manager.storage;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.config.StorageReclaimConfig;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 对象存储无用文件异步回收
+ * - 删除图片、重新上传图片后，旧的原图、缩略图、压缩图由这里统一回收，不阻塞请求
+ * - 入队在数据库事务提交之后进行，事务回滚时不会误删仍在使用的文件
+ * - 待回收的对象 key 存放在 Redis ZSet 中（分数为下次尝试时间），任意节点按批认领，通过批量删除接口一次删除一批
+ * - 删除前按 url 检查是否仍被其他图片引用（内容去重后多张图片共用同一个文件），仍被引用的直接出队
+ * - 删除失败按指数退避重试，超过最大次数转入死信队列
+ * @Date: 2025/10/20 10:30
+ */
+@Slf4j
+@Component
+public class StorageReclaimManager {
+
+    /**
+     * 认领到期的对象：取出分数不大于当前时间的成员，并把分数推迟到租约到期时间，避免多个节点重复处理
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local keys = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+                    "for _, key in ipairs(keys) do redis.call('ZADD', KEYS[1], ARGV[3], key) end " +
+                    "return keys", List.class);
+
+    @Resource
+    private StorageReclaimConfig storageReclaimConfig;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 回收一组图片地址对应的对象
+     * 当前存在事务时，在事务提交后才入队；否则立即入队
+     *
+     * @param urlList 图片地址（可包含 null，不属于当前存储的地址会被忽略）
+     */
+    public void reclaim(Collection<String> urlList) {
+        List<String> keyList = toKeyList(urlList);
+        if (keyList.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(keyList);
+                }
+            });
+        } else {
+            enqueue(keyList);
+        }
+    }
+
+    /**
+     * 标记一组图片地址对应的对象正被复用（内容去重命中已有图片），标记有效期内不会被回收
+     * 复用方需在设置标记之后再确认已有图片仍然存在，不存在时放弃复用
+     *
+     * @param urlList 图片地址（可包含 null，不属于当前存储的地址会被忽略）
+     */
+    public void protect(Collection<String> urlList) {
+        for (String key : toKeyList(urlList)) {
+            stringRedisTemplate.opsForValue().set(getProtectKey(key), "1",
+                    storageReclaimConfig.getProtectSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 处理到期的待回收对象，每次认领一批，直到没有到期对象
+     */
+    @Scheduled(initialDelay = 30, fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    public void reclaimDue() {
+        int batchSize = storageReclaimConfig.getBatchSize();
+        while (true) {
+            List<String> keyList;
+            try {
+                keyList = claim(batchSize);
+            } catch (Exception e) {
+                log.error("认领待回收对象失败", e);
+                return;
+            }
+            if (keyList.isEmpty()) {
+                return;
+            }
+            deleteBatch(keyList);
+            if (keyList.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 删除一批对象：跳过仍被引用的，其余通过批量删除接口一次删除
+     */
+    void deleteBatch(List<String> keyList) {
+        Set<String> referencedKeySet = findReferencedKeys(keyList);
+        List<String> deleteKeyList = new ArrayList<>(keyList.size());
+        for (String key : keyList) {
+            if (!referencedKeySet.contains(key)) {
+                deleteKeyList.add(key);
+            }
+        }
+        if (!referencedKeySet.isEmpty()) {
+            log.info("对象仍被其他图片引用，跳过回收，数量 = {}", referencedKeySet.size());
+            complete(referencedKeySet);
+            meterRegistry.counter("storage.reclaim.objects", "result", "referenced").increment(referencedKeySet.size());
+        }
+        // 引用检查之后再检查保护标记：复用方先设置标记再确认引用仍存在，两者交错时至少有一方能发现对方
+        List<String> protectedKeyList = findProtectedKeys(deleteKeyList);
+        if (!protectedKeyList.isEmpty()) {
+            log.info("对象正被去重上传复用，推迟回收，数量 = {}", protectedKeyList.size());
+            postpone(protectedKeyList);
+            deleteKeyList.removeAll(protectedKeyList);
+            meterRegistry.counter("storage.reclaim.objects", "result", "protected").increment(protectedKeyList.size());
+        }
+        if (deleteKeyList.isEmpty()) {
+            return;
+        }
+        try {
+            objectStorage.deleteObjects(deleteKeyList);
+        } catch (Exception e) {
+            log.warn("批量删除对象失败，稍后重试，数量 = {}", deleteKeyList.size(), e);
+            retryLater(deleteKeyList);
+            meterRegistry.counter("storage.reclaim.objects", "result", "failed").increment(deleteKeyList.size());
+            return;
+        }
+        complete(deleteKeyList);
+        meterRegistry.counter("storage.reclaim.objects", "result", "deleted").increment(deleteKeyList.size());
+    }
+
+    /**
+     * 待回收对象入队，延迟一段时间后才会被删除
+     * 入队失败只记录日志，遗留的对象由孤儿文件清理任务兜底
+     */
+    private void enqueue(List<String> keyList) {
+        double score = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(storageReclaimConfig.getDelaySeconds());
+        Set<ZSetOperations.TypedTuple<String>> tupleSet = new HashSet<>();
+        for (String key : keyList) {
+            tupleSet.add(ZSetOperations.TypedTuple.of(key, score));
+        }
+        try {
+            stringRedisTemplate.opsForZSet().add(storageReclaimConfig.getQueueKey(), tupleSet);
+        } catch (Exception e) {
+            log.error("待回收对象入队失败，keys = {}", keyList, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> claim(int batchSize) {
+        long now = System.currentTimeMillis();
+        long leaseTime = now + TimeUnit.SECONDS.toMillis(storageReclaimConfig.getLeaseSeconds());
+        List<String> keyList = stringRedisTemplate.execute(CLAIM_SCRIPT,
+                Collections.singletonList(storageReclaimConfig.getQueueKey()),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(leaseTime));
+        return keyList == null ? Collections.emptyList() : keyList;
+    }
+
+    /**
+     * 查询仍被未删除图片引用的对象 key（url、thumbnailUrl、previewUrl 任意一个引用即算）
+     * 上传时对象键以 / 开头，地址中会出现 host//，而列举对象返回的键不带开头的 /，两种形式都要匹配
+     *
+     * @param keyList 对象键
+     * @return 仍被引用的对象键（与传入的形式一致）
+     */
+    public Set<String> findReferencedKeys(Collection<String> keyList) {
+        if (CollUtil.isEmpty(keyList)) {
+            return Collections.emptySet();
+        }
+        String prefix = objectStorage.getHost() + "/";
+        List<String> urlList = new ArrayList<>(keyList.size() * 2);
+        for (String key : keyList) {
+            String normalizedKey = StrUtil.removePrefix(key, "/");
+            urlList.add(prefix + normalizedKey);
+            urlList.add(prefix + "/" + normalizedKey);
+        }
+        // 三列分别查询，各自走 idx_url、idx_thumbnailUrl、idx_previewUrl（OR 条件会退化为全表扫描）
+        Set<String> referencedKeySet = new HashSet<>();
+        for (SFunction<Picture, String> urlColumn : Arrays.<SFunction<Picture, String>>asList(
+                Picture::getUrl, Picture::getThumbnailUrl, Picture::getPreviewUrl)) {
+            List<Object> referencedUrlList = pictureMapper.selectObjs(new LambdaQueryWrapper<Picture>()
+                    .select(urlColumn)
+                    .in(urlColumn, urlList));
+            for (Object url : referencedUrlList) {
+                if (url != null && url.toString().startsWith(prefix)) {
+                    referencedKeySet.add(StrUtil.removePrefix(url.toString().substring(prefix.length()), "/"));
+                }
+            }
+        }
+        Set<String> resultSet = new HashSet<>();
+        for (String key : keyList) {
+            if (referencedKeySet.contains(StrUtil.removePrefix(key, "/"))) {
+                resultSet.add(key);
+            }
+        }
+        return resultSet;
+    }
+
+    /**
+     * 查询存在复用保护标记的对象 key
+     */
+    private List<String> findProtectedKeys(List<String> keyList) {
+        List<String> protectKeyList = new ArrayList<>(keyList.size());
+        for (String key : keyList) {
+            protectKeyList.add(getProtectKey(key));
+        }
+        List<String> markList = stringRedisTemplate.opsForValue().multiGet(protectKeyList);
+        List<String> protectedKeyList = new ArrayList<>();
+        for (int i = 0; markList != null && i < keyList.size(); i++) {
+            if (markList.get(i) != null) {
+                protectedKeyList.add(keyList.get(i));
+            }
+        }
+        return protectedKeyList;
+    }
+
+    /**
+     * 推迟回收（不计入失败次数），标记过期后重新检查引用
+     */
+    private void postpone(List<String> keyList) {
+        double score = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(storageReclaimConfig.getProtectSeconds());
+        for (String key : keyList) {
+            stringRedisTemplate.opsForZSet().add(storageReclaimConfig.getQueueKey(), key, score);
+        }
+    }
+
+    /**
+     * 保护标记的 key（对象键统一去掉开头的 /）
+     */
+    private String getProtectKey(String key) {
+        return storageReclaimConfig.getProtectKeyPrefix() + StrUtil.removePrefix(key, "/");
+    }
+
+    /**
+     * 回收完成：出队并清除失败次数
+     */
+    private void complete(Collection<String> keyList) {
+        Object[] keys = keyList.toArray();
+        stringRedisTemplate.opsForZSet().remove(storageReclaimConfig.getQueueKey(), keys);
+        stringRedisTemplate.opsForHash().delete(storageReclaimConfig.getAttemptKey(), keys);
+    }
+
+    /**
+     * 删除失败：按失败次数指数退避后重试，超过最大次数转入死信队列
+     */
+    private void retryLater(List<String> keyList) {
+        long now = System.currentTimeMillis();
+        for (String key : keyList) {
+            Long attempt = stringRedisTemplate.opsForHash().increment(storageReclaimConfig.getAttemptKey(), key, 1);
+            if (attempt >= storageReclaimConfig.getMaxAttempts()) {
+                log.error("对象回收失败次数过多，已转入死信队列，key = {}", key);
+                stringRedisTemplate.opsForSet().add(storageReclaimConfig.getDeadLetterKey(), key);
+                complete(Collections.singletonList(key));
+                continue;
+            }
+            long backoffSeconds = Math.min(storageReclaimConfig.getBackoffSeconds() << Math.min(attempt - 1, 20),
+                    storageReclaimConfig.getMaxBackoffSeconds());
+            stringRedisTemplate.opsForZSet().add(storageReclaimConfig.getQueueKey(), key,
+                    now + TimeUnit.SECONDS.toMillis(backoffSeconds));
+        }
+    }
+
+    /**
+     * 由图片 url 得到对象存储中的 key，忽略空地址和不属于当前存储的地址
+     */
+    private List<String> toKeyList(Collection<String> urlList) {
+        if (CollUtil.isEmpty(urlList)) {
+            return Collections.emptyList();
+        }
+        String prefix = objectStorage.getHost() + "/";
+        Set<String> keySet = new LinkedHashSet<>();
+        for (String url : urlList) {
+            if (StrUtil.isNotBlank(url) && url.startsWith(prefix) && url.length() > prefix.length()) {
+                keySet.add(url.substring(prefix.length()));
+            }
+        }
+        return new ArrayList<>(keySet);
+    }
+}
@@ -0,0 +1,79 @@
+package com.alan.alanpicturebackend.manager.storage.model;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: HTTP Range 请求的字节范围（只支持单个范围）
+ * @Date: 2025/10/24 10:10
+ */
+@Data
+@AllArgsConstructor
+public class ByteRange {
+
+    /**
+     * 起始位置（包含）
+     */
+    private long start;
+
+    /**
+     * 结束位置（包含）
+     */
+    private long end;
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * 范围是否在文件长度之内
+     */
+    public boolean isSatisfiable(long length) {
+        return start < length && start <= end;
+    }
+
+    /**
+     * 解析 Range 请求头
+     * - bytes=0-99、bytes=100-（到末尾）、bytes=-100（最后 100 字节），结束位置超过文件长度时截断
+     * - 多个范围、格式错误或单位不是 bytes 时返回 null，按完整文件返回（RFC 7233 允许忽略 Range）
+     *
+     * @param rangeHeader Range 请求头
+     * @param length      文件长度
+     * @return 不满足要求的范围也会返回，由调用方通过 isSatisfiable 判断是否返回 416
+     */
+    public static ByteRange parse(String rangeHeader, long length) {
+        if (StrUtil.isBlank(rangeHeader) || !rangeHeader.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+        int dashIndex = spec.indexOf('-');
+        if (dashIndex < 0) {
+            return null;
+        }
+        try {
+            String startText = spec.substring(0, dashIndex).trim();
+            String endText = spec.substring(dashIndex + 1).trim();
+            if (startText.isEmpty()) {
+                // 后缀范围
+                long suffixLength = Long.parseLong(endText);
+                if (suffixLength <= 0) {
+                    return new ByteRange(length, length - 1);
+                }
+                return new ByteRange(Math.max(0, length - suffixLength), length - 1);
+            }
+            long start = Long.parseLong(startText);
+            long end = endText.isEmpty() ? length - 1 : Math.min(Long.parseLong(endText), length - 1);
+            if (start < 0 || (!endText.isEmpty() && Long.parseLong(endText) < start)) {
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
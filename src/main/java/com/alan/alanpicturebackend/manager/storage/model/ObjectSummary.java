@@ -0,0 +1,33 @@
+package com.alan.alanpicturebackend.manager.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * @author alan
+ * @Description: 存储对象的基本信息（列举、查询元数据时返回）
+ * @Date: 2025/10/18 16:05
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectSummary {
+
+    /**
+     * 对象键（不带开头的 /）
+     */
+    private String key;
+
+    /**
+     * 对象大小（字节）
+     */
+    private long size;
+
+    /**
+     * 最后修改时间
+     */
+    private Date lastModified;
+}
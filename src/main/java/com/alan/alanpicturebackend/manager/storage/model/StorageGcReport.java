@@ -0,0 +1,67 @@
+package com.alan.alanpicturebackend.manager.storage.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 孤儿文件清理报告
+ * @Date: 2025/10/20 15:10
+ */
+@Data
+public class StorageGcReport {
+
+    /**
+     * 是否为试运行（只统计，不处理）
+     */
+    private boolean dryRun;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    /**
+     * 扫描的对象数
+     */
+    private long scannedCount;
+
+    /**
+     * 仍在宽限期内而跳过的对象数
+     */
+    private long recentCount;
+
+    /**
+     * 孤儿对象数和总大小（字节）
+     */
+    private long orphanCount;
+
+    private long orphanSize;
+
+    /**
+     * 已删除或已隔离的孤儿对象数
+     */
+    private long reclaimedCount;
+
+    /**
+     * 处理失败的孤儿对象数
+     */
+    private long failedCount;
+
+    /**
+     * 隔离区中超过保留期被彻底删除的对象数
+     */
+    private long purgedCount;
+
+    /**
+     * 是否已扫描到所有前缀的末尾（否则下次从断点继续）
+     */
+    private boolean finished;
+
+    /**
+     * 部分孤儿对象键（用于人工核对）
+     */
+    private List<String> sampleKeyList = new ArrayList<>();
+}
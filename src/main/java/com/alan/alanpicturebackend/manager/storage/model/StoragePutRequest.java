@@ -0,0 +1,31 @@
+package com.alan.alanpicturebackend.manager.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.InputStream;
+
+/**
+ * @author alan
+ * @Description: 对象上传请求（流式上传，长度已知）
+ * @Date: 2025/10/18 16:08
+ */
+@Data
+@AllArgsConstructor
+public class StoragePutRequest {
+
+    /**
+     * 对象键
+     */
+    private String key;
+
+    /**
+     * 数据流（调用方负责关闭）
+     */
+    private InputStream inputStream;
+
+    /**
+     * 数据长度
+     */
+    private long contentLength;
+}
@@ -0,0 +1,49 @@
+package com.alan.alanpicturebackend.manager.upload;
+
+import cn.hutool.core.io.IoUtil;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.model.dto.file.ChunkUploadSession;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author alan
+ * @Description: 分块上传图片子类（输入源为已合并的暂存对象，校验后在存储内复制到正式路径，不重新下载和上传）
+ * @Date: 2025/10/18 15:00
+ */
+@Service
+public class ChunkPictureUpload extends PictureUploadTemplate {
+
+    @Override
+    protected void validPicture(Object inputSource) {
+        ChunkUploadSession session = (ChunkUploadSession) inputSource;
+        // 文件大小和类型已在初始化分块上传时校验
+        ThrowUtils.throwIf(session == null || session.getKey() == null, ErrorCode.PARAMS_ERROR, "上传任务不存在");
+    }
+
+    @Override
+    protected String getOriginFilename(Object inputSource) {
+        ChunkUploadSession session = (ChunkUploadSession) inputSource;
+        return session.getFileName();
+    }
+
+    /**
+     * 将暂存对象写入缓冲区（按普通输入源处理时使用，默认由 getStagedKey 在存储内复制）
+     */
+    @Override
+    protected void processFile(Object inputSource, OutputStream outputStream) throws Exception {
+        ChunkUploadSession session = (ChunkUploadSession) inputSource;
+        try (InputStream inputStream = objectStorage.getObject(session.getKey())) {
+            IoUtil.copy(inputStream, outputStream);
+        }
+    }
+
+    @Override
+    protected String getStagedKey(Object inputSource) {
+        ChunkUploadSession session = (ChunkUploadSession) inputSource;
+        return session.getKey();
+    }
+}
@@ -1,12 +1,14 @@
 package com.alan.alanpicturebackend.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import com.alan.alanpicturebackend.exception.ErrorCode;
 import com.alan.alanpicturebackend.exception.ThrowUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -44,8 +46,10 @@ public class FilePictureUpload extends PictureUploadTemplate {
     }
 
     @Override
-    protected void processFile(Object inputSource, File file) throws Exception {
+    protected void processFile(Object inputSource, OutputStream outputStream) throws Exception {
         MultipartFile multipartFile = (MultipartFile) inputSource;
-        multipartFile.transferTo(file);
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            IoUtil.copy(inputStream, outputStream);
+        }
     }
 }
@@ -0,0 +1,256 @@
+package com.alan.alanpicturebackend.manager.upload;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.config.PictureUploadConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.model.dto.file.ChunkUploadSession;
+import com.alan.alanpicturebackend.model.dto.picture.PictureChunkUploadInitRequest;
+import com.alan.alanpicturebackend.model.entity.User;
+import com.alan.alanpicturebackend.model.vo.PictureChunkUploadVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 图片分块上传（断点续传）
+ * - 每个分块到达后直接转发到对象存储的分块上传
+ * - 上传任务和已上传分块的 ETag 保存在 Redis Hash 中，任意节点都可以接收任意分块
+ * - 合并后的对象只是暂存，由 {@link ChunkPictureUpload} 校验后在存储内复制到正式路径，入库成功后删除暂存对象
+ * - 合并成功后记录为已合并，入库失败时解除处理中标记，重试时跳过合并直接入库，取消时删除暂存对象
+ * - 过期未完成的任务残留的分块，使用 COS 时需要在存储桶上配置“清理未完成分块上传”的生命周期规则；
+ *   任务过期后残留的暂存对象（chunk/ 前缀）由孤儿文件清理任务删除
+ * @Date: 2025/10/18 14:30
+ */
+@Slf4j
+@Component
+public class PictureChunkUploadManager {
+
+    private static final String CHUNK_UPLOAD_KEY_PREFIX = "alanPicture:chunkUpload:";
+
+    /**
+     * 已上传分块的 Hash 字段前缀，值为分块 ETag
+     */
+    private static final String PART_FIELD_PREFIX = "part:";
+
+    /**
+     * 正在合并的标记字段，防止重复合并
+     */
+    private static final String COMPLETING_FIELD = "completing";
+
+    /**
+     * 已合并的标记字段，重试入库时不再合并
+     */
+    private static final String MERGED_FIELD = "merged";
+
+    /**
+     * 允许上传的文件类型
+     */
+    private static final List<String> ALLOW_FORMAT_LIST = Arrays.asList("jpeg", "jpg", "png", "webp");
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 初始化分块上传任务
+     */
+    public PictureChunkUploadVO initChunkUpload(PictureChunkUploadInitRequest pictureChunkUploadInitRequest, User loginUser) {
+        ThrowUtils.throwIf(pictureChunkUploadInitRequest == null, ErrorCode.PARAMS_ERROR);
+        String fileName = pictureChunkUploadInitRequest.getFileName();
+        Long fileSize = pictureChunkUploadInitRequest.getFileSize();
+        ThrowUtils.throwIf(StrUtil.isBlank(fileName), ErrorCode.PARAMS_ERROR, "文件名不能为空");
+        ThrowUtils.throwIf(fileSize == null || fileSize <= 0, ErrorCode.PARAMS_ERROR, "文件大小错误");
+        long maxFileSize = pictureUploadConfig.getChunkMaxFileSize().toBytes();
+        ThrowUtils.throwIf(fileSize > maxFileSize, ErrorCode.PARAMS_ERROR,
+                "上传文件大小不能超过 " + pictureUploadConfig.getChunkMaxFileSize().toMegabytes() + " MB");
+        String fileSuffix = FileUtil.getSuffix(fileName);
+        ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(fileSuffix), ErrorCode.PARAMS_ERROR, "上传文件类型错误");
+
+        long partSize = pictureUploadConfig.getChunkPartSize().toBytes();
+        String key = String.format("/chunk/%s/%s.%s", loginUser.getId(), RandomUtil.randomString(16), fileSuffix);
+        ChunkUploadSession session = new ChunkUploadSession();
+        session.setUploadId(IdUtil.fastSimpleUUID());
+        session.setUserId(loginUser.getId());
+        session.setKey(key);
+        session.setCosUploadId(objectStorage.initiateMultipartUpload(key));
+        session.setFileName(fileName);
+        session.setFileSize(fileSize);
+        session.setPartSize(partSize);
+        session.setPartCount((int) ((fileSize + partSize - 1) / partSize));
+        session.setId(pictureChunkUploadInitRequest.getId());
+        session.setPicName(pictureChunkUploadInitRequest.getPicName());
+        session.setSpaceId(pictureChunkUploadInitRequest.getSpaceId());
+
+        Map<String, String> sessionMap = new HashMap<>();
+        BeanUtil.beanToMap(session, false, true).forEach((field, value) -> sessionMap.put(field, String.valueOf(value)));
+        String redisKey = CHUNK_UPLOAD_KEY_PREFIX + session.getUploadId();
+        stringRedisTemplate.opsForHash().putAll(redisKey, sessionMap);
+        stringRedisTemplate.expire(redisKey, pictureUploadConfig.getChunkExpireHours(), TimeUnit.HOURS);
+        return toVO(session, Collections.emptyMap());
+    }
+
+    /**
+     * 查询分块上传任务（断点续传时获取已上传的分块）
+     */
+    public PictureChunkUploadVO getChunkUpload(String uploadId, User loginUser) {
+        Map<Object, Object> entries = getEntries(uploadId);
+        return toVO(toSession(entries, loginUser), entries);
+    }
+
+    /**
+     * 上传分块，重复上传同一编号的分块会覆盖之前的结果
+     *
+     * @param uploadId      上传任务 id
+     * @param partNumber    分块编号（从 1 开始）
+     * @param multipartFile 分块数据
+     */
+    public void uploadPart(String uploadId, Integer partNumber, MultipartFile multipartFile, User loginUser) {
+        ChunkUploadSession session = toSession(getEntries(uploadId), loginUser);
+        int partCount = session.getPartCount();
+        ThrowUtils.throwIf(partNumber == null || partNumber < 1 || partNumber > partCount, ErrorCode.PARAMS_ERROR, "分块编号错误");
+        // 除最后一块外，每块大小都必须等于分块大小
+        long expectedSize = partNumber < partCount
+                ? session.getPartSize()
+                : session.getFileSize() - session.getPartSize() * (partCount - 1);
+        ThrowUtils.throwIf(multipartFile == null || multipartFile.getSize() != expectedSize, ErrorCode.PARAMS_ERROR, "分块大小错误");
+
+        String partETag;
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            partETag = objectStorage.uploadPart(session.getKey(), session.getCosUploadId(), partNumber, inputStream, expectedSize);
+        } catch (IOException e) {
+            log.error("读取分块数据失败, uploadId = {}, partNumber = {}", uploadId, partNumber, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分块上传失败");
+        }
+        String redisKey = CHUNK_UPLOAD_KEY_PREFIX + uploadId;
+        stringRedisTemplate.opsForHash().put(redisKey, PART_FIELD_PREFIX + partNumber, partETag);
+        stringRedisTemplate.expire(redisKey, pictureUploadConfig.getChunkExpireHours(), TimeUnit.HOURS);
+    }
+
+    /**
+     * 合并分块，得到完整的暂存对象（已合并时直接返回）
+     * 调用方入库成功后需要调用 {@link #release} 删除暂存对象和任务状态，失败时调用 {@link #completeFailed} 允许重试
+     *
+     * @return 上传任务
+     */
+    public ChunkUploadSession completeChunkUpload(String uploadId, User loginUser) {
+        Map<Object, Object> entries = getEntries(uploadId);
+        ChunkUploadSession session = toSession(entries, loginUser);
+        String redisKey = CHUNK_UPLOAD_KEY_PREFIX + uploadId;
+        HashOperations<String, Object, Object> hashOperations = stringRedisTemplate.opsForHash();
+        if (entries.containsKey(MERGED_FIELD)) {
+            Boolean first = hashOperations.putIfAbsent(redisKey, COMPLETING_FIELD, "1");
+            ThrowUtils.throwIf(!Boolean.TRUE.equals(first), ErrorCode.OPERATION_ERROR, "上传任务正在处理中");
+            return session;
+        }
+        List<String> partETagList = new ArrayList<>(session.getPartCount());
+        for (int partNumber = 1; partNumber <= session.getPartCount(); partNumber++) {
+            Object eTag = entries.get(PART_FIELD_PREFIX + partNumber);
+            ThrowUtils.throwIf(eTag == null, ErrorCode.PARAMS_ERROR, "分块 " + partNumber + " 尚未上传");
+            partETagList.add(eTag.toString());
+        }
+        Boolean first = hashOperations.putIfAbsent(redisKey, COMPLETING_FIELD, "1");
+        ThrowUtils.throwIf(!Boolean.TRUE.equals(first), ErrorCode.OPERATION_ERROR, "上传任务正在处理中");
+        try {
+            objectStorage.completeMultipartUpload(session.getKey(), session.getCosUploadId(), partETagList);
+        } catch (Exception e) {
+            log.error("合并分块失败, uploadId = {}", uploadId, e);
+            hashOperations.delete(redisKey, COMPLETING_FIELD);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "合并分块失败");
+        }
+        hashOperations.put(redisKey, MERGED_FIELD, "1");
+        return session;
+    }
+
+    /**
+     * 入库失败：解除处理中标记，暂存对象保留，可以重试入库或取消上传
+     * 不刷新任务有效期，任务过期时间不晚于暂存对象的最后修改时间加上有效期
+     */
+    public void completeFailed(ChunkUploadSession session) {
+        stringRedisTemplate.opsForHash().delete(CHUNK_UPLOAD_KEY_PREFIX + session.getUploadId(), COMPLETING_FIELD);
+    }
+
+    /**
+     * 取消分块上传
+     */
+    public void abortChunkUpload(String uploadId, User loginUser) {
+        Map<Object, Object> entries = getEntries(uploadId);
+        ChunkUploadSession session = toSession(entries, loginUser);
+        ThrowUtils.throwIf(entries.containsKey(COMPLETING_FIELD), ErrorCode.OPERATION_ERROR, "上传任务正在处理中");
+        if (entries.containsKey(MERGED_FIELD)) {
+            // 已合并，删除暂存对象和任务状态
+            release(session);
+            return;
+        }
+        try {
+            objectStorage.abortMultipartUpload(session.getKey(), session.getCosUploadId());
+        } catch (Exception e) {
+            // 分块可能已过期被清理，不影响删除任务
+            log.error("取消分块上传失败, uploadId = {}", uploadId, e);
+        }
+        stringRedisTemplate.delete(CHUNK_UPLOAD_KEY_PREFIX + uploadId);
+    }
+
+    /**
+     * 删除合并后的暂存对象和任务状态
+     */
+    public void release(ChunkUploadSession session) {
+        try {
+            objectStorage.deleteObject(session.getKey());
+        } catch (Exception e) {
+            log.error("删除分块上传暂存对象失败, key = {}", session.getKey(), e);
+        }
+        stringRedisTemplate.delete(CHUNK_UPLOAD_KEY_PREFIX + session.getUploadId());
+    }
+
+    private Map<Object, Object> getEntries(String uploadId) {
+        ThrowUtils.throwIf(StrUtil.isBlank(uploadId), ErrorCode.PARAMS_ERROR, "上传任务 id 不能为空");
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CHUNK_UPLOAD_KEY_PREFIX + uploadId);
+        ThrowUtils.throwIf(entries.isEmpty(), ErrorCode.NOT_FOUND_ERROR, "上传任务不存在或已过期");
+        return entries;
+    }
+
+    /**
+     * 还原上传任务，并校验只有发起人可以继续操作
+     */
+    private ChunkUploadSession toSession(Map<Object, Object> entries, User loginUser) {
+        ChunkUploadSession session = BeanUtil.toBean(entries, ChunkUploadSession.class);
+        ThrowUtils.throwIf(!session.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR);
+        return session;
+    }
+
+    private PictureChunkUploadVO toVO(ChunkUploadSession session, Map<Object, Object> entries) {
+        List<Integer> uploadedPartList = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= session.getPartCount(); partNumber++) {
+            if (entries.containsKey(PART_FIELD_PREFIX + partNumber)) {
+                uploadedPartList.add(partNumber);
+            }
+        }
+        PictureChunkUploadVO pictureChunkUploadVO = new PictureChunkUploadVO();
+        pictureChunkUploadVO.setUploadId(session.getUploadId());
+        pictureChunkUploadVO.setPartSize(session.getPartSize());
+        pictureChunkUploadVO.setPartCount(session.getPartCount());
+        pictureChunkUploadVO.setUploadedPartList(uploadedPartList);
+        return pictureChunkUploadVO;
+    }
+}
@@ -0,0 +1,219 @@
+package com.alan.alanpicturebackend.manager.upload;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.*;
+
+/**
+ * @author alan
+ * @Description: 图片上传缓冲区
+ * - 数据先写入内存，超过阈值后才溢出到本地临时文件
+ * - 写入完成后可多次读取，长度已知，可直接作为对象存储上传的输入
+ * - close 时释放内存并删除临时文件，配合 try-with-resources 使用，异常时也不会遗留文件
+ * @Date: 2025/10/17 14:20
+ */
+@Slf4j
+public class PictureUploadBuffer implements Closeable {
+
+    /**
+     * 内存阈值（字节），超过后溢出到磁盘
+     */
+    private final long memoryThreshold;
+
+    /**
+     * 临时文件后缀
+     */
+    private final String suffix;
+
+    /**
+     * 内存数据
+     */
+    private ExposedByteArrayOutputStream memoryStream = new ExposedByteArrayOutputStream();
+
+    /**
+     * 溢出后的临时文件
+     */
+    private File spillFile;
+
+    /**
+     * 溢出后的文件输出流
+     */
+    private OutputStream fileStream;
+
+    /**
+     * 已写入的字节数
+     */
+    private long size;
+
+    private boolean writeClosed;
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (writeClosed) {
+                throw new IOException("缓冲区已关闭写入");
+            }
+            if (fileStream == null && size + len > memoryThreshold) {
+                spill();
+            }
+            if (fileStream != null) {
+                fileStream.write(b, off, len);
+            } else {
+                memoryStream.write(b, off, len);
+            }
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeWrite();
+        }
+    };
+
+    public PictureUploadBuffer(long memoryThreshold, String suffix) {
+        this.memoryThreshold = memoryThreshold;
+        this.suffix = suffix;
+    }
+
+    /**
+     * 获取写入流（只能写入一次，关闭后不可再写）
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 数据是否仍在内存中
+     */
+    public boolean isInMemory() {
+        return spillFile == null;
+    }
+
+    /**
+     * 打开读取流（可多次打开）
+     */
+    public InputStream openInputStream() throws IOException {
+        closeWrite();
+        if (spillFile != null) {
+            return new BufferedInputStream(new FileInputStream(spillFile));
+        }
+        return new ByteArrayInputStream(memoryStream.buf(), 0, memoryStream.size());
+    }
+
+    /**
+     * 打开图片读取流，内存数据直接读取字节数组，避免 ImageIO 再复制一份缓存
+     */
+    public ImageInputStream openImageInputStream() throws IOException {
+        closeWrite();
+        if (spillFile != null) {
+            return new FileImageInputStream(spillFile);
+        }
+        return new ByteArrayImageInputStream(memoryStream.buf(), memoryStream.size());
+    }
+
+    /**
+     * 溢出到磁盘
+     */
+    private void spill() throws IOException {
+        spillFile = File.createTempFile("pictureUpload", "." + suffix);
+        fileStream = new BufferedOutputStream(new FileOutputStream(spillFile));
+        memoryStream.writeTo(fileStream);
+        memoryStream = new ExposedByteArrayOutputStream();
+    }
+
+    private void closeWrite() throws IOException {
+        if (writeClosed) {
+            return;
+        }
+        writeClosed = true;
+        if (fileStream != null) {
+            fileStream.close();
+        }
+    }
+
+    /**
+     * 释放内存并删除临时文件
+     */
+    @Override
+    public void close() {
+        try {
+            closeWrite();
+        } catch (IOException e) {
+            log.error("关闭缓冲区文件流失败", e);
+        }
+        memoryStream = new ExposedByteArrayOutputStream();
+        if (spillFile != null && !spillFile.delete()) {
+            log.error("file delete error, filepath = {}", spillFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 暴露内部数组，读取时不再复制
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buf() {
+            return buf;
+        }
+    }
+
+    /**
+     * 基于字节数组的 ImageInputStream
+     */
+    private static class ByteArrayImageInputStream extends ImageInputStreamImpl {
+
+        private final byte[] data;
+
+        private final int length;
+
+        ByteArrayImageInputStream(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            return data[(int) streamPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            if (streamPos >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - streamPos);
+            System.arraycopy(data, (int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+}
@@ -2,21 +2,45 @@ package com.alan.alanpicturebackend.manager.upload;
 
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.io.NullOutputStream;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.RandomUtil;
-import com.alan.alanpicturebackend.config.CosClientConfig;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.alan.alanpicturebackend.config.PictureUploadConfig;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
-import com.alan.alanpicturebackend.manager.CosManager;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.StorageReclaimManager;
+import com.alan.alanpicturebackend.manager.utils.PictureFormatUtils;
 import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
 import com.alan.alanpicturebackend.model.dto.file.UploadPictureResult;
-import com.qcloud.cos.model.PutObjectResult;
-import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.Resource;
-import java.io.File;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author alan
@@ -27,14 +51,23 @@ import java.util.Date;
 public abstract class PictureUploadTemplate {
 
     @Resource
-    protected CosManager cosManager;
+    protected ObjectStorage objectStorage;
 
     @Resource
-    protected CosClientConfig cosClientConfig;
+    protected PictureUploadConfig pictureUploadConfig;
 
     @Resource
     private PictureProcessUtils pictureProcessUtils;
 
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private ThreadPoolExecutor cosUploadExecutor;
+
+    @Resource
+    private StorageReclaimManager storageReclaimManager;
+
     /**
      * 模板方法，定义上传流程
      *
@@ -59,54 +92,179 @@ public abstract class PictureUploadTemplate {
             originFileSuffix = originFileSuffix.split("\\?")[0];
         }
 
-        // 原始图片上传图片名称
-        String uploadFilename = String.format("%s_%s.%s", uploadTime, uuid, originFileSuffix);
-        // 缩略图名称
-        String thumbnailImageName = String.format("%s_%s_thumbnail.%s", uploadTime, uuid, originFileSuffix);
-        // 压缩图
-        String previewImageName = String.format("%s_%s_preview.webp", uploadTime, uuid);
-
-        // 上传路径
-        String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
-        String thumbnailImagePath = String.format("/%s/%s", uploadPathPrefix, thumbnailImageName);
-        String previewImagePath = String.format("/%s/%s", uploadPathPrefix, previewImageName);
-
-        File originalFile = null;
-        File thumbnailImage = null; // 缩略图
-        File previewImage = null;  // 压缩图（预览图）
-        try {
-            // 3. 创建临时文件
-            originalFile = File.createTempFile("originalImage", "." + originFileSuffix);
-            thumbnailImage = File.createTempFile("thumbnailImage", "." + originFileSuffix);
-            previewImage = File.createTempFile("previewImage", ".webp");
-
-            /* 处理文件来源（本地或 URL） */
-            processFile(inputSource, originalFile);
-
-            /* 处理图片 */
-            // 1). 生成缩略图
-            pictureProcessUtils.toThumbnailImage(originalFile, thumbnailImage);
-
-            // 2). 生成压缩图（webp）
-            pictureProcessUtils.toPreviewImage(originalFile, previewImage);
-
-            // 4. 上传图片到对象存储
-            // 1) 原图
-            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, originalFile);
-            ImageInfo imageInfo = putObjectResult.getCiUploadResult().getOriginalInfo().getImageInfo();
-            // 2）缩略图
-            cosManager.putObject(thumbnailImagePath, thumbnailImage);
-            // 3）压缩图（webp）
-            cosManager.putObject(previewImagePath, previewImage);
+        /* 输入源已在对象存储中（分块上传合并后的暂存对象），在存储内复制到正式路径，不经过缓冲区 */
+        String stagedKey = getStagedKey(inputSource);
+        if (stagedKey != null) {
+            return uploadStagedPicture(stagedKey, originFilename, String.format("/%s/%s_%s", uploadPathPrefix, uploadTime, uuid));
+        }
+
+        // 3. 创建上传缓冲区（默认在内存中，超过阈值才溢出到磁盘，关闭时统一释放）
+        try (PictureUploadBuffer originalBuffer = new PictureUploadBuffer(
+                pictureUploadConfig.getMemoryThreshold().toBytes(), originFileSuffix)) {
+
+            /* 处理文件来源（本地或 URL），写入的同时计算内容摘要 */
+            MessageDigest messageDigest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+            try (OutputStream outputStream = new DigestOutputStream(originalBuffer.getOutputStream(), messageDigest)) {
+                processFile(inputSource, outputStream);
+            }
+            String contentHash = HexUtil.encodeHexStr(messageDigest.digest());
+
+            /* 内容相同的图片已存在，直接复用已有的原图和衍生图，不再重复处理和上传 */
+            Picture samePicture = getSameContentPicture(contentHash);
+            if (samePicture != null && protectReuse(samePicture)) {
+                return buildReuseResult(originFilename, contentHash, samePicture);
+            }
+
+            /* 按文件头魔数识别实际格式，作为对象存储的文件后缀（URL 不一定带有正确的后缀） */
+            String picFormat = detectFormat(originalBuffer);
+            ThrowUtils.throwIf(picFormat == null, ErrorCode.PARAMS_ERROR, "文件类型错误");
+
+            // 原始图片上传图片名称（缩略图、压缩图由后台任务按同一前缀生成）
+            String uploadFilename = String.format("%s_%s.%s", uploadTime, uuid, picFormat);
+
+            // 上传路径
+            String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
+
+            // 4. 上传原图到对象存储（普通 put），同时在本线程读取图片头部
+            CompletableFuture<Void> putFuture = putOriginalAsync(originalBuffer, uploadPath);
+
+            /* 只读取图片头部获取尺寸、格式和 EXIF 方向，缩略图和压缩图（webp）交由后台任务生成 */
+            PictureProcessResult processResult;
+            try (ImageInputStream originalImage = originalBuffer.openImageInputStream()) {
+                processResult = pictureProcessUtils.readPictureInfo(originalImage);
+            } catch (Exception e) {
+                // 不是合法图片，等上传结束（缓冲区关闭前）后删除已上传的原图
+                discardOriginal(putFuture, uploadPath);
+                throw e;
+            }
+            try {
+                putFuture.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
 
             // 5. 封装返回结果
-            return buildResult(originFilename, originalFile, uploadPath, imageInfo, thumbnailImagePath, previewImagePath);
+            UploadPictureResult uploadPictureResult = buildResult(originFilename, originalBuffer.size(), uploadPath, processResult);
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("图片上传到对象存储失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
-        } finally {
-            // 6. 清理临时文件
-            deleteTempFile(originalFile, thumbnailImage, previewImage);
+        }
+    }
+
+    /**
+     * 上传已在对象存储中的暂存对象
+     * - 流式读取一遍计算内容摘要，命中相同内容的图片时直接复用
+     * - 只按范围读取头部识别格式、尺寸和 EXIF 方向，头部不足以解析时才读取整个对象
+     * - 校验通过后在存储内复制到正式路径，不重新上传
+     *
+     * @param stagedKey          暂存对象键
+     * @param uploadPathNoSuffix 正式路径（不含文件后缀）
+     */
+    private UploadPictureResult uploadStagedPicture(String stagedKey, String originFilename, String uploadPathNoSuffix) {
+        try {
+            MessageDigest messageDigest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+            long picSize;
+            try (InputStream inputStream = objectStorage.getObject(stagedKey);
+                 OutputStream outputStream = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, messageDigest)) {
+                picSize = IoUtil.copy(inputStream, outputStream);
+            }
+            String contentHash = HexUtil.encodeHexStr(messageDigest.digest());
+
+            Picture samePicture = getSameContentPicture(contentHash);
+            if (samePicture != null && protectReuse(samePicture)) {
+                return buildReuseResult(originFilename, contentHash, samePicture);
+            }
+
+            long probeLength = Math.min(picSize, pictureUploadConfig.getChunkProbeSize().toBytes());
+            byte[] probe;
+            try (InputStream inputStream = objectStorage.getObject(stagedKey, 0, probeLength - 1)) {
+                probe = IoUtil.readBytes(inputStream);
+            }
+            String picFormat = PictureFormatUtils.detectFormat(probe, Math.min(probe.length, PictureFormatUtils.HEADER_LENGTH));
+            ThrowUtils.throwIf(picFormat == null, ErrorCode.PARAMS_ERROR, "文件类型错误");
+            PictureProcessResult processResult = readStagedPictureInfo(stagedKey, probe, picSize);
+
+            String uploadPath = uploadPathNoSuffix + "." + picFormat;
+            objectStorage.copyObject(stagedKey, uploadPath);
+
+            UploadPictureResult uploadPictureResult = buildResult(originFilename, picSize, uploadPath, processResult);
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("暂存图片转存失败, key = {}", stagedKey, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+    }
+
+    /**
+     * 从头部数据读取图片信息，EXIF 等元数据过大导致头部不完整时读取整个对象
+     */
+    private PictureProcessResult readStagedPictureInfo(String stagedKey, byte[] probe, long picSize) throws IOException {
+        try (ImageInputStream probeImage = new MemoryCacheImageInputStream(new ByteArrayInputStream(probe))) {
+            return pictureProcessUtils.readPictureInfo(probeImage);
+        } catch (BusinessException e) {
+            if (probe.length >= picSize) {
+                throw e;
+            }
+        }
+        try (InputStream inputStream = objectStorage.getObject(stagedKey);
+             ImageInputStream originalImage = new MemoryCacheImageInputStream(inputStream)) {
+            return pictureProcessUtils.readPictureInfo(originalImage);
+        }
+    }
+
+    /**
+     * 按文件头魔数识别图片格式
+     *
+     * @return jpg / png / webp，无法识别时返回 null
+     */
+    private String detectFormat(PictureUploadBuffer originalBuffer) throws IOException {
+        byte[] header = new byte[PictureFormatUtils.HEADER_LENGTH];
+        int headerLength;
+        try (InputStream inputStream = originalBuffer.openInputStream()) {
+            headerLength = PictureFormatUtils.readHeader(inputStream, header);
+        }
+        return PictureFormatUtils.detectFormat(header, headerLength);
+    }
+
+    /**
+     * 异步上传原图，线程池已满时在当前线程上传
+     */
+    private CompletableFuture<Void> putOriginalAsync(PictureUploadBuffer originalBuffer, String uploadPath) {
+        Runnable putOriginal = () -> {
+            try (InputStream originalInput = originalBuffer.openInputStream()) {
+                objectStorage.putObject(uploadPath, originalInput, originalBuffer.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            return CompletableFuture.runAsync(putOriginal, cosUploadExecutor);
+        } catch (RejectedExecutionException e) {
+            putOriginal.run();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 等待原图上传结束后删除（上传失败则无需删除）
+     */
+    private void discardOriginal(CompletableFuture<Void> putFuture, String uploadPath) {
+        try {
+            putFuture.join();
+        } catch (CompletionException e) {
+            return;
+        }
+        try {
+            objectStorage.deleteObject(uploadPath);
+        } catch (Exception e) {
+            log.error("删除无效原图失败, key = {}", uploadPath, e);
         }
     }
 
@@ -121,43 +279,90 @@ public abstract class PictureUploadTemplate {
     protected abstract String getOriginFilename(Object inputSource);
 
     /**
-     * 处理输入源并生成本地临时文件
+     * 处理输入源，将文件内容写入输出流（缓冲区）
      */
-    protected abstract void processFile(Object inputSource, File file) throws Exception;
+    protected abstract void processFile(Object inputSource, OutputStream outputStream) throws Exception;
+
+    /**
+     * 输入源已完整保存在对象存储中时，返回其对象键（如分块上传合并后的暂存对象）
+     * 返回非空时不再调用 {@link #processFile}，而是在存储内复制到正式路径
+     *
+     * @return 默认返回 null，按普通输入源处理
+     */
+    protected String getStagedKey(Object inputSource) {
+        return null;
+    }
+
+    /**
+     * 查询内容相同的图片，优先返回衍生图已生成完成的
+     *
+     * @param contentHash 图片内容摘要
+     * @return 不存在时返回 null
+     */
+    private Picture getSameContentPicture(String contentHash) {
+        return pictureMapper.selectOne(new LambdaQueryWrapper<Picture>()
+                .eq(Picture::getContentHash, contentHash)
+                .last("ORDER BY derivativeStatus = " + PictureDerivativeStatusEnum.DONE.getValue() + " DESC LIMIT 1"));
+    }
+
+    /**
+     * 复用前保护已有图片的文件，避免最后一条引用它的图片被并发删除后文件被回收
+     * 先设置保护标记，再确认仍有未删除的图片引用该文件：回收任务先检查引用再检查标记，
+     * 因此要么回收任务看到标记而推迟，要么这里发现引用已不存在而放弃复用、按新图片上传
+     *
+     * @return 是否可以复用
+     */
+    private boolean protectReuse(Picture samePicture) {
+        storageReclaimManager.protect(Arrays.asList(samePicture.getUrl(),
+                samePicture.getThumbnailUrl(), samePicture.getPreviewUrl()));
+        return pictureMapper.exists(new LambdaQueryWrapper<Picture>()
+                .eq(Picture::getUrl, samePicture.getUrl()));
+    }
+
+    /**
+     * 封装复用已有图片时的返回结果
+     * 每条图片记录仍按自身的 picSize 计入所在空间的额度
+     */
+    private UploadPictureResult buildReuseResult(String originFilename, String contentHash, Picture samePicture) {
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setPicName(FileUtil.mainName(originFilename));
+        uploadPictureResult.setPicWidth(samePicture.getPicWidth());
+        uploadPictureResult.setPicHeight(samePicture.getPicHeight());
+        uploadPictureResult.setPicScale(samePicture.getPicScale());
+        uploadPictureResult.setPicFormat(samePicture.getPicFormat());
+        uploadPictureResult.setPicSize(samePicture.getPicSize());
+        uploadPictureResult.setUrl(samePicture.getUrl());
+        uploadPictureResult.setContentHash(contentHash);
+        uploadPictureResult.setPerceptualHash(samePicture.getPerceptualHash());
+        uploadPictureResult.setPicColor(samePicture.getPicColor());
+        // 衍生图已生成则直接沿用，否则由后台任务统一回写所有相同 url 的图片
+        if (Integer.valueOf(PictureDerivativeStatusEnum.DONE.getValue()).equals(samePicture.getDerivativeStatus())) {
+            uploadPictureResult.setThumbnailUrl(samePicture.getThumbnailUrl());
+            uploadPictureResult.setPreviewUrl(samePicture.getPreviewUrl());
+            uploadPictureResult.setDerivativeStatus(PictureDerivativeStatusEnum.DONE.getValue());
+        } else {
+            uploadPictureResult.setDerivativeStatus(PictureDerivativeStatusEnum.PENDING.getValue());
+        }
+        return uploadPictureResult;
+    }
 
     /**
      * 封装返回结果
      */
-    private UploadPictureResult buildResult(String originFilename, File file, String uploadPath,
-                                            ImageInfo imageInfo, String thumbnailImagePath, String previewImagePath) {
+    private UploadPictureResult buildResult(String originFilename, long picSize, String uploadPath,
+                                            PictureProcessResult processResult) {
         UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        int picWidth = imageInfo.getWidth();
-        int picHeight = imageInfo.getHeight();
+        int picWidth = processResult.getPicWidth();
+        int picHeight = processResult.getPicHeight();
         double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
         uploadPictureResult.setPicName(FileUtil.mainName(originFilename));
         uploadPictureResult.setPicWidth(picWidth);
         uploadPictureResult.setPicHeight(picHeight);
         uploadPictureResult.setPicScale(picScale);
-        uploadPictureResult.setPicFormat(imageInfo.getFormat());
-        uploadPictureResult.setPicSize(FileUtil.size(file));
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + uploadPath);
-        uploadPictureResult.setThumbnailUrl(cosClientConfig.getHost() + "/" + thumbnailImagePath);
-        uploadPictureResult.setPreviewUrl(cosClientConfig.getHost() + "/" + previewImagePath);
+        uploadPictureResult.setPicFormat(processResult.getPicFormat());
+        uploadPictureResult.setPicSize(picSize);
+        uploadPictureResult.setUrl(objectStorage.getHost() + "/" + uploadPath);
+        uploadPictureResult.setDerivativeStatus(PictureDerivativeStatusEnum.PENDING.getValue());
         return uploadPictureResult;
     }
-
-    /**
-     * 删除临时文件
-     */
-    public void deleteTempFile(File originalFile, File thumbnailImage, File previewImage) {
-        if (originalFile == null && thumbnailImage == null && previewImage == null) {
-            return;
-        }
-        boolean originalFileDelete = originalFile.delete();
-        boolean thumbnailImageDelete = thumbnailImage.delete();
-        boolean previewImageDelete = previewImage.delete();
-        if (!originalFileDelete || !thumbnailImageDelete || !previewImageDelete) {
-            log.error("file delete error, originalFilePath = {}", originalFile.getAbsolutePath());
-        }
-    }
-}
\ No newline at end of file
+}
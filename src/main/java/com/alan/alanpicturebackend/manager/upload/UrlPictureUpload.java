@@ -1,21 +1,22 @@
 package com.alan.alanpicturebackend.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.http.Header;
 import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpStatus;
 import cn.hutool.http.HttpUtil;
-import cn.hutool.http.Method;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
 import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.utils.PictureFormatUtils;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * @author alan
@@ -24,6 +25,9 @@ import java.util.List;
  */
 @Service
 public class UrlPictureUpload extends PictureUploadTemplate {
+
+    private static final int BUFFER_SIZE = 8192;
+
     @Override
     protected void validPicture(Object inputSource) {
         String fileUrl = (String) inputSource;
@@ -39,38 +43,7 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         ThrowUtils.throwIf(!(fileUrl.startsWith("http://") || fileUrl.startsWith("https://")),
                 ErrorCode.PARAMS_ERROR, "仅支持 HTTP 或 HTTPS 协议的文件地址");
 
-        // 发送 HEAD 请求验证文件是否存在
-        HttpResponse response = null;
-        try {
-            response = HttpUtil.createRequest(Method.HEAD, fileUrl).execute();
-            // 未正常返回，无需执行其他判断
-            if (response.getStatus() != HttpStatus.HTTP_OK) {
-                return;
-            }
-            // 4. 校验文件类型
-            String contentType = response.header("Content-Type");
-            if (StrUtil.isNotBlank(contentType)) {
-                // 允许的图片类型
-                final List<String> ALLOW_CONTENT_TYPES = Arrays.asList("image/jpeg", "image/jpg", "image/png", "image/webp");
-                ThrowUtils.throwIf(!ALLOW_CONTENT_TYPES.contains(contentType.toLowerCase()),
-                        ErrorCode.PARAMS_ERROR, "文件类型错误");
-            }
-            // 5. 校验文件大小
-            String contentLengthStr = response.header("Content-Length");
-            if (StrUtil.isNotBlank(contentLengthStr)) {
-                try {
-                    long contentLength = Long.parseLong(contentLengthStr);
-                    final long TWO_MB = 2 * 1024 * 1024L; // 限制文件大小为 2MB
-                    ThrowUtils.throwIf(contentLength > TWO_MB, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2M");
-                } catch (NumberFormatException e) {
-                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小格式错误");
-                }
-            }
-        } finally {
-            if (response != null) {
-                response.close();
-            }
-        }
+        // 文件类型和大小在下载时按实际内容校验（见 processFile），不再单独发送 HEAD 请求
     }
 
     @Override
@@ -80,10 +53,49 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         return FileUtil.getName(fileUrl);
     }
 
+    /**
+     * 只发送一次 GET 请求，边下载边校验
+     * - 按文件头魔数校验类型，不信任 Content-Type
+     * - 按实际读取的字节数校验大小，不信任（或缺失的）Content-Length
+     * - 校验不通过时立即关闭连接，不再继续下载
+     */
     @Override
-    protected void processFile(Object inputSource, File file) throws Exception {
+    protected void processFile(Object inputSource, OutputStream outputStream) throws Exception {
         String fileUrl = (String) inputSource;
-        // 下载文件到临时目录
-        HttpUtil.downloadFile(fileUrl, file);
+        long maxFileSize = pictureUploadConfig.getUrlMaxFileSize().toBytes();
+        String sizeMessage = String.format("文件大小不能超过 %sM", pictureUploadConfig.getUrlMaxFileSize().toMegabytes());
+        // 跟随重定向（http -> https、CDN 跳转等），限制最大次数
+        try (HttpResponse response = HttpUtil.createGet(fileUrl, true)
+                .setMaxRedirectCount(pictureUploadConfig.getUrlMaxRedirects())
+                .setConnectionTimeout((int) pictureUploadConfig.getUrlConnectTimeout().toMillis())
+                .setReadTimeout((int) pictureUploadConfig.getUrlReadTimeout().toMillis())
+                .executeAsync()) {
+            ThrowUtils.throwIf(!response.isOk(), ErrorCode.OPERATION_ERROR, "下载文件失败");
+            // 声明的长度已经超限，不读取响应体
+            String contentLength = response.header(Header.CONTENT_LENGTH);
+            if (NumberUtil.isLong(contentLength)) {
+                ThrowUtils.throwIf(Long.parseLong(contentLength) > maxFileSize, ErrorCode.PARAMS_ERROR, sizeMessage);
+            }
+            InputStream bodyStream = response.bodyStream();
+            // 1. 校验文件头
+            byte[] header = new byte[PictureFormatUtils.HEADER_LENGTH];
+            int headerLength = PictureFormatUtils.readHeader(bodyStream, header);
+            ThrowUtils.throwIf(PictureFormatUtils.detectFormat(header, headerLength) == null,
+                    ErrorCode.PARAMS_ERROR, "文件类型错误");
+            outputStream.write(header, 0, headerLength);
+            // 2. 边读边校验大小
+            long totalSize = headerLength;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = bodyStream.read(buffer)) != -1) {
+                totalSize += length;
+                ThrowUtils.throwIf(totalSize > maxFileSize, ErrorCode.PARAMS_ERROR, sizeMessage);
+                outputStream.write(buffer, 0, length);
+            }
+        } catch (SocketTimeoutException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "下载文件超时");
+        } catch (IORuntimeException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "下载文件失败");
+        }
     }
 }
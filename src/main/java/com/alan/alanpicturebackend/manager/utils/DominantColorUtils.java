@@ -0,0 +1,223 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 图片主色调提取
+ * - 在图片上均匀采样（与原图尺寸无关），每个通道量化为 8 级，统计 512 个色块的像素数和平均颜色
+ * - 按像素数从多到少选取色块，与已选颜色过于接近的并入已选颜色，最多保留 3 个主色
+ * - 签名格式：rrggbb:占比,rrggbb:占比（占比为 0 ~ 100 的整数），按占比从高到低排列，不超过 32 个字符
+ * - 颜色距离使用 redmean 近似（比 RGB 欧氏距离更接近人眼感知，计算量相同）
+ * @Date: 2025/10/22 10:00
+ */
+public final class DominantColorUtils {
+
+    /**
+     * 每个通道量化的位数（8 级）
+     */
+    public static final int QUANTIZE_BITS = 3;
+
+    public static final int MAX_COLOR_COUNT = 3;
+
+    /**
+     * 每个方向最多采样的点数
+     */
+    private static final int MAX_SAMPLES = 128;
+
+    /**
+     * 距离小于该值的颜色合并为同一个主色
+     */
+    private static final double MERGE_DISTANCE = 60;
+
+    /**
+     * 占比低于该值的颜色不作为主色
+     */
+    private static final int MIN_PERCENT = 5;
+
+    private DominantColorUtils() {
+    }
+
+    /**
+     * 提取主色调
+     *
+     * @param image 已解码的图片
+     * @return 主色列表，按占比从高到低排列
+     */
+    public static List<DominantColor> extract(BufferedImage image) {
+        int binCount = 1 << (QUANTIZE_BITS * 3);
+        long[] count = new long[binCount];
+        long[] redSum = new long[binCount];
+        long[] greenSum = new long[binCount];
+        long[] blueSum = new long[binCount];
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stepX = Math.max(1, width / MAX_SAMPLES);
+        int stepY = Math.max(1, height / MAX_SAMPLES);
+        long total = 0;
+        for (int y = stepY / 2; y < height; y += stepY) {
+            for (int x = stepX / 2; x < width; x += stepX) {
+                int argb = image.getRGB(x, y);
+                // 忽略（接近）透明的像素
+                if ((argb >>> 24) < 128) {
+                    continue;
+                }
+                int red = (argb >> 16) & 0xFF;
+                int green = (argb >> 8) & 0xFF;
+                int blue = argb & 0xFF;
+                int bin = quantize(red, green, blue);
+                count[bin]++;
+                redSum[bin] += red;
+                greenSum[bin] += green;
+                blueSum[bin] += blue;
+                total++;
+            }
+        }
+        List<DominantColor> colorList = new ArrayList<>(MAX_COLOR_COUNT);
+        if (total == 0) {
+            return colorList;
+        }
+        List<long[]> selectedList = new ArrayList<>();
+        boolean[] used = new boolean[binCount];
+        while (true) {
+            int maxBin = -1;
+            for (int bin = 0; bin < binCount; bin++) {
+                if (!used[bin] && count[bin] > 0 && (maxBin < 0 || count[bin] > count[maxBin])) {
+                    maxBin = bin;
+                }
+            }
+            if (maxBin < 0) {
+                break;
+            }
+            used[maxBin] = true;
+            int rgb = rgb(redSum[maxBin] / count[maxBin], greenSum[maxBin] / count[maxBin], blueSum[maxBin] / count[maxBin]);
+            // selected: [rgb, count]
+            long[] nearest = null;
+            for (long[] selected : selectedList) {
+                if (distance((int) selected[0], rgb) < MERGE_DISTANCE) {
+                    nearest = selected;
+                    break;
+                }
+            }
+            if (nearest != null) {
+                nearest[1] += count[maxBin];
+            } else if (selectedList.size() < MAX_COLOR_COUNT) {
+                selectedList.add(new long[]{rgb, count[maxBin]});
+            }
+        }
+        selectedList.sort((a, b) -> Long.compare(b[1], a[1]));
+        for (long[] selected : selectedList) {
+            int percent = (int) (selected[1] * 100 / total);
+            if (percent >= MIN_PERCENT) {
+                colorList.add(new DominantColor((int) selected[0], percent));
+            }
+        }
+        return colorList;
+    }
+
+    /**
+     * 主色列表 => 签名
+     */
+    public static String toSignature(List<DominantColor> colorList) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (DominantColor dominantColor : colorList) {
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(',');
+            }
+            stringBuilder.append(String.format("%06x:%d", dominantColor.getRgb(), dominantColor.getPercent()));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * 签名 => 主色列表（格式错误的部分忽略）
+     */
+    public static List<DominantColor> parseSignature(String signature) {
+        List<DominantColor> colorList = new ArrayList<>(MAX_COLOR_COUNT);
+        if (StrUtil.isBlank(signature)) {
+            return colorList;
+        }
+        for (String part : signature.split(",")) {
+            String[] fields = part.split(":");
+            if (fields.length != 2) {
+                continue;
+            }
+            try {
+                colorList.add(new DominantColor(Integer.parseInt(fields[0], 16), Integer.parseInt(fields[1])));
+            } catch (NumberFormatException ignored) {
+                // 跳过格式错误的部分
+            }
+        }
+        return colorList;
+    }
+
+    /**
+     * 解析用户输入的颜色（#rrggbb、rrggbb、0xrrggbb）
+     *
+     * @return 格式错误时返回 null
+     */
+    public static Integer parseColor(String color) {
+        if (StrUtil.isBlank(color)) {
+            return null;
+        }
+        String hex = StrUtil.removePrefixIgnoreCase(StrUtil.removePrefix(color.trim(), "#"), "0x");
+        if (hex.length() != 6) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(hex, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 颜色距离（redmean 近似，0 ~ 约 765）
+     */
+    public static double distance(int rgb1, int rgb2) {
+        int red1 = (rgb1 >> 16) & 0xFF;
+        int red2 = (rgb2 >> 16) & 0xFF;
+        int redMean = (red1 + red2) >> 1;
+        int deltaRed = red1 - red2;
+        int deltaGreen = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int deltaBlue = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+        return Math.sqrt((((512 + redMean) * deltaRed * deltaRed) >> 8) + 4 * deltaGreen * deltaGreen
+                + (((767 - redMean) * deltaBlue * deltaBlue) >> 8));
+    }
+
+    /**
+     * 量化后的色块编号
+     */
+    public static int quantize(int red, int green, int blue) {
+        int shift = 8 - QUANTIZE_BITS;
+        return ((red >> shift) << (QUANTIZE_BITS * 2)) | ((green >> shift) << QUANTIZE_BITS) | (blue >> shift);
+    }
+
+    private static int rgb(long red, long green, long blue) {
+        return (int) ((red << 16) | (green << 8) | blue);
+    }
+
+    /**
+     * 主色
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DominantColor {
+
+        /**
+         * 颜色（0xRRGGBB）
+         */
+        private final int rgb;
+
+        /**
+         * 占比（0 ~ 100）
+         */
+        private final int percent;
+    }
+}
@@ -0,0 +1,181 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author alan
+ * @Description: EXIF 方向工具类
+ * - 从 JPEG 头部的 APP1（Exif）段读取方向标记，只解析元数据，不解码像素
+ * - 方向取值 1 ~ 8，含义与 EXIF 规范一致，5 ~ 8 表示宽高需要互换
+ * @Date: 2025/10/20 10:20
+ */
+@Slf4j
+public final class ExifOrientationUtils {
+
+    /**
+     * 默认方向（无需旋转）
+     */
+    public static final int NORMAL = 1;
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private static final int APP1_MARKER = 0xE1;
+
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientationUtils() {
+    }
+
+    /**
+     * 读取 EXIF 方向
+     *
+     * @param reader 已设置输入的图片读取器
+     * @return 方向，非 JPEG 或没有方向信息时返回 {@link #NORMAL}
+     */
+    public static int readOrientation(ImageReader reader) {
+        try {
+            IIOMetadata metadata = reader.getImageMetadata(0);
+            if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+                return NORMAL;
+            }
+            Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+            for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (!"markerSequence".equals(child.getNodeName())) {
+                    continue;
+                }
+                for (Node marker = child.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+                    if (!"unknown".equals(marker.getNodeName())) {
+                        continue;
+                    }
+                    Node markerTag = marker.getAttributes().getNamedItem("MarkerTag");
+                    if (markerTag == null || Integer.parseInt(markerTag.getNodeValue()) != APP1_MARKER) {
+                        continue;
+                    }
+                    Object userObject = ((IIOMetadataNode) marker).getUserObject();
+                    if (userObject instanceof byte[]) {
+                        int orientation = parseOrientation((byte[]) userObject);
+                        if (orientation != NORMAL) {
+                            return orientation;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 元数据损坏不影响图片本身，按默认方向处理
+            log.warn("读取 EXIF 方向失败", e);
+        }
+        return NORMAL;
+    }
+
+    /**
+     * 解析 APP1 段中的方向标记（只查找 IFD0）
+     *
+     * @param app1 APP1 段内容（不含标记和长度）
+     */
+    static int parseOrientation(byte[] app1) {
+        if (app1.length < EXIF_HEADER.length + 8) {
+            return NORMAL;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (app1[i] != EXIF_HEADER[i]) {
+                return NORMAL;
+            }
+        }
+        // TIFF 头：字节序（II / MM）、0x002A、IFD0 偏移，偏移均相对 TIFF 头起始位置
+        ByteBuffer tiff = ByteBuffer.wrap(app1, EXIF_HEADER.length, app1.length - EXIF_HEADER.length).slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        long ifdOffset = tiff.getInt(4) & 0xFFFFFFFFL;
+        if (ifdOffset + 2 > tiff.limit()) {
+            return NORMAL;
+        }
+        int entryCount = tiff.getShort((int) ifdOffset) & 0xFFFF;
+        for (int i = 0; i < entryCount; i++) {
+            int entryOffset = (int) ifdOffset + 2 + i * 12;
+            if (entryOffset + 12 > tiff.limit()) {
+                break;
+            }
+            if ((tiff.getShort(entryOffset) & 0xFFFF) == ORIENTATION_TAG) {
+                int orientation = tiff.getShort(entryOffset + 8) & 0xFFFF;
+                return orientation >= 1 && orientation <= 8 ? orientation : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * 方向是否需要互换宽高（旋转 90 度或 270 度）
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * 按 EXIF 方向把解码后的图片转正
+     *
+     * @param image       解码后的图片
+     * @param orientation EXIF 方向
+     * @return 转正后的图片，无需转换时返回原对象
+     */
+    public static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= NORMAL || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // x' = m00 * x + m01 * y + m02，y' = m10 * x + m11 * y + m12
+        AffineTransform transform;
+        switch (orientation) {
+            case 2:
+                // 水平翻转
+                transform = new AffineTransform(-1, 0, 0, 1, width, 0);
+                break;
+            case 3:
+                // 旋转 180 度
+                transform = new AffineTransform(-1, 0, 0, -1, width, height);
+                break;
+            case 4:
+                // 垂直翻转
+                transform = new AffineTransform(1, 0, 0, -1, 0, height);
+                break;
+            case 5:
+                // 沿主对角线翻转
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6:
+                // 顺时针旋转 90 度
+                transform = new AffineTransform(0, 1, -1, 0, height, 0);
+                break;
+            case 7:
+                // 沿副对角线翻转
+                transform = new AffineTransform(0, -1, -1, 0, height, width);
+                break;
+            default:
+                // 逆时针旋转 90 度
+                transform = new AffineTransform(0, -1, 1, 0, 0, width);
+                break;
+        }
+        boolean transposed = isTransposed(orientation);
+        int imageType = image.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_ARGB : image.getType();
+        BufferedImage oriented = new BufferedImage(transposed ? height : width, transposed ? width : height, imageType);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+}
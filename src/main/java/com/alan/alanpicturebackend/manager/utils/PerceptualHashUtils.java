@@ -0,0 +1,79 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * @author alan
+ * @Description: 图片感知哈希（dHash）
+ * - 把图片按 9 * 8 的网格求每格的平均亮度，比较每行相邻两格的明暗，得到 64 位哈希
+ * - 缩放、重新压缩、轻微调色后哈希基本不变，两张图片哈希的汉明距离越小越相似
+ * - 每格只均匀采样有限个点，计算量与原图尺寸无关
+ * @Date: 2025/10/21 14:00
+ */
+public final class PerceptualHashUtils {
+
+    private static final int GRID_WIDTH = 9;
+
+    private static final int GRID_HEIGHT = 8;
+
+    /**
+     * 每格每个方向最多采样的点数
+     */
+    private static final int MAX_SAMPLES = 16;
+
+    private PerceptualHashUtils() {
+    }
+
+    /**
+     * 计算图片的 dHash
+     *
+     * @param image 已解码的图片
+     * @return 64 位哈希
+     */
+    public static long dHash(BufferedImage image) {
+        double[][] luminance = new double[GRID_HEIGHT][GRID_WIDTH];
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int row = 0; row < GRID_HEIGHT; row++) {
+            int top = row * height / GRID_HEIGHT;
+            int bottom = Math.max(top + 1, (row + 1) * height / GRID_HEIGHT);
+            for (int column = 0; column < GRID_WIDTH; column++) {
+                int left = column * width / GRID_WIDTH;
+                int right = Math.max(left + 1, (column + 1) * width / GRID_WIDTH);
+                luminance[row][column] = averageLuminance(image, left, Math.min(right, width), top, Math.min(bottom, height));
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < GRID_HEIGHT; row++) {
+            for (int column = 0; column < GRID_WIDTH - 1; column++) {
+                hash <<= 1;
+                if (luminance[row][column] > luminance[row][column + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 两个哈希的汉明距离（0 ~ 64）
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    private static double averageLuminance(BufferedImage image, int left, int right, int top, int bottom) {
+        int stepX = Math.max(1, (right - left) / MAX_SAMPLES);
+        int stepY = Math.max(1, (bottom - top) / MAX_SAMPLES);
+        double sum = 0;
+        int count = 0;
+        for (int y = top + stepY / 2; y < bottom; y += stepY) {
+            for (int x = left + stepX / 2; x < right; x += stepX) {
+                int rgb = image.getRGB(x, y);
+                sum += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                count++;
+            }
+        }
+        return sum / count;
+    }
+}
@@ -0,0 +1,89 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 图片解码像素预算
+ * - 所有解码共享一个全局预算，解码前按解码后的像素数申请，处理完成后归还
+ * - 预算不足时等待，超时拒绝，避免并发解码大图耗尽堆内存
+ * - 以 1024 像素为一个许可，保证许可数不超过 int 范围
+ * @Date: 2025/10/19 15:30
+ */
+@Component
+public class PictureDecodeBudget {
+
+    /**
+     * 每个许可对应的像素数
+     */
+    private static final int PIXELS_PER_PERMIT = 1024;
+
+    private final Semaphore semaphore;
+
+    private final int totalPermits;
+
+    private final long waitMillis;
+
+    @Autowired
+    public PictureDecodeBudget(PictureProcessConfig pictureProcessConfig, MeterRegistry meterRegistry) {
+        this(pictureProcessConfig.getDecodePixelBudget(), pictureProcessConfig.getDecodeWaitMillis());
+        Gauge.builder("picture.decode.budget.available", semaphore, Semaphore::availablePermits)
+                .description("剩余可用的解码像素预算（单位：1024 像素）")
+                .register(meterRegistry);
+    }
+
+    public PictureDecodeBudget(long pixelBudget, long waitMillis) {
+        this.totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, pixelBudget / PIXELS_PER_PERMIT));
+        this.semaphore = new Semaphore(totalPermits, true);
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * 申请解码像素预算
+     *
+     * @param pixels 解码后的像素数
+     * @return 占用的许可数，释放时传回 {@link #release}
+     */
+    public int acquire(long pixels) {
+        long permits = (pixels + PIXELS_PER_PERMIT - 1) / PIXELS_PER_PERMIT;
+        // 单张图片超过全部预算，永远无法获得许可
+        ThrowUtils.throwIf(permits > totalPermits, ErrorCode.PARAMS_ERROR, "图片分辨率过大");
+        try {
+            if (!semaphore.tryAcquire((int) permits, waitMillis, TimeUnit.MILLISECONDS)) {
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "图片处理繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理被中断");
+        }
+        return (int) permits;
+    }
+
+    /**
+     * 归还解码像素预算
+     */
+    public void release(int permits) {
+        semaphore.release(permits);
+    }
+
+    /**
+     * 当前可用的许可数
+     */
+    public int availablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    public int getTotalPermits() {
+        return totalPermits;
+    }
+}
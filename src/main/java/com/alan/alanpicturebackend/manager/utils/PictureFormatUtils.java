@@ -0,0 +1,97 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author alan
+ * @Description: 图片格式识别工具类
+ * - 按文件头魔数识别格式，不依赖文件后缀或 Content-Type
+ * - 只识别允许上传的格式：jpg、png、webp
+ * @Date: 2025/10/21 10:15
+ */
+public final class PictureFormatUtils {
+
+    /**
+     * 识别格式需要的文件头长度
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private PictureFormatUtils() {
+    }
+
+    /**
+     * 识别图片格式
+     *
+     * @param header 文件头
+     * @param length 文件头有效长度
+     * @return jpg / png / webp，无法识别时返回 null
+     */
+    public static String detectFormat(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (length >= PNG_MAGIC.length && startsWith(header, 0, PNG_MAGIC)) {
+            return "png";
+        }
+        // RIFF????WEBP
+        if (length >= HEADER_LENGTH && startsWith(header, 0, new byte[]{'R', 'I', 'F', 'F'})
+                && startsWith(header, 8, new byte[]{'W', 'E', 'B', 'P'})) {
+            return "webp";
+        }
+        return null;
+    }
+
+    /**
+     * 格式对应的 Content-Type
+     *
+     * @param format jpg / png / webp
+     * @return 无法识别时返回 application/octet-stream
+     */
+    public static String getContentType(String format) {
+        if (format == null) {
+            return "application/octet-stream";
+        }
+        switch (format.toLowerCase()) {
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "png":
+                return "image/png";
+            case "webp":
+                return "image/webp";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    /**
+     * 读取文件头（数据不足时读到末尾为止）
+     *
+     * @param inputStream 数据流
+     * @param header      文件头缓冲区
+     * @return 实际读取的字节数
+     */
+    public static int readHeader(InputStream inputStream, byte[] header) throws IOException {
+        int headerLength = 0;
+        while (headerLength < header.length) {
+            int length = inputStream.read(header, headerLength, header.length - headerLength);
+            if (length == -1) {
+                break;
+            }
+            headerLength += length;
+        }
+        return headerLength;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
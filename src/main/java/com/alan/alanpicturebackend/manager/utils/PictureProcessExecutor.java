@@ -0,0 +1,94 @@
+package com.alan.alanpicturebackend.manager.utils;
+
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.*;
+
+/**
+ * @author alan
+ * @Description: 图片处理执行器
+ * - 解码、缩放、webp 编码等 CPU 密集型任务统一提交到固定大小的线程池，不占用请求线程和其他业务线程
+ * - 队列满时立即拒绝（错误码 TOO_MANY_REQUEST），调用方稍后重试，避免突发的大图处理拖垮整个服务
+ * - 指标：picture.process.queue.size（队列深度）、picture.process.active（执行中）、
+ * picture.process.wait（排队耗时）、picture.process.execution（执行耗时）、picture.process.rejected（拒绝次数）
+ * @Date: 2025/10/19 10:20
+ */
+@Slf4j
+@Component
+public class PictureProcessExecutor {
+
+    @Resource
+    private ThreadPoolExecutor pictureProcessThreadPool;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Timer waitTimer;
+
+    private Timer executionTimer;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("picture.process.queue.size", pictureProcessThreadPool, executor -> executor.getQueue().size())
+                .description("图片处理排队中的任务数")
+                .register(meterRegistry);
+        Gauge.builder("picture.process.active", pictureProcessThreadPool, ThreadPoolExecutor::getActiveCount)
+                .description("图片处理执行中的任务数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("picture.process.wait")
+                .description("图片处理任务排队耗时")
+                .register(meterRegistry);
+        executionTimer = Timer.builder("picture.process.execution")
+                .description("图片处理任务执行耗时")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("picture.process.rejected")
+                .description("队列已满被拒绝的图片处理任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在图片处理线程池中执行任务，并等待结果
+     *
+     * @param task 处理任务
+     * @return 任务结果
+     */
+    public <T> T execute(Callable<T> task) {
+        long submitTime = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pictureProcessThreadPool.submit(() -> {
+                waitTimer.record(System.nanoTime() - submitTime, TimeUnit.NANOSECONDS);
+                return executionTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("图片处理队列已满，拒绝任务，排队数 = {}", pictureProcessThreadPool.getQueue().size());
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "图片处理繁忙，请稍后重试");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            log.error("图片处理失败", cause);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理失败");
+        }
+    }
+}
@@ -1,19 +1,23 @@
 package com.alan.alanpicturebackend.manager.utils;
 
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
-import com.luciad.imageio.webp.WebPWriteParam;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.IIOImage;
+import javax.annotation.Resource;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
 
 /**
  * @author alan
@@ -25,79 +29,255 @@ import java.io.IOException;
 public class PictureProcessUtils {
 
     /**
-     * 转换缩略图
-     * - 格式：256 * 256
-     * - 如果原图宽高小于设定值，不修改
-     * - （Thumbnails的缩略好像默认是不会修改的，为了清晰一点，自己又添加一个判断逻辑）
+     * 缩略图目标尺寸
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+
+    @Resource
+    private PictureProcessConfig pictureProcessConfig;
+
+    @Resource
+    private PictureDecodeBudget pictureDecodeBudget;
+
+    @Resource
+    private WebPEncoderPool webPEncoderPool;
+
+    static {
+        // ImageIO 读写流默认使用磁盘缓存（会在临时目录创建文件），改为内存缓存
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * 图片处理流水线
+     * - 原图只解码一次，复用同一份 BufferedImage 生成缩略图、压缩图（webp）以及尺寸信息
+     * - 输入输出均为流，不依赖本地临时文件
+     * - 先读取图片头部的宽高，按压缩图所需尺寸降采样解码，解码前申请全局像素预算
      *
-     * @param originalImage 原图
+     * @param originalImage   原图读取流（调用方负责关闭）
+     * @param thumbnailOutput 缩略图输出流（调用方负责关闭）
+     * @param thumbnailFormat 缩略图格式（与原图后缀一致）
+     * @param previewOutput   预览图输出流（调用方负责关闭）
+     * @return 原图尺寸信息（按 EXIF 方向转正后）
      */
-    public void toThumbnailImage(File originalImage, File thumbnailFile) {
+    public PictureProcessResult processPicture(ImageInputStream originalImage, OutputStream thumbnailOutput,
+                                               String thumbnailFormat, OutputStream previewOutput) {
+        ImageReader reader = getImageReader(originalImage);
+        try {
+            // 需要读取 EXIF 方向，不能忽略元数据
+            reader.setInput(originalImage, true, false);
+            int originalWidth = reader.getWidth(0);
+            int originalHeight = reader.getHeight(0);
+            checkPixels(originalWidth, originalHeight);
+            int previewMaxSize = pictureProcessConfig.getPreviewMaxSize();
+            int subsampling = computeSubsampling(originalWidth, originalHeight, previewMaxSize);
+            int orientation = ExifOrientationUtils.readOrientation(reader);
+            long decodedPixels = (long) ceilDiv(originalWidth, subsampling) * ceilDiv(originalHeight, subsampling);
+            // 需要转正时会再复制一份图片
+            if (orientation != ExifOrientationUtils.NORMAL) {
+                decodedPixels *= 2;
+            }
+            // 解码后的图片以及衍生图在写出前都占用堆内存，整个处理过程持有预算
+            int permits = pictureDecodeBudget.acquire(decodedPixels);
+            try {
+                // 按 EXIF 方向转正，保证衍生图与浏览器中看到的原图方向一致
+                BufferedImage image = ExifOrientationUtils.applyOrientation(decode(reader, subsampling), orientation);
+                boolean transposed = ExifOrientationUtils.isTransposed(orientation);
+                PictureProcessResult result = new PictureProcessResult();
+                result.setPicWidth(transposed ? originalHeight : originalWidth);
+                result.setPicHeight(transposed ? originalWidth : originalHeight);
+                result.setPicFormat(normalizeFormat(reader.getFormatName()));
+                result.setOrientation(orientation);
+                result.setPerceptualHash(PerceptualHashUtils.dHash(image));
+                result.setPicColor(DominantColorUtils.toSignature(DominantColorUtils.extract(image)));
+                // 1). 生成缩略图
+                writeThumbnail(image, thumbnailOutput, thumbnailFormat);
+                // 2). 生成压缩图（webp）
+                writePreview(limitSize(image, previewMaxSize), previewOutput);
+                return result;
+            } finally {
+                pictureDecodeBudget.release(permits);
+            }
+        } catch (IOException e) {
+            log.error("图片解码失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片解码失败");
+        } finally {
+            reader.dispose();
+        }
+    }
 
+    /**
+     * 生成指定宽度、格式的图片（按需生成的多尺寸图片）
+     * - 按目标宽度降采样解码，按 EXIF 方向转正后等比缩放，不放大
+     * - jpg 不支持透明通道，转为 RGB 输出
+     *
+     * @param sourceImage 源图片读取流（调用方负责关闭）
+     * @param width       目标宽度（转正后的宽度）
+     * @param format      输出格式：webp、jpg、png
+     * @param output      输出流（调用方负责关闭）
+     */
+    public void writeVariant(ImageInputStream sourceImage, int width, String format, OutputStream output) {
+        ImageReader reader = getImageReader(sourceImage);
         try {
-            // 获取原图的宽高
-            BufferedImage image = ImageIO.read(originalImage);
-            int originalWidth = image.getWidth();
-            int originalHeight = image.getHeight();
-
-            // 设置目标尺寸
-            int targetWidth = 256;
-            int targetHeight = 256;
-
-            // 如果目标尺寸大于原图的尺寸，不进行缩放
-            if (targetWidth > originalWidth || targetHeight > originalHeight) {
-                targetWidth = originalWidth;
-                targetHeight = originalHeight;
+            reader.setInput(sourceImage, true, false);
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            checkPixels(sourceWidth, sourceHeight);
+            int orientation = ExifOrientationUtils.readOrientation(reader);
+            int displayWidth = ExifOrientationUtils.isTransposed(orientation) ? sourceHeight : sourceWidth;
+            int targetWidth = Math.min(width, displayWidth);
+            int subsampling = Math.max(1, displayWidth / targetWidth);
+            long decodedPixels = (long) ceilDiv(sourceWidth, subsampling) * ceilDiv(sourceHeight, subsampling);
+            if (orientation != ExifOrientationUtils.NORMAL) {
+                decodedPixels *= 2;
             }
-            // 生成缩略图
-            Thumbnails.of(originalImage)
-                    .size(targetWidth, targetHeight)
-                    .toFile(thumbnailFile);
+            int permits = pictureDecodeBudget.acquire(decodedPixels);
+            try {
+                BufferedImage image = ExifOrientationUtils.applyOrientation(decode(reader, subsampling), orientation);
+                Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(image).width(Math.min(targetWidth, image.getWidth()));
+                if ("webp".equals(format)) {
+                    webPEncoderPool.encode(builder.asBufferedImage(), output);
+                    return;
+                }
+                if ("jpg".equals(format)) {
+                    builder.imageType(BufferedImage.TYPE_INT_RGB);
+                }
+                builder.outputFormat(format).toOutputStream(output);
+            } finally {
+                pictureDecodeBudget.release(permits);
+            }
+        } catch (IOException e) {
+            log.error("生成指定尺寸的图片失败，width = {}, format = {}", width, format, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成图片失败");
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 计算降采样步长：解码后的长边不小于目标尺寸
+     *
+     * @param width      原图宽
+     * @param height     原图高
+     * @param targetSize 目标长边尺寸
+     * @return 步长，1 表示不降采样
+     */
+    public static int computeSubsampling(int width, int height, int targetSize) {
+        return Math.max(1, Math.max(width, height) / targetSize);
+    }
+
+    /**
+     * 读取原图尺寸信息
+     * - 只解析图片头部（宽高、格式、EXIF 方向），不解码像素，用于上传请求内快速获取图片信息
+     * - 按 EXIF 方向返回转正后的宽高
+     * - 衍生图（缩略图、压缩图）交由后台任务调用 {@link #processPicture} 生成
+     *
+     * @param originalImage 原图读取流（调用方负责关闭）
+     * @return 原图尺寸信息
+     */
+    public PictureProcessResult readPictureInfo(ImageInputStream originalImage) {
+        ImageReader reader = getImageReader(originalImage);
+        try {
+            // 需要读取 EXIF 方向，不能忽略元数据
+            reader.setInput(originalImage, true, false);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            checkPixels(width, height);
+            int orientation = ExifOrientationUtils.readOrientation(reader);
+            boolean transposed = ExifOrientationUtils.isTransposed(orientation);
+            PictureProcessResult result = new PictureProcessResult();
+            result.setPicWidth(transposed ? height : width);
+            result.setPicHeight(transposed ? width : height);
+            result.setOrientation(orientation);
+            result.setPicFormat(normalizeFormat(reader.getFormatName()));
+            return result;
+        } catch (IOException e) {
+            log.error("读取图片信息失败", e);
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "图片文件已损坏");
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 统一格式名称：小写，jpeg 记为 jpg（与对象存储数据万象返回的格式保持一致）
+     */
+    private String normalizeFormat(String formatName) {
+        String format = formatName.toLowerCase();
+        return "jpeg".equals(format) ? "jpg" : format;
+    }
 
+    /**
+     * 获取图片读取器
+     * - 不使用 ImageIO.read(ImageInputStream)，它会在读取后关闭调用方传入的流
+     */
+    private ImageReader getImageReader(ImageInputStream imageInputStream) {
+        Iterator<ImageReader> readerIterator = ImageIO.getImageReaders(imageInputStream);
+        if (!readerIterator.hasNext()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的图片格式");
+        }
+        return readerIterator.next();
+    }
+
+    /**
+     * 校验像素数，拒绝分辨率过大的图片（体积很小但像素极多的图片解码时会占用大量内存）
+     */
+    private void checkPixels(int width, int height) {
+        ThrowUtils.throwIf((long) width * height > pictureProcessConfig.getMaxPixels(),
+                ErrorCode.PARAMS_ERROR, "图片分辨率过大");
+    }
+
+    /**
+     * 解码图片，按步长隔行隔列读取源像素，只分配降采样后的 BufferedImage
+     */
+    private BufferedImage decode(ImageReader reader, int subsampling) throws IOException {
+        ImageReadParam readParam = reader.getDefaultReadParam();
+        if (subsampling > 1) {
+            readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return reader.read(0, readParam);
+    }
+
+    /**
+     * 限制图片长边不超过指定尺寸
+     */
+    private BufferedImage limitSize(BufferedImage image, int maxSize) throws IOException {
+        if (Math.max(image.getWidth(), image.getHeight()) <= maxSize) {
+            return image;
+        }
+        return Thumbnails.of(image).size(maxSize, maxSize).asBufferedImage();
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * 由已解码的原图生成缩略图
+     */
+    private void writeThumbnail(BufferedImage image, OutputStream thumbnailOutput, String thumbnailFormat) {
+        // 如果目标尺寸大于原图的尺寸，不进行缩放
+        int targetWidth = Math.min(THUMBNAIL_SIZE, image.getWidth());
+        int targetHeight = Math.min(THUMBNAIL_SIZE, image.getHeight());
+        try {
+            Thumbnails.of(image)
+                    .size(targetWidth, targetHeight)
+                    .outputFormat(thumbnailFormat)
+                    .toOutputStream(thumbnailOutput);
         } catch (IOException e) {
             log.error("生成缩略图失败", e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成缩略图是失败");
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成缩略图失败");
         }
     }
 
     /**
-     * 转换为压缩图（预览图）
-     * - webp 格式
-     *
-     * @param originalImage 原图
-     * @param previewImage  生成的预览图
+     * 由已解码的原图生成压缩图（webp），编码器从池中复用
      */
-    public void toPreviewImage(File originalImage, File previewImage) {
-        ImageWriter writer = null;
-        FileImageOutputStream outputStream = null;
+    private void writePreview(BufferedImage image, OutputStream previewOutput) {
         try {
-            // 获取原始文件的编码
-            BufferedImage image = ImageIO.read(originalImage);
-            // 创建WebP ImageWriter实例
-            writer = ImageIO.getImageWritersByMIMEType("image/webp").next();
-            // 配置编码参数
-            WebPWriteParam writeParam = new WebPWriteParam(writer.getLocale());
-            writeParam.setCompressionMode(WebPWriteParam.MODE_DEFAULT);
-            // 配置ImageWriter输出
-            outputStream = new FileImageOutputStream(previewImage);
-            writer.setOutput(outputStream);
-            // 进行编码，重新生成新图片
-            writer.write(null, new IIOImage(image, null, null), writeParam);
+            webPEncoderPool.encode(image, previewOutput);
         } catch (IOException e) {
-            log.error("生成压缩图（预览图）失败，原图路径：{}，预览图路径：{}", originalImage.getAbsolutePath(), previewImage.getAbsolutePath(), e);
+            log.error("生成压缩图（预览图）失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成压缩图（预览图）失败");
-        } finally {
-            // 确保资源被正确关闭
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {
-                    log.error("关闭 FileImageOutputStream 时发生错误", e);
-                }
-            }
-            if (writer != null) {
-                writer.dispose();
-            }
         }
     }
 }
@@ -0,0 +1,270 @@
+package com.alan.alanpicturebackend.manager.variant;
+
+import cn.hutool.core.util.IdUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author alan
+ * @Description: 多尺寸图片的本地磁盘缓存（按总体积限制，最近最少使用淘汰）
+ * - 缓存文件先写入临时文件，写完后原子重命名，读取方不会看到写了一半的文件
+ * - 同一个文件并发未命中时只生成一次，其余请求等待同一个结果
+ * - 淘汰时在锁内删除文件，读取方在锁内打开文件（open），打开后的文件即使随后被淘汰也可以继续读取
+ * - 启动时扫描缓存目录恢复索引（按修改时间排序），清理上次未写完的临时文件
+ * - 指标：picture.variant.requests（按 result = hit、miss、coalesced 区分）、picture.variant.generate（生成耗时）、
+ * picture.variant.evictions（淘汰数）、picture.variant.cache.size（缓存体积）
+ * @Date: 2025/10/23 10:20
+ */
+@Slf4j
+public class PictureVariantCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 打开缓存文件的最大尝试次数（文件在生成后、打开前被并发淘汰时重新获取）
+     */
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+
+    private final Path cacheDir;
+
+    private final long maxBytes;
+
+    /**
+     * 文件名 => 文件大小，按访问顺序排列（最久未访问的在前）
+     */
+    private final LinkedHashMap<String, Long> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    /**
+     * 生成中的文件
+     */
+    private final Map<String, CompletableFuture<Path>> generatingMap = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter coalescedCounter;
+
+    private final Counter evictionCounter;
+
+    private final Timer generateTimer;
+
+    /**
+     * 文件内容生成器
+     */
+    @FunctionalInterface
+    public interface VariantWriter {
+
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    public PictureVariantCache(Path cacheDir, long maxBytes, MeterRegistry meterRegistry) throws IOException {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        hitCounter = meterRegistry.counter("picture.variant.requests", "result", "hit");
+        missCounter = meterRegistry.counter("picture.variant.requests", "result", "miss");
+        coalescedCounter = meterRegistry.counter("picture.variant.requests", "result", "coalesced");
+        evictionCounter = Counter.builder("picture.variant.evictions")
+                .description("从本地磁盘缓存淘汰的多尺寸图片数")
+                .register(meterRegistry);
+        generateTimer = Timer.builder("picture.variant.generate")
+                .description("多尺寸图片生成耗时")
+                .register(meterRegistry);
+        Gauge.builder("picture.variant.cache.size", this, PictureVariantCache::getTotalBytes)
+                .description("本地磁盘缓存的多尺寸图片总体积")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        load();
+    }
+
+    /**
+     * 获取缓存文件，未命中时生成
+     *
+     * @param name   缓存文件名（需唯一标识内容）
+     * @param writer 未命中时写出文件内容
+     * @return 缓存文件路径（刚访问过的文件位于淘汰顺序的末尾；返回后仍可能被并发淘汰，读取文件内容请使用 open）
+     */
+    public Path getOrCreate(String name, VariantWriter writer) throws IOException {
+        Path path = lookup(name);
+        if (path != null) {
+            hitCounter.increment();
+            return path;
+        }
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> generatingFuture = generatingMap.putIfAbsent(name, future);
+        if (generatingFuture != null) {
+            coalescedCounter.increment();
+            return await(generatingFuture);
+        }
+        try {
+            // 上一个生成者可能在 lookup 与 putIfAbsent 之间完成
+            path = lookup(name);
+            if (path != null) {
+                hitCounter.increment();
+            } else {
+                missCounter.increment();
+                path = generate(name, writer);
+            }
+            future.complete(path);
+            return path;
+        } catch (IOException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            generatingMap.remove(name, future);
+        }
+    }
+
+    /**
+     * 获取并打开缓存文件，未命中时生成
+     * 文件在缓存锁内打开，不会在打开前被并发淘汰删除
+     *
+     * @param name   缓存文件名（需唯一标识内容）
+     * @param writer 未命中时写出文件内容
+     * @return 只读文件通道，由调用方关闭
+     */
+    public FileChannel open(String name, VariantWriter writer) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Path path = getOrCreate(name, writer);
+            synchronized (this) {
+                if (entryMap.containsKey(name)) {
+                    try {
+                        return FileChannel.open(path, StandardOpenOption.READ);
+                    } catch (NoSuchFileException e) {
+                        // 被外部删除
+                        totalBytes -= entryMap.remove(name);
+                        if (attempt >= MAX_OPEN_ATTEMPTS) {
+                            throw e;
+                        }
+                    }
+                } else if (attempt >= MAX_OPEN_ATTEMPTS) {
+                    throw new NoSuchFileException(path.toString(), null, "缓存文件已被淘汰");
+                }
+            }
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entryMap.size();
+    }
+
+    private synchronized Path lookup(String name) {
+        if (entryMap.get(name) == null) {
+            return null;
+        }
+        Path path = cacheDir.resolve(name);
+        if (!Files.exists(path)) {
+            // 被外部删除
+            totalBytes -= entryMap.remove(name);
+            return null;
+        }
+        return path;
+    }
+
+    private Path generate(String name, VariantWriter writer) throws IOException {
+        long startTime = System.nanoTime();
+        Path path = cacheDir.resolve(name);
+        Path tempPath = cacheDir.resolve(name + "." + IdUtil.fastSimpleUUID() + TEMP_SUFFIX);
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+                writer.write(outputStream);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        register(name, Files.size(path));
+        generateTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return path;
+    }
+
+    /**
+     * 登记缓存文件，超过总体积时从最久未访问的开始淘汰（至少保留刚登记的文件）
+     * 被淘汰的文件在锁内删除，避免删除已被重新生成的同名文件，也避免删除正要被 open 打开的文件
+     */
+    private synchronized void register(String name, long size) {
+        Long oldSize = entryMap.put(name, size);
+        totalBytes += size - (oldSize == null ? 0 : oldSize);
+        Iterator<Map.Entry<String, Long>> iterator = entryMap.entrySet().iterator();
+        while (totalBytes > maxBytes && entryMap.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(name)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+            try {
+                Files.deleteIfExists(cacheDir.resolve(eldest.getKey()));
+                evictionCounter.increment();
+            } catch (IOException e) {
+                log.warn("删除多尺寸图片缓存文件失败，name = {}", eldest.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 扫描缓存目录，恢复索引
+     */
+    private void load() throws IOException {
+        Files.createDirectories(cacheDir);
+        List<Path> pathList = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributesMap = new HashMap<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDir)) {
+            for (Path path : directoryStream) {
+                if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    pathList.add(path);
+                    attributesMap.put(path, attributes);
+                }
+            }
+        }
+        pathList.sort(Comparator.comparing(path -> attributesMap.get(path).lastModifiedTime()));
+        for (Path path : pathList) {
+            register(path.getFileName().toString(), attributesMap.get(path).size());
+        }
+        log.info("多尺寸图片缓存加载完成，文件数 = {}，总大小 = {}", size(), getTotalBytes());
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待图片生成被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.alan.alanpicturebackend.manager.variant;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.config.PictureUploadConfig;
+import com.alan.alanpicturebackend.config.PictureVariantConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.manager.storage.ObjectStorage;
+import com.alan.alanpicturebackend.manager.upload.PictureUploadBuffer;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessExecutor;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.manager.variant.model.PictureVariant;
+import com.alan.alanpicturebackend.model.entity.Picture;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+/**
+ * @author alan
+ * @Description: 按需生成的多尺寸图片（指定宽度、格式）
+ * - 请求的宽度向上取整到配置的档位，且不超过原图宽度
+ * - 首次请求时生成并写入本地磁盘缓存，之后直接读取缓存文件
+ * - 缓存文件名包含原图 url 的摘要，重新上传后 url 变化，旧文件不再命中，按最近最少使用自然淘汰
+ * - 目标宽度不超过压缩图时以压缩图为源（体积小、解码快），否则下载原图
+ * @Date: 2025/10/23 11:00
+ */
+@Slf4j
+@Component
+public class PictureVariantManager {
+
+    @Resource
+    private PictureVariantConfig pictureVariantConfig;
+
+    @Resource
+    private PictureProcessConfig pictureProcessConfig;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PictureProcessUtils pictureProcessUtils;
+
+    @Resource
+    private PictureProcessExecutor pictureProcessExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private PictureVariantCache pictureVariantCache;
+
+    private Counter servedBytesCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        pictureVariantCache = new PictureVariantCache(Paths.get(pictureVariantConfig.getCacheDir()),
+                pictureVariantConfig.getMaxCacheSize().toBytes(), meterRegistry);
+        servedBytesCounter = Counter.builder("picture.variant.served")
+                .description("多尺寸图片返回的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取指定宽度、格式的图片，缓存未命中时生成
+     *
+     * @param picture 图片
+     * @param width   期望宽度（为空时使用最大档位）
+     * @param format  输出格式（为空时使用默认格式）
+     * @return 已打开的缓存文件，由调用方关闭
+     */
+    public PictureVariant getVariant(Picture picture, Integer width, String format) {
+        String targetFormat = StrUtil.isBlank(format) ? pictureVariantConfig.getFormats().get(0) : format.toLowerCase();
+        ThrowUtils.throwIf(!pictureVariantConfig.getFormats().contains(targetFormat), ErrorCode.PARAMS_ERROR, "不支持的图片格式");
+        ThrowUtils.throwIf(width != null && width <= 0, ErrorCode.PARAMS_ERROR, "图片宽度错误");
+        int targetWidth = resolveWidth(width, picture.getPicWidth());
+        String name = String.format("%s_%d.%s", DigestUtil.md5Hex(picture.getUrl()), targetWidth, targetFormat);
+        try {
+            FileChannel channel = pictureVariantCache.open(name,
+                    outputStream -> writeVariant(picture, targetWidth, targetFormat, outputStream));
+            long size = channel.size();
+            servedBytesCounter.increment(size);
+            return new PictureVariant(channel, size, targetFormat, name);
+        } catch (IOException e) {
+            log.error("获取多尺寸图片失败，pictureId = {}, name = {}", picture.getId(), name, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取图片失败");
+        }
+    }
+
+    /**
+     * 请求的宽度向上取整到最近的档位，不超过原图宽度
+     */
+    private int resolveWidth(Integer width, Integer picWidth) {
+        int targetWidth = pictureVariantConfig.getWidths().get(pictureVariantConfig.getWidths().size() - 1);
+        if (width != null) {
+            for (Integer candidate : pictureVariantConfig.getWidths()) {
+                if (candidate >= width) {
+                    targetWidth = candidate;
+                    break;
+                }
+            }
+        }
+        return picWidth != null && picWidth > 0 ? Math.min(targetWidth, picWidth) : targetWidth;
+    }
+
+    private void writeVariant(Picture picture, int width, String format, OutputStream outputStream) throws IOException {
+        String sourceUrl = selectSourceUrl(picture, width);
+        String prefix = objectStorage.getHost() + "/";
+        ThrowUtils.throwIf(!sourceUrl.startsWith(prefix), ErrorCode.OPERATION_ERROR, "图片不在当前存储中");
+        String key = sourceUrl.substring(prefix.length());
+        try (PictureUploadBuffer sourceBuffer = new PictureUploadBuffer(
+                pictureUploadConfig.getMemoryThreshold().toBytes(), FileUtil.getSuffix(key))) {
+            try (InputStream inputStream = objectStorage.getObject(key);
+                 OutputStream bufferOutput = sourceBuffer.getOutputStream()) {
+                IoUtil.copy(inputStream, bufferOutput);
+            }
+            // 在图片处理线程池中解码、缩放和编码，繁忙时拒绝
+            pictureProcessExecutor.execute(() -> {
+                try (ImageInputStream sourceImage = sourceBuffer.openImageInputStream()) {
+                    pictureProcessUtils.writeVariant(sourceImage, width, format, outputStream);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 压缩图已生成且宽度足够时以压缩图为源，否则使用原图
+     */
+    private String selectSourceUrl(Picture picture, int width) {
+        Integer picWidth = picture.getPicWidth();
+        Integer picHeight = picture.getPicHeight();
+        if (StrUtil.isNotBlank(picture.getPreviewUrl()) && picWidth != null && picHeight != null
+                && Integer.valueOf(PictureDerivativeStatusEnum.DONE.getValue()).equals(picture.getDerivativeStatus())) {
+            // 压缩图长边不超过 previewMaxSize
+            double previewScale = Math.min(1.0, (double) pictureProcessConfig.getPreviewMaxSize() / Math.max(picWidth, picHeight));
+            if (width <= Math.floor(picWidth * previewScale)) {
+                return picture.getPreviewUrl();
+            }
+        }
+        return picture.getUrl();
+    }
+}
@@ -0,0 +1,43 @@
+package com.alan.alanpicturebackend.manager.variant.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author alan
+ * @Description: 多尺寸图片（已打开的本地缓存文件，使用完毕后需关闭）
+ * @Date: 2025/10/23 11:05
+ */
+@Data
+@AllArgsConstructor
+public class PictureVariant implements Closeable {
+
+    /**
+     * 缓存文件通道（打开后文件即使被淘汰也可以继续读取）
+     */
+    private FileChannel channel;
+
+    /**
+     * 文件大小（字节）
+     */
+    private long size;
+
+    /**
+     * 图片格式：webp、jpg、png
+     */
+    private String format;
+
+    /**
+     * 缓存文件名（由原图 url、宽度、格式决定，可作为 ETag）
+     */
+    private String name;
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
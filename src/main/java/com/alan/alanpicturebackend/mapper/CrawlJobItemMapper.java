@@ -0,0 +1,13 @@
+package com.alan.alanpicturebackend.mapper;
+
+import com.alan.alanpicturebackend.model.entity.CrawlJobItem;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * @author alan
+ * @description 针对表【crawl_job_item(图片抓取任务明细)】的数据库操作Mapper
+ * @Entity com.alan.alanpicturebackend.model.entity.CrawlJobItem
+ */
+public interface CrawlJobItemMapper extends BaseMapper<CrawlJobItem> {
+
+}
@@ -0,0 +1,13 @@
+package com.alan.alanpicturebackend.mapper;
+
+import com.alan.alanpicturebackend.model.entity.CrawlJob;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * @author alan
+ * @description 针对表【crawl_job(图片抓取任务)】的数据库操作Mapper
+ * @Entity com.alan.alanpicturebackend.model.entity.CrawlJob
+ */
+public interface CrawlJobMapper extends BaseMapper<CrawlJob> {
+
+}
@@ -0,0 +1,67 @@
+package com.alan.alanpicturebackend.model.dto.file;
+
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 分块上传任务状态（保存在 Redis 中，任意节点都可以接收分块）
+ * @Date: 2025/10/18 14:20
+ */
+@Data
+public class ChunkUploadSession {
+
+    /**
+     * 上传任务 id
+     */
+    private String uploadId;
+
+    /**
+     * 发起上传的用户 id
+     */
+    private Long userId;
+
+    /**
+     * 分块暂存在对象存储中的 key
+     */
+    private String key;
+
+    /**
+     * 对象存储的分块上传 id
+     */
+    private String cosUploadId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件总大小
+     */
+    private Long fileSize;
+
+    /**
+     * 分块大小
+     */
+    private Long partSize;
+
+    /**
+     * 分块数量
+     */
+    private Integer partCount;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long id;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+}
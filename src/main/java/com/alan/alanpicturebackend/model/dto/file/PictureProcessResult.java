@@ -0,0 +1,43 @@
+package com.alan.alanpicturebackend.model.dto.file;
+
+import lombok.Data;
+
+/**
+ * @author alan
+ * @Description: 图片处理结果（原图只解码一次，派生出缩略图、预览图和尺寸信息）
+ * @Date: 2025/10/17 10:12
+ */
+@Data
+public class PictureProcessResult {
+
+    /**
+     * 原图宽度（按 EXIF 方向转正后）
+     */
+    private int picWidth;
+
+    /**
+     * 原图高度（按 EXIF 方向转正后）
+     */
+    private int picHeight;
+
+    /**
+     * 原图格式（由图片头部识别，jpeg 统一为 jpg）
+     */
+    private String picFormat;
+
+    /**
+     * EXIF 方向（1 ~ 8，1 表示无需旋转）
+     */
+    private int orientation = 1;
+
+    /**
+     * 感知哈希（dHash，由转正后的图片计算）
+     */
+    private long perceptualHash;
+
+    /**
+     * 主色调签名（见 DominantColorUtils）
+     */
+    private String picColor;
+
+}
@@ -55,4 +55,24 @@ public class UploadPictureResult {
      */
     private String picFormat;
 
+    /**
+     * 图片内容摘要（SHA-256）
+     */
+    private String contentHash;
+
+    /**
+     * 图片感知哈希（复用已有图片时沿用，否则由衍生图任务回写）
+     */
+    private Long perceptualHash;
+
+    /**
+     * 图片主色调（复用已有图片时沿用，否则由衍生图任务回写）
+     */
+    private String picColor;
+
+    /**
+     * 衍生图生成状态（复用已有图片时直接沿用其缩略图、压缩图）
+     */
+    private Integer derivativeStatus;
+
 }
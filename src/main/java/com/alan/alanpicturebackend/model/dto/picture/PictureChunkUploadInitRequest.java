@@ -0,0 +1,41 @@
+package com.alan.alanpicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @author alan
+ * @Description: 分块上传初始化请求参数
+ * @Date: 2025/10/18 14:10
+ */
+@Data
+public class PictureChunkUploadInitRequest implements Serializable {
+
+    /**
+     * 原始文件名（用于校验文件类型）
+     */
+    private String fileName;
+
+    /**
+     * 文件总大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long id;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,21 @@
+package com.alan.alanpicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @author alan
+ * @Description: 分块上传完成 / 取消请求参数
+ * @Date: 2025/10/18 14:12
+ */
+@Data
+public class PictureChunkUploadRequest implements Serializable {
+
+    /**
+     * 上传任务 id
+     */
+    private String uploadId;
+
+    private static final long serialVersionUID = 1L;
+}
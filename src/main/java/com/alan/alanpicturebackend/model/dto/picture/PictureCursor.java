@@ -0,0 +1,78 @@
+package com.alan.alanpicturebackend.model.dto.picture;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 图片游标分页的游标：上一页最后一条记录的排序字段值和 id
+ * 对外编码为不透明的字符串，包含排序字段和方向，与请求的排序方式不一致时视为无效
+ * @Date: 2025/10/26 10:10
+ */
+@Data
+@AllArgsConstructor
+public class PictureCursor {
+
+    /**
+     * 支持游标分页的排序字段（均有对应的联合索引，按 id 作为第二排序键）
+     */
+    public static final List<String> SORT_FIELDS = Arrays.asList("createTime", "id");
+
+    private static final String VERSION = "v1";
+
+    /**
+     * 排序字段
+     */
+    private String sortField;
+
+    /**
+     * 是否升序
+     */
+    private boolean ascend;
+
+    /**
+     * 排序字段的值（时间为毫秒时间戳）
+     */
+    private long value;
+
+    /**
+     * 图片 id
+     */
+    private long id;
+
+    /**
+     * 编码为游标字符串
+     */
+    public String encode() {
+        String raw = StrUtil.join(":", VERSION, sortField, ascend ? "a" : "d", value, id);
+        return Base64.encodeUrlSafe(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @return 游标，格式错误时返回 null
+     */
+    public static PictureCursor parse(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 5 || !VERSION.equals(parts[0]) || !SORT_FIELDS.contains(parts[1])
+                    || !("a".equals(parts[2]) || "d".equals(parts[2]))) {
+                return null;
+            }
+            return new PictureCursor(parts[1], "a".equals(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.alan.alanpicturebackend.model.dto.picture;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+/**
+ * @author alan
+ * @Description: 图片游标分页查询请求（查询条件同 PictureQueryRequest，忽略 current）
+ * @Date: 2025/10/26 10:00
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class PictureCursorQueryRequest extends PictureQueryRequest implements Serializable {
+
+    /**
+     * 上一页返回的游标（查询第一页时为空）
+     */
+    private String cursor;
+
+    private static final long serialVersionUID = 1L;
+}
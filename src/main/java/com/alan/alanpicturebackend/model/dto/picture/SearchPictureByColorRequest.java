@@ -0,0 +1,21 @@
+package com.alan.alanpicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class SearchPictureByColorRequest implements Serializable {
+
+    /**
+     * 图片主色调（#RRGGBB）
+     */
+    private String picColor;
+
+    /**
+     * 空间 id（为空时搜索公共图库）
+     */
+    private Long spaceId;
+
+    private static final long serialVersionUID = 1L;
+}
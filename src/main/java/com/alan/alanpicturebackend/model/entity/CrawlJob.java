@@ -0,0 +1,80 @@
+package com.alan.alanpicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 图片抓取任务
+ * @TableName crawl_job
+ */
+@TableName(value = "crawl_job")
+@Data
+public class CrawlJob implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 搜索关键词
+     */
+    private String searchText;
+
+    /**
+     * 图片名称前缀
+     */
+    private String namePrefix;
+
+    /**
+     * 目标数量
+     */
+    private Integer targetCount;
+
+    /**
+     * 成功数量
+     */
+    private Integer successCount;
+
+    /**
+     * 失败数量
+     */
+    private Integer failedCount;
+
+    /**
+     * 已占用的名额（成功数 + 处理中的数量），各节点按此控制不超过目标数量
+     */
+    private Integer reservedCount;
+
+    /**
+     * 状态：0-等待中; 1-搜索中; 2-抓取中; 3-已完成; 4-失败
+     */
+    private Integer status;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    private static final long serialVersionUID = 1L;
+}
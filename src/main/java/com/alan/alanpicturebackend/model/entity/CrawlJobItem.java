@@ -0,0 +1,85 @@
+package com.alan.alanpicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 图片抓取任务明细
+ * @TableName crawl_job_item
+ */
+@TableName(value = "crawl_job_item")
+@Data
+public class CrawlJobItem implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 任务 id
+     */
+    private Long jobId;
+
+    /**
+     * 图片地址
+     */
+    private String fileUrl;
+
+    /**
+     * 图片地址摘要（MD5，用于唯一索引）
+     */
+    private String urlHash;
+
+    /**
+     * 图片序号（成功后分配）
+     */
+    private Integer sequence;
+
+    /**
+     * 状态：0-待处理; 1-处理中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 处理耗时（毫秒）
+     */
+    private Long costMillis;
+
+    /**
+     * 处理节点
+     */
+    private String claimedBy;
+
+    /**
+     * 领取时间
+     */
+    private Date claimTime;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    private static final long serialVersionUID = 1L;
+}
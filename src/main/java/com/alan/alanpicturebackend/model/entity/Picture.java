@@ -81,6 +81,21 @@ public class Picture implements Serializable {
      */
     private String picFormat;
 
+    /**
+     * 图片内容摘要（SHA-256，十六进制），内容相同的图片共用同一份存储
+     */
+    private String contentHash;
+
+    /**
+     * 图片感知哈希（dHash，64 位），用于以图搜图
+     */
+    private Long perceptualHash;
+
+    /**
+     * 图片主色调签名（rrggbb:占比，最多 3 个），用于按颜色搜索
+     */
+    private String picColor;
+
     /**
      * 创建用户 id
      */
@@ -110,7 +125,12 @@ public class Picture implements Serializable {
      * 审核时间
      */
     private Date reviewTime;
-    
+
+    /**
+     * 衍生图（缩略图、压缩图）生成状态：0-生成中; 1-已完成; 2-失败
+     */
+    private Integer derivativeStatus;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,40 @@
+package com.alan.alanpicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * @author alan
+ * @Description: 图片抓取任务明细状态枚举
+ * @Date: 2025/10/22 10:05
+ */
+@Getter
+public enum CrawlJobItemStatusEnum {
+    PENDING("待处理", 0),
+    RUNNING("处理中", 1),
+    SUCCEED("成功", 2),
+    FAILED("失败", 3);
+
+    private final String text;
+    private final int value;
+
+    CrawlJobItemStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static CrawlJobItemStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (CrawlJobItemStatusEnum statusEnum : CrawlJobItemStatusEnum.values()) {
+            if (statusEnum.value == value) {
+                return statusEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.alan.alanpicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * @author alan
+ * @Description: 图片抓取任务状态枚举
+ * @Date: 2025/10/22 10:05
+ */
+@Getter
+public enum CrawlJobStatusEnum {
+    WAITING("等待中", 0),
+    SEARCHING("搜索中", 1),
+    RUNNING("抓取中", 2),
+    SUCCEED("已完成", 3),
+    FAILED("失败", 4);
+
+    private final String text;
+    private final int value;
+
+    CrawlJobStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static CrawlJobStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (CrawlJobStatusEnum statusEnum : CrawlJobStatusEnum.values()) {
+            if (statusEnum.value == value) {
+                return statusEnum;
+            }
+        }
+        return null;
+    }
+}
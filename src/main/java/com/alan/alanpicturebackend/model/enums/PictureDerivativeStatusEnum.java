@@ -0,0 +1,39 @@
+package com.alan.alanpicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * @author alan
+ * @Description: 图片衍生图（缩略图、压缩图）生成状态枚举
+ * @Date: 2025/10/18 10:05
+ */
+@Getter
+public enum PictureDerivativeStatusEnum {
+    PENDING("生成中", 0),
+    DONE("已完成", 1),
+    FAILED("失败", 2);
+
+    private final String text;
+    private final int value;
+
+    PictureDerivativeStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static PictureDerivativeStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureDerivativeStatusEnum pictureDerivativeStatusEnum : PictureDerivativeStatusEnum.values()) {
+            if (pictureDerivativeStatusEnum.value == value) {
+                return pictureDerivativeStatusEnum;
+            }
+        }
+        return null;
+    }
+}
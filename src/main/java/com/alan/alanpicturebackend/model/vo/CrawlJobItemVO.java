@@ -0,0 +1,58 @@
+package com.alan.alanpicturebackend.model.vo;
+
+import com.alan.alanpicturebackend.model.entity.CrawlJobItem;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+
+import java.io.Serializable;
+
+/**
+ * 图片抓取任务明细VO
+ */
+@Data
+public class CrawlJobItemVO implements Serializable {
+
+    /**
+     * 图片地址
+     */
+    private String fileUrl;
+
+    /**
+     * 图片序号（成功后分配）
+     */
+    private Integer sequence;
+
+    /**
+     * 状态：0-待处理; 1-处理中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 处理耗时（毫秒）
+     */
+    private Long costMillis;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类
+     */
+    public static CrawlJobItemVO objToVo(CrawlJobItem crawlJobItem) {
+        if (crawlJobItem == null) {
+            return null;
+        }
+        CrawlJobItemVO crawlJobItemVO = new CrawlJobItemVO();
+        BeanUtils.copyProperties(crawlJobItem, crawlJobItemVO);
+        return crawlJobItemVO;
+    }
+}
@@ -0,0 +1,91 @@
+package com.alan.alanpicturebackend.model.vo;
+
+import com.alan.alanpicturebackend.model.entity.CrawlJob;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 图片抓取任务VO
+ */
+@Data
+public class CrawlJobVO implements Serializable {
+
+    /**
+     * id
+     */
+    private Long id;
+
+    /**
+     * 搜索关键词
+     */
+    private String searchText;
+
+    /**
+     * 图片名称前缀
+     */
+    private String namePrefix;
+
+    /**
+     * 目标数量
+     */
+    private Integer targetCount;
+
+    /**
+     * 成功数量
+     */
+    private Integer successCount;
+
+    /**
+     * 失败数量
+     */
+    private Integer failedCount;
+
+    /**
+     * 状态：0-等待中; 1-搜索中; 2-抓取中; 3-已完成; 4-失败
+     */
+    private Integer status;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    /**
+     * 已处理（成功、失败、处理中）的明细
+     */
+    private List<CrawlJobItemVO> itemList = new ArrayList<>();
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类
+     */
+    public static CrawlJobVO objToVo(CrawlJob crawlJob) {
+        if (crawlJob == null) {
+            return null;
+        }
+        CrawlJobVO crawlJobVO = new CrawlJobVO();
+        BeanUtils.copyProperties(crawlJob, crawlJobVO);
+        return crawlJobVO;
+    }
+}
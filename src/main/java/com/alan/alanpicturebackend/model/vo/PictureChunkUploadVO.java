@@ -0,0 +1,37 @@
+package com.alan.alanpicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @author alan
+ * @Description: 分块上传任务视图
+ * @Date: 2025/10/18 14:15
+ */
+@Data
+public class PictureChunkUploadVO implements Serializable {
+
+    /**
+     * 上传任务 id，后续上传分块、完成、取消时携带
+     */
+    private String uploadId;
+
+    /**
+     * 分块大小（字节），除最后一块外每块都必须等于该大小
+     */
+    private Long partSize;
+
+    /**
+     * 分块数量，分块编号从 1 开始
+     */
+    private Integer partCount;
+
+    /**
+     * 已上传的分块编号（断点续传时跳过这些分块）
+     */
+    private List<Integer> uploadedPartList;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -83,6 +83,11 @@ public class PictureVO implements Serializable {
      */
     private String picFormat;
 
+    /**
+     * 衍生图（缩略图、压缩图）生成状态：0-生成中; 1-已完成; 2-失败
+     */
+    private Integer derivativeStatus;
+
     /**
      * 用户 id
      */
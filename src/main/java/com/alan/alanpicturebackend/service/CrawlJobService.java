@@ -0,0 +1,31 @@
+package com.alan.alanpicturebackend.service;
+
+import com.alan.alanpicturebackend.model.dto.picture.PictureUploadByBatchRequest;
+import com.alan.alanpicturebackend.model.entity.CrawlJob;
+import com.alan.alanpicturebackend.model.entity.User;
+import com.alan.alanpicturebackend.model.vo.CrawlJobVO;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+/**
+ * @author alan
+ * @description 针对表【crawl_job(图片抓取任务)】的数据库操作Service
+ */
+public interface CrawlJobService extends IService<CrawlJob> {
+
+    /**
+     * 创建图片抓取任务（异步执行）
+     *
+     * @param pictureUploadByBatchRequest 抓取请求
+     * @param loginUser                   登录用户
+     * @return 任务 id
+     */
+    long addCrawlJob(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser);
+
+    /**
+     * 获取图片抓取任务进度（含已处理的明细）
+     *
+     * @param id 任务 id
+     * @return 任务进度
+     */
+    CrawlJobVO getCrawlJobVO(long id);
+}
@@ -2,6 +2,8 @@ package com.alan.alanpicturebackend.service;
 
 import com.alan.alanpicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.alan.alanpicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
+import com.alan.alanpicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.alan.alanpicturebackend.common.CursorPage;
 import com.alan.alanpicturebackend.model.dto.picture.*;
 import com.alan.alanpicturebackend.model.entity.Picture;
 import com.alan.alanpicturebackend.model.entity.User;
@@ -12,6 +14,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 /**
  * @author alan
@@ -32,6 +35,15 @@ public interface PictureService extends IService<Picture> {
                             PictureUploadRequest pictureUploadRequest,
                             User loginUser);
 
+    /**
+     * 完成分块上传：合并分块后按普通上传流程入库
+     *
+     * @param uploadId  分块上传任务 id
+     * @param loginUser 上传用户
+     * @return 返回上传的图片信息
+     */
+    PictureVO uploadPictureByChunk(String uploadId, User loginUser);
+
     /**
      * 将查询请求对象转换为QueryWrapper对象
      *
@@ -68,6 +80,15 @@ public interface PictureService extends IService<Picture> {
      */
     Page<PictureVO> getListPictureVOByPage(PictureQueryRequest pictureQueryRequest, HttpServletRequest request);
 
+    /**
+     * 游标分页获取图片 VO 列表（不统计总数，用于无限滚动）
+     *
+     * @param pictureCursorQueryRequest 游标分页请求
+     * @param request                   请求
+     * @return 当前页数据和下一页游标
+     */
+    CursorPage<PictureVO> listPictureVOByCursor(PictureCursorQueryRequest pictureCursorQueryRequest, HttpServletRequest request);
+
     /**
      * 管理员刷新图片分页 VO列表redis缓存
      */
@@ -88,6 +109,23 @@ public interface PictureService extends IService<Picture> {
      */
     void doPictureReview(PictureReviewRequest pictureReviewRequest, User loginUser);
 
+    /**
+     * 以图搜图（在同一空间内按感知哈希检索相似图片）
+     *
+     * @param picture 目标图片
+     * @return 相似图片，按相似度从高到低排序
+     */
+    List<ImageSearchResult> searchPictureByPicture(Picture picture);
+
+    /**
+     * 按颜色搜图（在同一空间内按主色调检索）
+     *
+     * @param spaceId  空间 id（公共图库为 null）
+     * @param picColor 目标颜色（#RRGGBB）
+     * @return 图片，按颜色相似度从高到低排序
+     */
+    List<PictureVO> searchPictureByColor(Long spaceId, String picColor);
+
     /**
      * 补充审核参数-管理员自动过审
      *
@@ -0,0 +1,84 @@
+package com.alan.alanpicturebackend.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.alan.alanpicturebackend.exception.ErrorCode;
+import com.alan.alanpicturebackend.exception.ThrowUtils;
+import com.alan.alanpicturebackend.mapper.CrawlJobItemMapper;
+import com.alan.alanpicturebackend.mapper.CrawlJobMapper;
+import com.alan.alanpicturebackend.model.dto.picture.PictureUploadByBatchRequest;
+import com.alan.alanpicturebackend.model.entity.CrawlJob;
+import com.alan.alanpicturebackend.model.entity.CrawlJobItem;
+import com.alan.alanpicturebackend.model.entity.User;
+import com.alan.alanpicturebackend.model.enums.CrawlJobItemStatusEnum;
+import com.alan.alanpicturebackend.model.enums.CrawlJobStatusEnum;
+import com.alan.alanpicturebackend.model.vo.CrawlJobItemVO;
+import com.alan.alanpicturebackend.model.vo.CrawlJobVO;
+import com.alan.alanpicturebackend.service.CrawlJobService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.stream.Collectors;
+
+/**
+ * @author alan
+ * @description 针对表【crawl_job(图片抓取任务)】的数据库操作Service实现
+ */
+@Service
+public class CrawlJobServiceImpl extends ServiceImpl<CrawlJobMapper, CrawlJob>
+        implements CrawlJobService {
+
+    /**
+     * 单个任务最大抓取数量
+     */
+    private static final int MAX_TARGET_COUNT = 300;
+
+    @Resource
+    private CrawlJobItemMapper crawlJobItemMapper;
+
+    @Override
+    public long addCrawlJob(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
+        // 校验查询关键词
+        String searchText = pictureUploadByBatchRequest.getSearchText();
+        ThrowUtils.throwIf(StrUtil.isBlank(searchText), ErrorCode.PARAMS_ERROR, "查询关键词不能为空");
+        // 校验查询数量（异步执行，不再受单次请求耗时限制）
+        Integer count = pictureUploadByBatchRequest.getCount();
+        ThrowUtils.throwIf(count == null || count <= 0, ErrorCode.PARAMS_ERROR, "抓取数量不能为空");
+        ThrowUtils.throwIf(count > MAX_TARGET_COUNT, ErrorCode.PARAMS_ERROR, "单次抓取数量最大限度为" + MAX_TARGET_COUNT + "条");
+        // 如果名称不存在默认使用搜索关键词
+        String namePrefix = pictureUploadByBatchRequest.getNamePrefix();
+        if (StrUtil.isBlank(namePrefix)) {
+            namePrefix = searchText;
+        }
+        CrawlJob crawlJob = new CrawlJob();
+        crawlJob.setSearchText(searchText);
+        crawlJob.setNamePrefix(namePrefix);
+        crawlJob.setTargetCount(count);
+        crawlJob.setSuccessCount(0);
+        crawlJob.setFailedCount(0);
+        crawlJob.setReservedCount(0);
+        crawlJob.setStatus(CrawlJobStatusEnum.WAITING.getValue());
+        crawlJob.setUserId(loginUser.getId());
+        boolean result = this.save(crawlJob);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        return crawlJob.getId();
+    }
+
+    @Override
+    public CrawlJobVO getCrawlJobVO(long id) {
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        CrawlJob crawlJob = this.getById(id);
+        ThrowUtils.throwIf(crawlJob == null, ErrorCode.NOT_FOUND_ERROR);
+        CrawlJobVO crawlJobVO = CrawlJobVO.objToVo(crawlJob);
+        // 待处理的候选地址不返回
+        crawlJobVO.setItemList(crawlJobItemMapper.selectList(new LambdaQueryWrapper<CrawlJobItem>()
+                        .eq(CrawlJobItem::getJobId, id)
+                        .ne(CrawlJobItem::getStatus, CrawlJobItemStatusEnum.PENDING.getValue())
+                        .orderByAsc(CrawlJobItem::getId))
+                .stream()
+                .map(CrawlJobItemVO::objToVo)
+                .collect(Collectors.toList()));
+        return crawlJobVO;
+    }
+}
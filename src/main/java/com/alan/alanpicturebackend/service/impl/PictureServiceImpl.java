@@ -3,28 +3,43 @@ package com.alan.alanpicturebackend.service.impl;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjUtil;
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.alan.alanpicturebackend.api.aliyunai.AliYunAiApi;
 import com.alan.alanpicturebackend.api.aliyunai.model.CreateOutPaintingTaskRequest;
 import com.alan.alanpicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.alan.alanpicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
+import com.alan.alanpicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.alan.alanpicturebackend.exception.BusinessException;
 import com.alan.alanpicturebackend.exception.ErrorCode;
 import com.alan.alanpicturebackend.exception.ThrowUtils;
 import com.alan.alanpicturebackend.manager.auth.StpKit;
 import com.alan.alanpicturebackend.manager.auth.model.SpaceUserPermissionConstant;
+import com.alan.alanpicturebackend.manager.cache.PictureListCacheManager;
+import com.alan.alanpicturebackend.manager.cache.model.PictureListCacheKey;
+import com.alan.alanpicturebackend.manager.crawl.PictureCrawlManager;
+import com.alan.alanpicturebackend.manager.crawl.model.PictureCrawlResult;
+import com.alan.alanpicturebackend.manager.derivative.PictureDerivativeManager;
+import com.alan.alanpicturebackend.manager.similar.PictureSimilarManager;
+import com.alan.alanpicturebackend.manager.similar.model.SimilarPicture;
+import com.alan.alanpicturebackend.manager.space.SpaceQuotaManager;
+import com.alan.alanpicturebackend.manager.space.model.SpaceQuotaReservation;
+import com.alan.alanpicturebackend.manager.storage.StorageReclaimManager;
+import com.alan.alanpicturebackend.manager.upload.ChunkPictureUpload;
 import com.alan.alanpicturebackend.manager.upload.FilePictureUpload;
+import com.alan.alanpicturebackend.manager.upload.PictureChunkUploadManager;
 import com.alan.alanpicturebackend.manager.upload.PictureUploadTemplate;
 import com.alan.alanpicturebackend.manager.upload.UrlPictureUpload;
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils;
 import com.alan.alanpicturebackend.mapper.PictureMapper;
+import com.alan.alanpicturebackend.model.dto.file.ChunkUploadSession;
 import com.alan.alanpicturebackend.model.dto.file.UploadPictureResult;
+import com.alan.alanpicturebackend.common.CursorPage;
 import com.alan.alanpicturebackend.model.dto.picture.*;
 import com.alan.alanpicturebackend.model.entity.Picture;
 import com.alan.alanpicturebackend.model.entity.Space;
 import com.alan.alanpicturebackend.model.entity.User;
+import com.alan.alanpicturebackend.model.enums.PictureDerivativeStatusEnum;
 import com.alan.alanpicturebackend.model.enums.PictureReviewStatusEnum;
 import com.alan.alanpicturebackend.model.vo.PictureVO;
 import com.alan.alanpicturebackend.model.vo.UserVO;
@@ -35,13 +50,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -49,9 +58,7 @@ import org.springframework.util.DigestUtils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -77,14 +84,35 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     private UrlPictureUpload urlPictureUpload;
 
     @Resource
-    private TransactionTemplate transactionTemplate;
+    private ChunkPictureUpload chunkPictureUpload;
+
+    @Resource
+    private PictureChunkUploadManager pictureChunkUploadManager;
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private TransactionTemplate transactionTemplate;
 
     @Resource
     private AliYunAiApi aliYunAiApi;
 
+    @Resource
+    private PictureDerivativeManager pictureDerivativeManager;
+
+    @Resource
+    private PictureCrawlManager pictureCrawlManager;
+
+    @Resource
+    private StorageReclaimManager storageReclaimManager;
+
+    @Resource
+    private PictureSimilarManager pictureSimilarManager;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private PictureListCacheManager pictureListCacheManager;
+
     /**
      * 图片上传
      *
@@ -108,13 +136,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
 //            if (!loginUser.getId().equals(space.getUserId())) {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
-            // 校验空间额度
-            if (space.getTotalCount() >= space.getMaxCount()) {
-                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "空间图片数量额度不足");
-            }
-            if (space.getTotalSize() >= space.getMaxSize()) {
-                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "空间存储大小额度不足");
-            }
+            // 空间额度在文件上传完成、大小确定后由额度账本原子预占，不再读取 space 表判断
         }
 
         // 判断是更新还是添加
@@ -123,8 +145,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             pictureId = pictureUploadRequest.getId();
         }
         // 如果是存在id，则是更新图片，需要校验图片是否存在
+        Picture oldPicture = null;
         if (pictureId != null) {
-            Picture oldPicture = this.getById(pictureId);
+            oldPicture = this.getById(pictureId);
 //            boolean exists = this.lambdaQuery()
 //                    .eq(Picture::getId, pictureId)
 //                    .exists();
@@ -165,14 +188,21 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 判断 inputSource 的类型
         if (inputSource instanceof String) {
             pictureUploadTemplate = urlPictureUpload;
+        } else if (inputSource instanceof ChunkUploadSession) {
+            pictureUploadTemplate = chunkPictureUpload;
         }
         UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
         // 构造要写入数据库的图片信息
         Picture picture = new Picture();
         picture.setSpaceId(spaceId); // 指定空间 id
         picture.setUrl(uploadPictureResult.getUrl());
-        picture.setPreviewUrl(uploadPictureResult.getPreviewUrl());
+        picture.setContentHash(uploadPictureResult.getContentHash());
+        picture.setPerceptualHash(uploadPictureResult.getPerceptualHash());
+        picture.setPicColor(uploadPictureResult.getPicColor());
+        // 缩略图、压缩图：复用相同内容的已有图片，或由后台任务异步生成
         picture.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
+        picture.setPreviewUrl(uploadPictureResult.getPreviewUrl());
+        picture.setDerivativeStatus(uploadPictureResult.getDerivativeStatus());
 
         // 封装姓名
         String picName = uploadPictureResult.getPicName();
@@ -195,27 +225,87 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             picture.setEditTime(new Date());
         }
 
-        // 开启事务
-        Long finalSpaceId = spaceId;
-        transactionTemplate.execute(status -> {
-            // 插入数据
-            boolean result = this.saveOrUpdate(picture);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败");
-            // 更新空间操作的额度
-            if (finalSpaceId != null) {
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, finalSpaceId)
-                        .setSql("totalSize = totalSize + " + picture.getPicSize())
-                        .setSql("totalCount = totalCount + 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "空间额度更新失败");
+        boolean isUpdate = pictureId != null;
+        Picture finalOldPicture = oldPicture;
+        // 预占空间额度（文件大小此时才确定），重新上传只占用新旧图片的大小之差
+        SpaceQuotaReservation reservation = null;
+        try {
+            if (spaceId != null) {
+                long sizeDelta = picture.getPicSize() - (isUpdate ? ObjUtil.defaultIfNull(oldPicture.getPicSize(), 0L) : 0L);
+                reservation = spaceQuotaManager.reserve(spaceId, isUpdate ? 0 : 1, sizeDelta);
             }
-            return picture;
-        });
-        // todo 如果是更新图片，需要清空之前的老旧图片资源
+            // 开启事务
+            transactionTemplate.execute(status -> {
+                // 插入数据
+                boolean result = this.saveOrUpdate(picture);
+                ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败");
+                // 如果是更新，旧的缩略图、压缩图已与新图片不符，替换为复用的结果或先清空等待重新生成
+                if (isUpdate) {
+                    this.lambdaUpdate()
+                            .eq(Picture::getId, picture.getId())
+                            .set(Picture::getThumbnailUrl, picture.getThumbnailUrl())
+                            .set(Picture::getPreviewUrl, picture.getPreviewUrl())
+                            .set(Picture::getPerceptualHash, picture.getPerceptualHash())
+                            .set(Picture::getPicColor, picture.getPicColor())
+                            .update();
+                    // 事务提交后回收旧图片不再使用的文件
+                    List<String> oldUrlList = new ArrayList<>(Arrays.asList(finalOldPicture.getUrl(),
+                            finalOldPicture.getThumbnailUrl(), finalOldPicture.getPreviewUrl()));
+                    oldUrlList.removeAll(Arrays.asList(picture.getUrl(), picture.getThumbnailUrl(), picture.getPreviewUrl()));
+                    storageReclaimManager.reclaim(oldUrlList);
+                }
+                return picture;
+            });
+        } catch (RuntimeException e) {
+            // 额度不足或入库失败：归还额度，回收本次上传的文件（仍被其他图片引用的文件会保留）
+            if (reservation != null) {
+                spaceQuotaManager.cancel(reservation);
+            }
+            storageReclaimManager.reclaim(Arrays.asList(picture.getUrl(), picture.getThumbnailUrl(), picture.getPreviewUrl()));
+            throw e;
+        }
+        // 事务提交后确认额度，增量由后台任务合并写回空间表
+        if (reservation != null) {
+            spaceQuotaManager.confirm(reservation);
+        }
+        pictureListCacheManager.invalidate(spaceId);
+        // 事务提交后再提交衍生图生成任务，保证消费者能查到图片记录
+        if (PictureDerivativeStatusEnum.PENDING.getValue() == picture.getDerivativeStatus()) {
+            pictureDerivativeManager.submit(picture.getId(), picture.getUrl());
+        }
         return PictureVO.objToVo(picture);
     }
 
+    /**
+     * 完成分块上传
+     * 合并后的暂存对象作为输入源走统一的上传流程（校验、去重、入库、更新空间额度），入库成功后删除暂存对象，
+     * 失败时保留暂存对象，可以重试或取消
+     *
+     * @param uploadId  分块上传任务 id
+     * @param loginUser 上传用户
+     * @return 返回上传的图片信息
+     */
+    @Override
+    public PictureVO uploadPictureByChunk(String uploadId, User loginUser) {
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        ChunkUploadSession session = pictureChunkUploadManager.completeChunkUpload(uploadId, loginUser);
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(session.getId());
+        pictureUploadRequest.setPicName(session.getPicName());
+        pictureUploadRequest.setSpaceId(session.getSpaceId());
+        PictureVO pictureVO;
+        try {
+            pictureVO = this.uploadPicture(session, pictureUploadRequest, loginUser);
+        } catch (RuntimeException e) {
+            // 保留已合并的暂存对象，重试时直接入库
+            pictureChunkUploadManager.completeFailed(session);
+            throw e;
+        }
+        // 入库提交后才释放暂存对象和任务状态
+        pictureChunkUploadManager.release(session);
+        return pictureVO;
+    }
+
     /**
      * 将查询请求转换为 QueryWrapper 对象
      *
@@ -379,36 +469,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
 
         // 空间权限校验
-        Long spaceId = pictureQueryRequest.getSpaceId();
-        if (spaceId == null) {
-            // 如果 spaceId 为空，则默认查询公共空间的数据
-            // 普通用户默认只能查看已过审的数据
-            pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
-            pictureQueryRequest.setNullSpaceId(true);
-        } else {
-            // 私有空间
-            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
-            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR, "没有空间权限");
-            // 普通用户只能查看自己创建的私有空间的数据
-//            User loginUser = userService.getLoginUser(request);
-//            Space space = spaceService.getById(spaceId);
-//            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
-//            if (!loginUser.getId().equals(space.getUserId())) {
-//                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
-//            }
-        }
+        this.fillPictureViewScope(pictureQueryRequest);
 
         // 构建缓存 Key
         String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest); // 查询条件
         String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
-        String redisKey = "alanPicture:listPictureVoByPage:" + hashKey; // 缓存键
-
-        // 查询 Redis 缓存
-        ValueOperations<String, String> valueOps = stringRedisTemplate.opsForValue();
-        String cachedValue = valueOps.get(redisKey);
-        if (cachedValue != null) {
-            // Redis 缓存中查询到
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
+
+        // 查询缓存（本地缓存 + Redis），缓存键在查询数据库之前确定
+        PictureListCacheKey cacheKey = pictureListCacheManager.getCacheKey(pictureQueryRequest.getSpaceId(), hashKey);
+        Page<PictureVO> cachedPage = pictureListCacheManager.get(cacheKey);
+        if (cachedPage != null) {
             return cachedPage;
         }
 
@@ -419,21 +489,104 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 封装
         Page<PictureVO> pictureVOPage = this.getPictureVOPage(picturePage, request);
 
-        // 添加 Redis 缓存
-        String cacheValue = JSONUtil.toJsonStr(pictureVOPage);
-        // 设置过期时间：5~10分钟随机 防止雪崩
-        int cacheExpireTime = 300 + RandomUtil.randomInt(0, 300); // 300秒 + 0到300秒随机
-        valueOps.set(redisKey, cacheValue, cacheExpireTime, TimeUnit.SECONDS);
+        // 添加缓存
+        pictureListCacheManager.put(cacheKey, pictureVOPage);
         return pictureVOPage;
     }
 
     @Override
     public void updateListPictureVOCache() {
-        // 清除图片列表缓存
-        // 使用通配符匹配所有图片列表缓存
-        Set<String> redisKeys = stringRedisTemplate.keys("alanPicture:listPictureVoByPage:" + "*");
-        if (redisKeys != null) {
-            stringRedisTemplate.delete(redisKeys);
+        // 清除所有节点的图片列表缓存
+        pictureListCacheManager.invalidateAll();
+    }
+
+    /**
+     * 游标分页获取图片 VO 列表（无限滚动）
+     * 按（排序字段, id）定位上一页的最后一条记录继续查询，不使用 OFFSET、不统计总数，翻页深度不影响查询耗时
+     *
+     * @param pictureCursorQueryRequest 游标分页请求
+     * @param request                   请求
+     * @return 当前页数据和下一页游标
+     */
+    @Override
+    public CursorPage<PictureVO> listPictureVOByCursor(PictureCursorQueryRequest pictureCursorQueryRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureCursorQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        int size = pictureCursorQueryRequest.getPageSize();
+        // 限制查询条数最大值，防止爬虫
+        ThrowUtils.throwIf(size <= 0 || size > 20, ErrorCode.PARAMS_ERROR);
+        String sortField = StrUtil.blankToDefault(pictureCursorQueryRequest.getSortField(), "createTime");
+        ThrowUtils.throwIf(!PictureCursor.SORT_FIELDS.contains(sortField), ErrorCode.PARAMS_ERROR, "不支持的排序字段");
+        boolean ascend = "ascend".equals(pictureCursorQueryRequest.getSortOrder());
+        PictureCursor cursor = null;
+        if (StrUtil.isNotBlank(pictureCursorQueryRequest.getCursor())) {
+            cursor = PictureCursor.parse(pictureCursorQueryRequest.getCursor());
+            ThrowUtils.throwIf(cursor == null || !sortField.equals(cursor.getSortField()) || ascend != cursor.isAscend(),
+                    ErrorCode.PARAMS_ERROR, "游标无效");
+        }
+        // 空间权限校验
+        this.fillPictureViewScope(pictureCursorQueryRequest);
+
+        // 排序由游标条件统一处理
+        pictureCursorQueryRequest.setSortField(null);
+        pictureCursorQueryRequest.setSortOrder(ascend ? "ascend" : "descend");
+        QueryWrapper<Picture> queryWrapper = this.getQueryWrapper(pictureCursorQueryRequest);
+        if (cursor != null) {
+            long cursorId = cursor.getId();
+            if ("id".equals(sortField)) {
+                queryWrapper.gt(ascend, "id", cursorId).lt(!ascend, "id", cursorId);
+            } else {
+                Date cursorValue = new Date(cursor.getValue());
+                // 等同于：【~ and (createTime < ? or (createTime = ? and id < ?))】
+                queryWrapper.and(qw -> qw.gt(ascend, sortField, cursorValue).lt(!ascend, sortField, cursorValue)
+                        .or(sameValue -> sameValue.eq(sortField, cursorValue)
+                                .gt(ascend, "id", cursorId).lt(!ascend, "id", cursorId)));
+            }
+        }
+        queryWrapper.orderBy(true, ascend, sortField);
+        queryWrapper.orderBy(!"id".equals(sortField), ascend, "id");
+        // 多查一条判断是否还有下一页
+        queryWrapper.last("LIMIT " + (size + 1));
+        List<Picture> pictureList = this.list(queryWrapper);
+
+        CursorPage<PictureVO> cursorPage = new CursorPage<>();
+        boolean hasMore = pictureList.size() > size;
+        if (hasMore) {
+            pictureList = pictureList.subList(0, size);
+            Picture last = pictureList.get(size - 1);
+            long lastValue = "id".equals(sortField) ? last.getId() : last.getCreateTime().getTime();
+            cursorPage.setNextCursor(new PictureCursor(sortField, ascend, lastValue, last.getId()).encode());
+        }
+        cursorPage.setHasMore(hasMore);
+        // 复用分页封装逻辑，批量关联用户信息
+        Page<Picture> picturePage = new Page<>(1, size, false);
+        picturePage.setRecords(pictureList);
+        cursorPage.setRecords(this.getPictureVOPage(picturePage, request).getRecords());
+        return cursorPage;
+    }
+
+    /**
+     * 根据查询的空间补充可见范围：公共图库只能查看已过审的数据，私有空间需要查看权限
+     *
+     * @param pictureQueryRequest 查询请求
+     */
+    private void fillPictureViewScope(PictureQueryRequest pictureQueryRequest) {
+        Long spaceId = pictureQueryRequest.getSpaceId();
+        if (spaceId == null) {
+            // 如果 spaceId 为空，则默认查询公共空间的数据
+            // 普通用户默认只能查看已过审的数据
+            pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
+            pictureQueryRequest.setNullSpaceId(true);
+        } else {
+            // 私有空间
+            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR, "没有空间权限");
+            // 普通用户只能查看自己创建的私有空间的数据
+//            User loginUser = userService.getLoginUser(request);
+//            Space space = spaceService.getById(spaceId);
+//            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+//            if (!loginUser.getId().equals(space.getUserId())) {
+//                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
+//            }
         }
     }
 
@@ -462,6 +615,44 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         }
     }
 
+    /**
+     * 以图搜图：站内感知哈希相似检索，替代逐次抓取百度识图页面
+     *
+     * @param picture 目标图片
+     * @return 相似图片
+     */
+    @Override
+    public List<ImageSearchResult> searchPictureByPicture(Picture picture) {
+        List<SimilarPicture> similarPictureList = pictureSimilarManager.searchSimilar(picture);
+        List<ImageSearchResult> resultList = new ArrayList<>(similarPictureList.size());
+        for (SimilarPicture similarPicture : similarPictureList) {
+            Picture resultPicture = similarPicture.getPicture();
+            ImageSearchResult imageSearchResult = new ImageSearchResult();
+            imageSearchResult.setThumbUrl(StrUtil.blankToDefault(resultPicture.getThumbnailUrl(), resultPicture.getUrl()));
+            imageSearchResult.setFromUrl(resultPicture.getUrl());
+            imageSearchResult.setPictureId(resultPicture.getId());
+            imageSearchResult.setDistance(similarPicture.getDistance());
+            resultList.add(imageSearchResult);
+        }
+        return resultList;
+    }
+
+    /**
+     * 按颜色搜图：内存中的主色调索引检索，不读取图片内容
+     *
+     * @param spaceId  空间 id（公共图库为 null）
+     * @param picColor 目标颜色（#RRGGBB）
+     * @return 图片
+     */
+    @Override
+    public List<PictureVO> searchPictureByColor(Long spaceId, String picColor) {
+        Integer rgb = DominantColorUtils.parseColor(picColor);
+        ThrowUtils.throwIf(rgb == null, ErrorCode.PARAMS_ERROR, "颜色格式错误");
+        return pictureSimilarManager.searchByColor(spaceId, rgb).stream()
+                .map(PictureVO::objToVo)
+                .collect(Collectors.toList());
+    }
+
     /**
      * 图片审核
      *
@@ -495,6 +686,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         updatePicture.setReviewTime(new Date());
         boolean result = this.updateById(updatePicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片审核异常");
+        pictureListCacheManager.invalidate(oldPicture.getSpaceId());
     }
 
     /**
@@ -539,75 +731,18 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             namePrefix = searchText;
         }
 
-        // 添加抓取地址
-        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
-        // 请求抓取地址
-        Document document;
-        try {
-            document = Jsoup.connect(fetchUrl).get();
-        } catch (IOException e) {
-            log.error("获取页面失败：", e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
-        }
-
-        /* 得到页面，获取页面的图片元素 */
-        Element div = document.getElementsByClass("dgControl").first(); // 获取到页面的外层元素
-        if (ObjUtil.isNull(div)) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面元素失败");
-        }
-//        Elements imgElementList = div.select("img.mimg"); // 获取到内层元素的图片
-        Elements imgElementList = div.select(".iusc"); // 获取到内层元素的图片
-
-        /* 校验并且保存图片 */
-        int uploadCount = 0; // 记录上传的图片
-        for (Element imgElement : imgElementList) {
-            // 获取到标签内的图片地址
-//            String fileUrl = imgElement.attr("src");
-
-            /* 修改获取原始高清图片*/
-            String dataM = imgElement.attr("m");
-            String fileUrl;
-            try {
-                // 解析JSON字符串
-                JSONObject jsonObject = JSONUtil.parseObj(dataM);
-                // 获取 murl 字段（原始图片URL）
-                fileUrl = jsonObject.getStr("murl");
-            } catch (Exception e) {
-                log.error("解析图片数据失败", e);
-                continue;
-            }
-
-            // 判断是否存在，不存在则跳过
-            if (StrUtil.isBlank(fileUrl)) {
-                log.info("当前连接为空, 已经跳过：{}", fileUrl);
-                continue;
-            }
-            // 处理上传的图片地址，去除多余参数，防止上传时转义
-            int questionMarkIndex = fileUrl.indexOf("?"); // 获取 ？ 所在的索引
-            if (questionMarkIndex > -1) {
-                fileUrl = fileUrl.substring(0, questionMarkIndex); // 获取到第一个到 ？ 索引处
-            }
-            /* 上传图片 */
+        /* 搜索图片并并发下载、上传，成功数达到目标后立即停止 */
+        String finalNamePrefix = namePrefix;
+        PictureCrawlResult crawlResult = pictureCrawlManager.crawl(searchText, count, (fileUrl, sequence) -> {
             PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
             // 设置图片名称
-            if (StrUtil.isNotBlank(namePrefix)) {
-                pictureUploadRequest.setPicName(namePrefix + (uploadCount + 1));
-            }
-            try {
-                // 上传图片
-                PictureVO pictureVO = this.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
-                log.info("图片上传成功：id = {}", pictureVO.getId());
-                uploadCount++;
-            } catch (Exception e) {
-                log.error("图片上传失败", e);
-                continue;
-            }
-            /* 如果上传的图片达到了需要的数量，停止循环 */
-            if (uploadCount >= count) {
-                break;
-            }
-        }
-        return uploadCount;
+            pictureUploadRequest.setPicName(finalNamePrefix + sequence);
+            // 上传图片
+            PictureVO pictureVO = this.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
+            log.info("图片上传成功：id = {}", pictureVO.getId());
+            return pictureVO.getId();
+        });
+        return crawlResult.getSuccessCount();
     }
 
     @Override
@@ -625,19 +760,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             // 操作数据库
             boolean result = this.removeById(pictureId);
             ThrowUtils.throwIf(!result, ErrorCode.SYSTEM_ERROR, "图片删除异常");
-            // 更新空间操作的额度
-            Long spaceId = oldPicture.getSpaceId();
-            if (spaceId != null) {
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, oldPicture.getSpaceId())
-                        .setSql("totalSize = totalSize - " + oldPicture.getPicSize())
-                        .setSql("totalCount = totalCount - 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "空间额度更新失败");
-            }
+            // 事务提交后异步回收图片文件（仍被其他图片引用的文件会保留）
+            storageReclaimManager.reclaim(Arrays.asList(oldPicture.getUrl(),
+                    oldPicture.getThumbnailUrl(), oldPicture.getPreviewUrl()));
             return true;
         });
-        // todo 异步清理文件待实现
+        // 事务提交后释放空间额度
+        if (oldPicture.getSpaceId() != null) {
+            spaceQuotaManager.release(oldPicture.getSpaceId(), 1, ObjUtil.defaultIfNull(oldPicture.getPicSize(), 0L));
+        }
+        pictureListCacheManager.invalidate(oldPicture.getSpaceId());
     }
 
     @Override
@@ -662,6 +794,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 操作数据库
         boolean result = this.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureListCacheManager.invalidate(oldPicture.getSpaceId());
     }
 
     @Override
@@ -709,6 +842,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 6. 批量更新
         boolean result = this.updateBatchById(pictureList);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 事务提交后使空间的列表缓存失效
+        pictureListCacheManager.invalidate(spaceId);
     }
 
     /**
@@ -0,0 +1,94 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.manager.similar.PictureColorIndex;
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils;
+import com.alan.alanpicturebackend.manager.utils.DominantColorUtils.DominantColor;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 主色调提取与颜色索引测试
+ * @Date: 2025/10/22 14:00
+ */
+public class DominantColorTest {
+
+    @Test
+    public void extractDominantColors() {
+        BufferedImage image = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(0x2060C0));
+        graphics.fillRect(0, 0, 700, 800);
+        graphics.setColor(new Color(0xF0D020));
+        graphics.fillRect(700, 0, 300, 800);
+        graphics.dispose();
+
+        List<DominantColor> colorList = DominantColorUtils.extract(image);
+        assertEquals(2, colorList.size());
+        assertTrue(DominantColorUtils.distance(0x2060C0, colorList.get(0).getRgb()) < 10);
+        assertTrue(Math.abs(colorList.get(0).getPercent() - 70) <= 2);
+        assertTrue(DominantColorUtils.distance(0xF0D020, colorList.get(1).getRgb()) < 10);
+
+        String signature = DominantColorUtils.toSignature(colorList);
+        assertTrue(signature.length() <= 64);
+        List<DominantColor> parsedList = DominantColorUtils.parseSignature(signature);
+        assertEquals(colorList.size(), parsedList.size());
+        for (int i = 0; i < colorList.size(); i++) {
+            assertEquals(colorList.get(i).getRgb(), parsedList.get(i).getRgb());
+            assertEquals(colorList.get(i).getPercent(), parsedList.get(i).getPercent());
+        }
+        assertEquals(Integer.valueOf(0x2060C0), DominantColorUtils.parseColor("#2060c0"));
+        assertNull(DominantColorUtils.parseColor("#2060c"));
+    }
+
+    @Test
+    public void searchMatchesBruteForce() {
+        Random random = new Random(5);
+        PictureColorIndex index = new PictureColorIndex();
+        Map<Long, String> signatureMap = new HashMap<>();
+        for (long id = 1; id <= 3000; id++) {
+            List<DominantColor> colorList = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(3); i++) {
+                colorList.add(new DominantColor(random.nextInt(0x1000000), 5 + random.nextInt(60)));
+            }
+            String signature = DominantColorUtils.toSignature(colorList);
+            Long spaceId = id % 3 == 0 ? 1L : null;
+            index.put(id, signature, spaceId);
+            if (spaceId == null) {
+                signatureMap.put(id, signature);
+            }
+        }
+        // 删除和更新
+        for (long id = 1; id <= 90; id++) {
+            index.remove(id);
+            signatureMap.remove(id);
+        }
+        index.put(100L, "ff0000:80", null);
+        signatureMap.put(100L, "ff0000:80");
+
+        for (int rgb : new int[]{0xFF0000, 0x808080, 0x10E0A0}) {
+            Set<Long> expected = new HashSet<>();
+            for (Map.Entry<Long, String> entry : signatureMap.entrySet()) {
+                if (PictureColorIndex.score(rgb, entry.getValue(), 80) > 0) {
+                    expected.add(entry.getKey());
+                }
+            }
+            List<PictureColorIndex.Match> matchList = index.search(null, rgb, 80);
+            Set<Long> actual = new HashSet<>();
+            double lastScore = Double.MAX_VALUE;
+            for (PictureColorIndex.Match match : matchList) {
+                actual.add(match.getPictureId());
+                assertTrue(match.getScore() <= lastScore);
+                lastScore = match.getScore();
+            }
+            assertEquals(expected, actual);
+        }
+        assertEquals(100L, index.search(null, 0xFF0000, 80).get(0).getPictureId());
+    }
+}
@@ -0,0 +1,110 @@
+package com.alan.alanpicturebackend;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.alan.alanpicturebackend.config.LocalStorageConfig;
+import com.alan.alanpicturebackend.manager.storage.LocalObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.model.ObjectSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 本地文件系统对象存储测试
+ * @Date: 2025/10/18 17:30
+ */
+public class LocalObjectStorageTest {
+
+    private Path root;
+
+    private LocalObjectStorage localObjectStorage;
+
+    @BeforeEach
+    public void init() throws IOException {
+        root = Files.createTempDirectory("localStorage");
+        LocalStorageConfig localStorageConfig = new LocalStorageConfig();
+        localStorageConfig.setRoot(root.toString());
+        localObjectStorage = new LocalObjectStorage();
+        ReflectionTestUtils.setField(localObjectStorage, "localStorageConfig", localStorageConfig);
+        localObjectStorage.init();
+    }
+
+    @AfterEach
+    public void clean() {
+        FileUtil.del(root);
+    }
+
+    @Test
+    public void putGetAndDelete() throws IOException {
+        byte[] data = "hello picture".getBytes(StandardCharsets.UTF_8);
+        localObjectStorage.putObject("/public/1/a.jpg", new ByteArrayInputStream(data), data.length);
+
+        try (InputStream inputStream = localObjectStorage.getObject("/public/1/a.jpg")) {
+            assertArrayEquals(data, IoUtil.readBytes(inputStream));
+        }
+        ObjectSummary objectSummary = localObjectStorage.headObject("public/1/a.jpg");
+        assertNotNull(objectSummary);
+        assertEquals("public/1/a.jpg", objectSummary.getKey());
+        assertEquals(data.length, objectSummary.getSize());
+
+        localObjectStorage.deleteObject("/public/1/a.jpg");
+        assertNull(localObjectStorage.headObject("/public/1/a.jpg"));
+    }
+
+    @Test
+    public void copyObject() throws IOException {
+        byte[] data = "hello picture".getBytes(StandardCharsets.UTF_8);
+        localObjectStorage.putObject("/public/1/a.jpg", new ByteArrayInputStream(data), data.length);
+        localObjectStorage.copyObject("public/1/a.jpg", "quarantine/public/1/a.jpg");
+
+        try (InputStream inputStream = localObjectStorage.getObject("quarantine/public/1/a.jpg")) {
+            assertArrayEquals(data, IoUtil.readBytes(inputStream));
+        }
+        assertNotNull(localObjectStorage.headObject("/public/1/a.jpg"));
+    }
+
+    @Test
+    public void listByPrefixWithMarker() {
+        for (String key : Arrays.asList("/space/1/c.png", "/space/1/a.png", "/space/1/b.png", "/space/2/a.png")) {
+            localObjectStorage.putObject(key, new ByteArrayInputStream(new byte[1]), 1);
+        }
+        List<ObjectSummary> firstPage = localObjectStorage.listObjects("/space/1/", null, 2);
+        assertEquals(2, firstPage.size());
+        assertEquals("space/1/a.png", firstPage.get(0).getKey());
+        assertEquals("space/1/b.png", firstPage.get(1).getKey());
+        List<ObjectSummary> secondPage = localObjectStorage.listObjects("/space/1/", firstPage.get(1).getKey(), 2);
+        assertEquals(1, secondPage.size());
+        assertEquals("space/1/c.png", secondPage.get(0).getKey());
+
+        localObjectStorage.deleteObjects(Arrays.asList("/space/1/a.png", "/space/1/b.png", "/space/1/c.png"));
+        assertTrue(localObjectStorage.listObjects("/space/1/", null, 10).isEmpty());
+    }
+
+    @Test
+    public void multipartUpload() throws IOException {
+        byte[] part1 = "part-1|".getBytes(StandardCharsets.UTF_8);
+        byte[] part2 = "part-2".getBytes(StandardCharsets.UTF_8);
+        String uploadId = localObjectStorage.initiateMultipartUpload("/chunk/1/a.jpg");
+        // 分块可以乱序上传
+        String eTag2 = localObjectStorage.uploadPart("/chunk/1/a.jpg", uploadId, 2, new ByteArrayInputStream(part2), part2.length);
+        String eTag1 = localObjectStorage.uploadPart("/chunk/1/a.jpg", uploadId, 1, new ByteArrayInputStream(part1), part1.length);
+        localObjectStorage.completeMultipartUpload("/chunk/1/a.jpg", uploadId, Arrays.asList(eTag1, eTag2));
+
+        try (InputStream inputStream = localObjectStorage.getObject("/chunk/1/a.jpg")) {
+            assertEquals("part-1|part-2", IoUtil.read(inputStream, StandardCharsets.UTF_8));
+        }
+    }
+}
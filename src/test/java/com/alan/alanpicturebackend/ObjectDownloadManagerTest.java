@@ -0,0 +1,152 @@
+package com.alan.alanpicturebackend;
+
+import cn.hutool.core.io.FileUtil;
+import com.alan.alanpicturebackend.config.LocalStorageConfig;
+import com.alan.alanpicturebackend.config.StorageDownloadConfig;
+import com.alan.alanpicturebackend.manager.storage.LocalObjectStorage;
+import com.alan.alanpicturebackend.manager.storage.ObjectDownloadManager;
+import com.alan.alanpicturebackend.manager.storage.model.ByteRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: Range、ETag 文件下载测试
+ * @Date: 2025/10/24 14:00
+ */
+public class ObjectDownloadManagerTest {
+
+    private static final String KEY = "/public/1/a.jpg";
+
+    private Path root;
+
+    private byte[] data;
+
+    private LocalObjectStorage localObjectStorage;
+
+    private ObjectDownloadManager objectDownloadManager;
+
+    @BeforeEach
+    public void init() throws IOException {
+        root = Files.createTempDirectory("download");
+        LocalStorageConfig localStorageConfig = new LocalStorageConfig();
+        localStorageConfig.setRoot(root.toString());
+        localObjectStorage = new LocalObjectStorage();
+        ReflectionTestUtils.setField(localObjectStorage, "localStorageConfig", localStorageConfig);
+        localObjectStorage.init();
+        data = new byte[300_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        localObjectStorage.putObject(KEY, new ByteArrayInputStream(data), data.length);
+
+        StorageDownloadConfig storageDownloadConfig = new StorageDownloadConfig();
+        objectDownloadManager = new ObjectDownloadManager();
+        ReflectionTestUtils.setField(objectDownloadManager, "objectStorage", localObjectStorage);
+        ReflectionTestUtils.setField(objectDownloadManager, "storageDownloadConfig", storageDownloadConfig);
+    }
+
+    @AfterEach
+    public void clean() {
+        FileUtil.del(root);
+    }
+
+    @Test
+    public void parseRange() {
+        assertEquals(new ByteRange(0, 99), ByteRange.parse("bytes=0-99", 1000));
+        assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=900-", 1000));
+        assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=-100", 1000));
+        assertEquals(new ByteRange(0, 999), ByteRange.parse("bytes=-5000", 1000));
+        assertEquals(new ByteRange(500, 999), ByteRange.parse("bytes=500-5000", 1000));
+        assertFalse(ByteRange.parse("bytes=1000-", 1000).isSatisfiable(1000));
+        assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+        assertNull(ByteRange.parse("bytes=9-3", 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse(null, 1000));
+    }
+
+    @Test
+    public void downloadWithRangeAndETag() throws IOException {
+        MockHttpServletResponse fullResponse = download(new MockHttpServletRequest());
+        assertEquals(200, fullResponse.getStatus());
+        assertArrayEquals(data, fullResponse.getContentAsByteArray());
+        assertEquals("bytes", fullResponse.getHeader("Accept-Ranges"));
+        String eTag = fullResponse.getHeader("ETag");
+        assertNotNull(eTag);
+
+        MockHttpServletRequest rangeRequest = new MockHttpServletRequest();
+        rangeRequest.addHeader("Range", "bytes=1000-1999");
+        MockHttpServletResponse rangeResponse = download(rangeRequest);
+        assertEquals(206, rangeResponse.getStatus());
+        assertEquals("bytes 1000-1999/" + data.length, rangeResponse.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), rangeResponse.getContentAsByteArray());
+
+        MockHttpServletRequest conditionalRequest = new MockHttpServletRequest();
+        conditionalRequest.addHeader("If-None-Match", eTag);
+        MockHttpServletResponse notModifiedResponse = download(conditionalRequest);
+        assertEquals(304, notModifiedResponse.getStatus());
+        assertEquals(0, notModifiedResponse.getContentAsByteArray().length);
+
+        // If-Range 不匹配时返回完整文件
+        MockHttpServletRequest staleRangeRequest = new MockHttpServletRequest();
+        staleRangeRequest.addHeader("Range", "bytes=0-9");
+        staleRangeRequest.addHeader("If-Range", "\"stale\"");
+        assertEquals(200, download(staleRangeRequest).getStatus());
+
+        MockHttpServletRequest invalidRangeRequest = new MockHttpServletRequest();
+        invalidRangeRequest.addHeader("Range", "bytes=" + data.length + "-");
+        MockHttpServletResponse invalidRangeResponse = download(invalidRangeRequest);
+        assertEquals(416, invalidRangeResponse.getStatus());
+        assertEquals("bytes */" + data.length, invalidRangeResponse.getHeader("Content-Range"));
+    }
+
+    @Test
+    public void sendfileWhenSupported() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=-100");
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals((long) data.length - 100, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) data.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    public void streamRemoteObjectInChunks() throws IOException {
+        // 模拟远程对象存储：不提供本地路径，按 Range 读取
+        LocalObjectStorage remoteStorage = new LocalObjectStorage() {
+            @Override
+            public Path getLocalPath(String key) {
+                return null;
+            }
+        };
+        ReflectionTestUtils.setField(remoteStorage, "root", ReflectionTestUtils.getField(localObjectStorage, "root"));
+        ReflectionTestUtils.setField(objectDownloadManager, "objectStorage", remoteStorage);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100000-");
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(data, 100000, data.length), response.getContentAsByteArray());
+        assertArrayEquals(data, download(new MockHttpServletRequest()).getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        objectDownloadManager.downloadObject(KEY, "image/jpeg", "a.jpg", request, response);
+        return response;
+    }
+}
@@ -0,0 +1,88 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.manager.similar.PerceptualHashIndex;
+import com.alan.alanpicturebackend.manager.utils.PerceptualHashUtils;
+import net.coobird.thumbnailator.Thumbnails;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 感知哈希与 BK 树索引测试
+ * @Date: 2025/10/21 16:00
+ */
+public class PerceptualHashTest {
+
+    @Test
+    public void similarImagesHaveCloseHashes() throws IOException {
+        BufferedImage image = createImage(1600, 1200, 1);
+        BufferedImage thumbnail = Thumbnails.of(image).size(256, 256).asBufferedImage();
+        BufferedImage other = createImage(1600, 1200, 2);
+
+        long hash = PerceptualHashUtils.dHash(image);
+        assertTrue(PerceptualHashUtils.distance(hash, PerceptualHashUtils.dHash(thumbnail)) <= 4);
+        assertTrue(PerceptualHashUtils.distance(hash, PerceptualHashUtils.dHash(other)) > 10);
+    }
+
+    @Test
+    public void searchMatchesBruteForce() {
+        Random random = new Random(3);
+        PerceptualHashIndex index = new PerceptualHashIndex();
+        Map<Long, Long> hashMap = new HashMap<>();
+        long base = random.nextLong();
+        for (long id = 1; id <= 5000; id++) {
+            // 一半为 base 附近的哈希，保证有足够多的近邻
+            long hash = id % 2 == 0 ? base ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64)) : random.nextLong();
+            hashMap.put(id, hash);
+            index.put(id, hash, null);
+        }
+        // 删除和更新
+        for (long id = 1; id <= 100; id++) {
+            index.remove(id);
+            hashMap.remove(id);
+        }
+        index.put(200L, base, 1L);
+        hashMap.put(200L, base);
+
+        for (int maxDistance : new int[]{0, 2, 8}) {
+            Set<Long> expected = new HashSet<>();
+            for (Map.Entry<Long, Long> entry : hashMap.entrySet()) {
+                if (PerceptualHashUtils.distance(base, entry.getValue()) <= maxDistance) {
+                    expected.add(entry.getKey());
+                }
+            }
+            List<PerceptualHashIndex.Match> matchList = index.search(base, maxDistance);
+            Set<Long> actual = new HashSet<>();
+            int lastDistance = 0;
+            for (PerceptualHashIndex.Match match : matchList) {
+                actual.add(match.getPictureId());
+                assertTrue(match.getDistance() >= lastDistance);
+                lastDistance = match.getDistance();
+            }
+            assertEquals(expected, actual);
+        }
+        for (PerceptualHashIndex.Match match : index.search(base, 0)) {
+            assertEquals(match.getPictureId() == 200L ? Long.valueOf(1L) : null, match.getSpaceId());
+        }
+        assertEquals(hashMap.size(), index.size());
+    }
+
+    private BufferedImage createImage(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(seed);
+        for (int i = 0; i < 30; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillRect(random.nextInt(width), random.nextInt(height), 100 + random.nextInt(600), 100 + random.nextInt(600));
+        }
+        graphics.dispose();
+        return image;
+    }
+}
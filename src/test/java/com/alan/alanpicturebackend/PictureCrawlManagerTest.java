@@ -0,0 +1,111 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.config.PictureCrawlConfig;
+import com.alan.alanpicturebackend.manager.crawl.PictureCrawlManager;
+import com.alan.alanpicturebackend.manager.crawl.model.PictureCrawlItemResult;
+import com.alan.alanpicturebackend.manager.crawl.model.PictureCrawlResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 批量抓取调度测试（并发上限、单站点上限、去重、达到目标后停止）
+ * @Date: 2025/10/21 16:00
+ */
+public class PictureCrawlManagerTest {
+
+    private final PictureCrawlConfig pictureCrawlConfig = new PictureCrawlConfig();
+
+    private final PictureCrawlManager pictureCrawlManager = new PictureCrawlManager();
+
+    private ThreadPoolExecutor pictureCrawlExecutor;
+
+    @BeforeEach
+    public void initPictureCrawlManager() {
+        pictureCrawlConfig.setConcurrency(4);
+        pictureCrawlConfig.setPerHostConcurrency(2);
+        pictureCrawlExecutor = pictureCrawlConfig.pictureCrawlExecutor();
+        ReflectionTestUtils.setField(pictureCrawlManager, "pictureCrawlConfig", pictureCrawlConfig);
+        ReflectionTestUtils.setField(pictureCrawlManager, "pictureCrawlExecutor", pictureCrawlExecutor);
+        ReflectionTestUtils.setField(pictureCrawlManager, "meterRegistry", new SimpleMeterRegistry());
+        pictureCrawlManager.init();
+    }
+
+    @AfterEach
+    public void shutdownExecutor() {
+        pictureCrawlExecutor.shutdownNow();
+    }
+
+    @Test
+    public void stopAtTargetWithinLimits() {
+        List<String> fileUrlList = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            fileUrlList.add(String.format("https://host%d.example.com/%d.jpg", i % 3, i));
+        }
+        // 重复地址只处理一次
+        fileUrlList.add(fileUrlList.get(0));
+        Map<String, AtomicInteger> hostInFlightMap = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger maxHostInFlight = new AtomicInteger();
+        Set<String> handledUrlSet = ConcurrentHashMap.newKeySet();
+
+        PictureCrawlResult result = new PictureCrawlResult();
+        pictureCrawlManager.crawl(fileUrlList, 10, (fileUrl, sequence) -> {
+            assertTrue(handledUrlSet.add(fileUrl));
+            String host = fileUrl.substring(8, fileUrl.indexOf('/', 8));
+            AtomicInteger hostInFlight = hostInFlightMap.computeIfAbsent(host, key -> new AtomicInteger());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            maxHostInFlight.accumulateAndGet(hostInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                // 每 3 张失败 1 张
+                if (fileUrl.hashCode() % 3 == 0) {
+                    throw new IllegalStateException("下载失败");
+                }
+                return (long) sequence;
+            } finally {
+                hostInFlight.decrementAndGet();
+                inFlight.decrementAndGet();
+            }
+        }, result);
+
+        assertEquals(10, result.getSuccessCount());
+        assertEquals(40, result.getCandidateCount());
+        assertTrue(maxInFlight.get() <= 4);
+        assertTrue(maxHostInFlight.get() <= 2);
+        // 成功的序号连续
+        List<Integer> sequenceList = result.getItemList().stream()
+                .filter(PictureCrawlItemResult::isSuccess)
+                .map(PictureCrawlItemResult::getSequence)
+                .sorted()
+                .collect(Collectors.toList());
+        for (int i = 0; i < sequenceList.size(); i++) {
+            assertEquals(i + 1, sequenceList.get(i));
+        }
+        assertEquals(result.getSuccessCount() + result.getFailedCount(), handledUrlSet.size());
+    }
+
+    @Test
+    public void stopWhenCandidatesExhausted() {
+        PictureCrawlResult result = new PictureCrawlResult();
+        pictureCrawlManager.crawl(Arrays.asList("https://a.example.com/1.jpg", "https://a.example.com/2.jpg"), 5,
+                (fileUrl, sequence) -> {
+                    throw new IllegalStateException("下载失败");
+                }, result);
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailedCount());
+        assertEquals(2, result.getItemList().size());
+    }
+}
@@ -0,0 +1,31 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.model.dto.picture.PictureCursor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 游标分页游标编码测试
+ * @Date: 2025/10/26 11:00
+ */
+public class PictureCursorTest {
+
+    @Test
+    public void encodeAndParse() {
+        PictureCursor cursor = new PictureCursor("createTime", false, 1729900000000L, 1850000000000000001L);
+        String encoded = cursor.encode();
+        // 可直接放在 url 参数中
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, PictureCursor.parse(encoded));
+    }
+
+    @Test
+    public void rejectInvalidCursor() {
+        assertNull(PictureCursor.parse(null));
+        assertNull(PictureCursor.parse("not-a-cursor"));
+        assertNull(PictureCursor.parse(new PictureCursor("picSize", true, 1, 1).encode()));
+        assertNull(PictureCursor.parse(new PictureCursor("createTime", true, 1, 1).encode().substring(4)));
+    }
+}
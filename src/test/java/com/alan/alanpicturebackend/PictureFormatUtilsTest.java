@@ -0,0 +1,49 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.manager.utils.PictureFormatUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author alan
+ * @Description: 按文件头魔数识别图片格式测试
+ * @Date: 2025/10/21 11:00
+ */
+public class PictureFormatUtilsTest {
+
+    @Test
+    public void detectImageFormat() throws IOException {
+        assertEquals("jpg", detect(encode("jpg")));
+        assertEquals("png", detect(encode("png")));
+        assertEquals("webp", detect("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void rejectNonImage() throws IOException {
+        assertNull(detect("<html><body></body></html>".getBytes(StandardCharsets.UTF_8)));
+        assertNull(detect("GIF89a".getBytes(StandardCharsets.ISO_8859_1)));
+        assertNull(detect(new byte[]{(byte) 0xFF}));
+        assertNull(detect(new byte[0]));
+    }
+
+    private String detect(byte[] data) throws IOException {
+        byte[] header = new byte[PictureFormatUtils.HEADER_LENGTH];
+        int headerLength = PictureFormatUtils.readHeader(new ByteArrayInputStream(data), header);
+        return PictureFormatUtils.detectFormat(header, headerLength);
+    }
+
+    private byte[] encode(String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), format, outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.manager.utils.ExifOrientationUtils;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author alan
+ * @Description: 图片头部信息（尺寸、格式、EXIF 方向）读取测试
+ * @Date: 2025/10/20 11:05
+ */
+public class PictureMetadataTest {
+
+    private final PictureProcessUtils pictureProcessUtils = new PictureProcessUtils();
+
+    @BeforeEach
+    public void initPictureProcessUtils() {
+        ReflectionTestUtils.setField(pictureProcessUtils, "pictureProcessConfig", new PictureProcessConfig());
+    }
+
+    @Test
+    public void readOrientedJpegInfo() throws IOException {
+        PictureProcessResult result = readPictureInfo(withOrientation(jpeg(40, 20), 6));
+        assertEquals(6, result.getOrientation());
+        assertEquals(20, result.getPicWidth());
+        assertEquals(40, result.getPicHeight());
+        assertEquals("jpg", result.getPicFormat());
+    }
+
+    @Test
+    public void readPlainJpegInfo() throws IOException {
+        PictureProcessResult result = readPictureInfo(jpeg(40, 20));
+        assertEquals(ExifOrientationUtils.NORMAL, result.getOrientation());
+        assertEquals(40, result.getPicWidth());
+        assertEquals(20, result.getPicHeight());
+    }
+
+    @Test
+    public void applyOrientation() {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, Color.RED.getRGB());
+        // 顺时针旋转 90 度后，左上角移动到右上角
+        BufferedImage rotated = ExifOrientationUtils.applyOrientation(image, 6);
+        assertEquals(2, rotated.getWidth());
+        assertEquals(4, rotated.getHeight());
+        assertEquals(Color.RED.getRGB(), rotated.getRGB(1, 0));
+        // 逆时针旋转 90 度后，左上角移动到左下角
+        rotated = ExifOrientationUtils.applyOrientation(image, 8);
+        assertEquals(Color.RED.getRGB(), rotated.getRGB(0, 3));
+    }
+
+    private PictureProcessResult readPictureInfo(byte[] data) throws IOException {
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            return pictureProcessUtils.readPictureInfo(imageInputStream);
+        }
+    }
+
+    private byte[] jpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 在 APP0（JFIF）段之后插入只包含方向标记的 APP1（Exif）段
+     */
+    private byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                'E', 'x', 'i', 'f', 0, 0,
+                // TIFF 头：大端序，IFD0 偏移 8
+                'M', 'M', 0, 0x2A, 0, 0, 0, 8,
+                // IFD0：1 个条目，方向（0x0112，SHORT，1 个值）
+                0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                // 无下一个 IFD
+                0, 0, 0, 0
+        };
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(jpeg, 0, app0End);
+        outputStream.write(0xFF);
+        outputStream.write(0xE1);
+        outputStream.write((app1.length + 2) >> 8);
+        outputStream.write((app1.length + 2) & 0xFF);
+        outputStream.write(app1, 0, app1.length);
+        outputStream.write(jpeg, app0End, jpeg.length - app0End);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.exception.BusinessException;
+import com.alan.alanpicturebackend.manager.utils.PictureDecodeBudget;
+import com.alan.alanpicturebackend.manager.utils.PictureProcessUtils;
+import com.alan.alanpicturebackend.manager.utils.WebPEncoderPool;
+import com.alan.alanpicturebackend.model.dto.file.PictureProcessResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 降采样解码与像素预算测试
+ * @Date: 2025/10/19 16:10
+ */
+public class PictureSubsamplingTest {
+
+    @Test
+    public void computeSubsampling() {
+        assertEquals(1, PictureProcessUtils.computeSubsampling(800, 600, 2048));
+        assertEquals(1, PictureProcessUtils.computeSubsampling(4000, 3000, 2048));
+        assertEquals(4, PictureProcessUtils.computeSubsampling(8192, 100, 2048));
+    }
+
+    @Test
+    public void subsampleAndReleaseBudget() throws IOException {
+        PictureProcessConfig pictureProcessConfig = new PictureProcessConfig();
+        pictureProcessConfig.setPreviewMaxSize(300);
+        PictureDecodeBudget pictureDecodeBudget = new PictureDecodeBudget(10_000_000L, 1000);
+        PictureProcessUtils pictureProcessUtils = newPictureProcessUtils(pictureProcessConfig, pictureDecodeBudget);
+
+        byte[] original = png(1300, 700);
+        ByteArrayOutputStream previewOutput = new ByteArrayOutputStream();
+        PictureProcessResult result;
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+            result = pictureProcessUtils.processPicture(imageInputStream, new ByteArrayOutputStream(), "png", previewOutput);
+        }
+        // 返回原图尺寸，而不是降采样后的尺寸
+        assertEquals(1300, result.getPicWidth());
+        assertEquals(700, result.getPicHeight());
+        BufferedImage preview = ImageIO.read(new ByteArrayInputStream(previewOutput.toByteArray()));
+        assertTrue(Math.max(preview.getWidth(), preview.getHeight()) <= 300);
+        assertEquals(pictureDecodeBudget.getTotalPermits(), pictureDecodeBudget.availablePermits());
+    }
+
+    @Test
+    public void rejectOverBudget() throws IOException {
+        PictureProcessConfig pictureProcessConfig = new PictureProcessConfig();
+        PictureDecodeBudget pictureDecodeBudget = new PictureDecodeBudget(100 * 1024L, 10);
+        PictureProcessUtils pictureProcessUtils = newPictureProcessUtils(pictureProcessConfig, pictureDecodeBudget);
+
+        byte[] original = png(1000, 1000);
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+            assertThrows(BusinessException.class, () -> pictureProcessUtils.processPicture(imageInputStream,
+                    new ByteArrayOutputStream(), "png", new ByteArrayOutputStream()));
+        }
+        assertEquals(pictureDecodeBudget.getTotalPermits(), pictureDecodeBudget.availablePermits());
+    }
+
+    @Test
+    public void writeVariant() throws IOException {
+        PictureProcessConfig pictureProcessConfig = new PictureProcessConfig();
+        PictureDecodeBudget pictureDecodeBudget = new PictureDecodeBudget(10_000_000L, 1000);
+        PictureProcessUtils pictureProcessUtils = newPictureProcessUtils(pictureProcessConfig, pictureDecodeBudget);
+
+        byte[] original = png(1300, 700);
+        for (String format : new String[]{"webp", "jpg", "png"}) {
+            ByteArrayOutputStream variantOutput = new ByteArrayOutputStream();
+            try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+                pictureProcessUtils.writeVariant(imageInputStream, 320, format, variantOutput);
+            }
+            BufferedImage variant = ImageIO.read(new ByteArrayInputStream(variantOutput.toByteArray()));
+            assertEquals(320, variant.getWidth());
+            assertEquals(172, variant.getHeight(), 1);
+        }
+        // 不放大
+        ByteArrayOutputStream variantOutput = new ByteArrayOutputStream();
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+            pictureProcessUtils.writeVariant(imageInputStream, 4000, "png", variantOutput);
+        }
+        assertEquals(1300, ImageIO.read(new ByteArrayInputStream(variantOutput.toByteArray())).getWidth());
+        assertEquals(pictureDecodeBudget.getTotalPermits(), pictureDecodeBudget.availablePermits());
+    }
+
+    private PictureProcessUtils newPictureProcessUtils(PictureProcessConfig pictureProcessConfig, PictureDecodeBudget pictureDecodeBudget) {
+        PictureProcessUtils pictureProcessUtils = new PictureProcessUtils();
+        ReflectionTestUtils.setField(pictureProcessUtils, "pictureProcessConfig", pictureProcessConfig);
+        ReflectionTestUtils.setField(pictureProcessUtils, "webPEncoderPool",
+                new WebPEncoderPool(pictureProcessConfig, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(pictureProcessUtils, "pictureDecodeBudget", pictureDecodeBudget);
+        return pictureProcessUtils;
+    }
+
+    private byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.alan.alanpicturebackend;
+
+import cn.hutool.core.io.IoUtil;
+import com.alan.alanpicturebackend.manager.upload.PictureUploadBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 上传缓冲区测试
+ * @Date: 2025/10/17 15:10
+ */
+public class PictureUploadBufferTest {
+
+    @Test
+    public void keepSmallDataInMemory() throws IOException {
+        byte[] data = new byte[1024];
+        try (PictureUploadBuffer buffer = new PictureUploadBuffer(4096, "jpg")) {
+            try (OutputStream outputStream = buffer.getOutputStream()) {
+                outputStream.write(data);
+            }
+            assertTrue(buffer.isInMemory());
+            assertEquals(data.length, buffer.size());
+            try (InputStream inputStream = buffer.openInputStream()) {
+                assertArrayEquals(data, IoUtil.readBytes(inputStream));
+            }
+        }
+    }
+
+    @Test
+    public void spillToDiskAboveThreshold() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        try (PictureUploadBuffer buffer = new PictureUploadBuffer(4096, "jpg")) {
+            try (OutputStream outputStream = buffer.getOutputStream()) {
+                outputStream.write(data, 0, 3000);
+                outputStream.write(data, 3000, 7000);
+            }
+            assertFalse(buffer.isInMemory());
+            assertEquals(data.length, buffer.size());
+            // 可以重复读取
+            for (int i = 0; i < 2; i++) {
+                try (InputStream inputStream = buffer.openInputStream()) {
+                    assertArrayEquals(data, IoUtil.readBytes(inputStream));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.manager.variant.PictureVariantCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: 多尺寸图片本地磁盘缓存测试
+ * @Date: 2025/10/23 14:00
+ */
+public class PictureVariantCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PictureVariantCache cache = new PictureVariantCache(cacheDir, 300, meterRegistry);
+        cache.getOrCreate("a", outputStream -> outputStream.write(new byte[100]));
+        cache.getOrCreate("b", outputStream -> outputStream.write(new byte[100]));
+        cache.getOrCreate("c", outputStream -> outputStream.write(new byte[100]));
+        // 访问 a 后，b 成为最久未访问的文件
+        cache.getOrCreate("a", outputStream -> fail("应命中缓存"));
+        cache.getOrCreate("d", outputStream -> outputStream.write(new byte[100]));
+
+        assertEquals(300, cache.getTotalBytes());
+        assertFalse(Files.exists(cacheDir.resolve("b")));
+        assertTrue(Files.exists(cacheDir.resolve("a")));
+        assertEquals(1, meterRegistry.get("picture.variant.evictions").counter().count());
+        assertEquals(1, meterRegistry.get("picture.variant.requests").tag("result", "hit").counter().count());
+
+        // 重启后从目录恢复索引，临时文件被清理
+        Files.write(cacheDir.resolve("e.123.tmp"), new byte[10]);
+        PictureVariantCache reloadedCache = new PictureVariantCache(cacheDir, 300, new SimpleMeterRegistry());
+        assertEquals(3, reloadedCache.size());
+        assertEquals(300, reloadedCache.getTotalBytes());
+        assertFalse(Files.exists(cacheDir.resolve("e.123.tmp")));
+    }
+
+    @Test
+    public void coalesceConcurrentGeneration() throws Exception {
+        PictureVariantCache cache = new PictureVariantCache(cacheDir, 1 << 20, new SimpleMeterRegistry());
+        AtomicInteger generateCount = new AtomicInteger();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> futureList = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futureList.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return cache.getOrCreate("same", outputStream -> {
+                        generateCount.incrementAndGet();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        outputStream.write(new byte[50]);
+                    });
+                }));
+            }
+            startLatch.countDown();
+            for (Future<Path> future : futureList) {
+                assertEquals(50, Files.size(future.get(10, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, generateCount.get());
+    }
+
+    @Test
+    public void failedGenerationIsNotCached() throws IOException {
+        PictureVariantCache cache = new PictureVariantCache(cacheDir, 1 << 20, new SimpleMeterRegistry());
+        assertThrows(IOException.class, () -> cache.getOrCreate("broken", outputStream -> {
+            outputStream.write(new byte[10]);
+            throw new IOException("解码失败");
+        }));
+        assertEquals(0, cache.size());
+        try (Stream<Path> pathStream = Files.list(cacheDir)) {
+            assertEquals(0, pathStream.count());
+        }
+        Path path = cache.getOrCreate("broken", outputStream -> outputStream.write(new byte[20]));
+        assertEquals(20, Files.size(path));
+    }
+
+    @Test
+    public void openedFileSurvivesEviction() throws IOException {
+        PictureVariantCache cache = new PictureVariantCache(cacheDir, 100, new SimpleMeterRegistry());
+        try (FileChannel channel = cache.open("a", outputStream -> outputStream.write(new byte[80]))) {
+            // 生成 b 时淘汰 a，已打开的 a 仍可完整读取
+            cache.open("b", outputStream -> outputStream.write(new byte[80])).close();
+            assertFalse(Files.exists(cacheDir.resolve("a")));
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            assertEquals(80, channel.read(buffer, 0));
+        }
+        // 被外部删除后重新生成
+        Files.delete(cacheDir.resolve("b"));
+        try (FileChannel channel = cache.open("b", outputStream -> outputStream.write(new byte[30]))) {
+            assertEquals(30, channel.size());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.alan.alanpicturebackend;
+
+import com.alan.alanpicturebackend.config.PictureProcessConfig;
+import com.alan.alanpicturebackend.manager.utils.WebPEncoderPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author alan
+ * @Description: WebP 编码器池测试
+ * @Date: 2025/10/20 15:10
+ */
+public class WebPEncoderPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WebPEncoderPool webPEncoderPool = new WebPEncoderPool(new PictureProcessConfig(), meterRegistry);
+
+    @AfterEach
+    public void closePool() {
+        webPEncoderPool.close();
+    }
+
+    @Test
+    public void reuseEncoderWithDifferentSettings() throws IOException {
+        BufferedImage image = noise(320, 240);
+        ByteArrayOutputStream low = new ByteArrayOutputStream();
+        ByteArrayOutputStream high = new ByteArrayOutputStream();
+        ByteArrayOutputStream lowAgain = new ByteArrayOutputStream();
+        webPEncoderPool.encode(image, low, 0.2f, 4);
+        webPEncoderPool.encode(image, high, 0.95f, 4);
+        // 复用同一个编码器时不会沿用上一次的质量设置
+        webPEncoderPool.encode(image, lowAgain, 0.2f, 4);
+
+        assertTrue(low.size() < high.size());
+        assertArrayEquals(low.toByteArray(), lowAgain.toByteArray());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(high.toByteArray()));
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+        assertEquals(0, meterRegistry.get("picture.webp.pool.active").gauge().value());
+        assertEquals(1, meterRegistry.get("picture.webp.pool.idle").gauge().value());
+        assertEquals(3, meterRegistry.get("picture.webp.encode").timer().count());
+    }
+
+    private BufferedImage noise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillRect(random.nextInt(width), random.nextInt(height), 5 + random.nextInt(40), 5 + random.nextInt(40));
+        }
+        graphics.dispose();
+        return image;
+    }
+}